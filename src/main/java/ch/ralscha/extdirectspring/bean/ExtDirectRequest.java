@@ -15,6 +15,11 @@
  */
 package ch.ralscha.extdirectspring.bean;
 
+import java.io.IOException;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
 /**
  * Represents the request of a Ext Direct call. Internal class.
  */
@@ -30,6 +35,8 @@ public class ExtDirectRequest {
 
 	private Object data;
 
+	private TokenBuffer dataBuffer;
+
 	/**
 	 * @return name of the spring managed bean
 	 */
@@ -45,11 +52,43 @@ public class ExtDirectRequest {
 	 * @return payload of the request
 	 */
 	public Object getData() {
+		if (data == null && dataBuffer != null) {
+			try {
+				data = dataBuffer.asParser().readValueAs(Object.class);
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e.getMessage(), e);
+			}
+		}
 		return data;
 	}
 
 	public void setData(Object data) {
 		this.data = data;
+		this.dataBuffer = null;
+	}
+
+	/**
+	 * @return the unparsed JSON tokens of the payload. <code>null</code> if the
+	 *         request was not read by
+	 *         {@link ch.ralscha.extdirectspring.util.JsonHandler#readDirectRequests(java.io.InputStream)}
+	 *         or the payload was null
+	 */
+	@JsonIgnore
+	public TokenBuffer getDataBuffer() {
+		return dataBuffer;
+	}
+
+	/**
+	 * Sets the payload as a buffer of JSON tokens. The buffer is converted
+	 * into objects the first time {@link #getData()} is called. The buffer
+	 * needs an {@link com.fasterxml.jackson.core.ObjectCodec}.
+	 * 
+	 * @param dataBuffer the buffered JSON payload
+	 */
+	@JsonIgnore
+	public void setDataBuffer(TokenBuffer dataBuffer) {
+		this.data = null;
+		this.dataBuffer = dataBuffer;
 	}
 
 	/**
@@ -90,7 +129,7 @@ public class ExtDirectRequest {
 	@Override
 	public String toString() {
 		return "ExtDirectRequest [action=" + action + ", method=" + method + ", type=" + type + ", tid=" + tid
-				+ ", data=" + data + "]";
+				+ ", data=" + getData() + "]";
 	}
 
 }
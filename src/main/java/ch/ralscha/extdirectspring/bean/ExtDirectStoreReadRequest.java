@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import ch.ralscha.extdirectspring.filter.BooleanFilter;
 import ch.ralscha.extdirectspring.filter.DateFilter;
@@ -56,6 +57,12 @@ public class ExtDirectStoreReadRequest {
 
 	private List<Filter> filters;
 
+	private Callable<List<Filter>> filtersLoader;
+
+	private Callable<List<SortInfo>> sortersLoader;
+
+	private Callable<List<GroupInfo>> groupsLoader;
+
 	private Map<String, Object> params;
 
 	public ExtDirectStoreReadRequest() {
@@ -202,7 +209,7 @@ public class ExtDirectStoreReadRequest {
 	 * @see StringFilter
 	 */
 	public List<Filter> getFilters() {
-		return Collections.unmodifiableList(filters);
+		return Collections.unmodifiableList(filters());
 	}
 
 	/**
@@ -213,7 +220,7 @@ public class ExtDirectStoreReadRequest {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T extends Filter> T getFirstFilterForField(String field) {
-		for (Filter filter : filters) {
+		for (Filter filter : filters()) {
 			if (filter.getField().equals(field)) {
 				return (T) filter;
 			}
@@ -231,7 +238,7 @@ public class ExtDirectStoreReadRequest {
 	public List<Filter> getAllFiltersForField(String field) {
 		List<Filter> foundFilters = new ArrayList<Filter>();
 
-		for (Filter filter : filters) {
+		for (Filter filter : filters()) {
 			if (filter.getField().equals(field)) {
 				foundFilters.add(filter);
 			}
@@ -241,6 +248,7 @@ public class ExtDirectStoreReadRequest {
 	}
 
 	public void setFilters(List<Filter> filters) {
+		this.filtersLoader = null;
 		if (filters != null) {
 			this.filters = filters;
 		} else {
@@ -248,6 +256,25 @@ public class ExtDirectStoreReadRequest {
 		}
 	}
 
+	/**
+	 * Sets a loader that creates the filters the first time they are
+	 * accessed. The result is kept, the loader is called only once. Internal
+	 * method.
+	 * 
+	 * @param filtersLoader creates the filters from the raw request data
+	 */
+	@JsonIgnore
+	public void setFiltersLoader(Callable<List<Filter>> filtersLoader) {
+		this.filtersLoader = filtersLoader;
+	}
+
+	private List<Filter> filters() {
+		if (filtersLoader != null) {
+			setFilters(load(filtersLoader));
+		}
+		return filters;
+	}
+
 	/**
 	 * @return page number of a paging request. page = ({@link #getStart()} /
 	 *         {@link #getLimit()}) + 1
@@ -261,10 +288,14 @@ public class ExtDirectStoreReadRequest {
 	}
 
 	public List<SortInfo> getSorters() {
+		if (sortersLoader != null) {
+			setSorters(load(sortersLoader));
+		}
 		return Collections.unmodifiableList(sorters);
 	}
 
 	public void setSorters(List<SortInfo> sorters) {
+		this.sortersLoader = null;
 		if (sorters != null) {
 			this.sorters = sorters;
 		} else {
@@ -273,10 +304,14 @@ public class ExtDirectStoreReadRequest {
 	}
 
 	public List<GroupInfo> getGroups() {
+		if (groupsLoader != null) {
+			setGroups(load(groupsLoader));
+		}
 		return Collections.unmodifiableList(groups);
 	}
 
 	public void setGroups(List<GroupInfo> groups) {
+		this.groupsLoader = null;
 		if (groups != null) {
 			this.groups = groups;
 		} else {
@@ -284,6 +319,40 @@ public class ExtDirectStoreReadRequest {
 		}
 	}
 
+	/**
+	 * Sets a loader that creates the sorters the first time they are
+	 * accessed. Internal method.
+	 * 
+	 * @param sortersLoader creates the sorters from the raw request data
+	 * @see #setFiltersLoader(Callable)
+	 */
+	@JsonIgnore
+	public void setSortersLoader(Callable<List<SortInfo>> sortersLoader) {
+		this.sortersLoader = sortersLoader;
+	}
+
+	/**
+	 * Sets a loader that creates the groups the first time they are accessed.
+	 * Internal method.
+	 * 
+	 * @param groupsLoader creates the groups from the raw request data
+	 * @see #setFiltersLoader(Callable)
+	 */
+	@JsonIgnore
+	public void setGroupsLoader(Callable<List<GroupInfo>> groupsLoader) {
+		this.groupsLoader = groupsLoader;
+	}
+
+	private static <T> List<T> load(Callable<List<T>> loader) {
+		try {
+			return loader.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * @return a map with all the keys and values from <code>extraParams</code>
 	 */
@@ -303,7 +372,7 @@ public class ExtDirectStoreReadRequest {
 	public String toString() {
 		return "ExtDirectStoreReadRequest [query=" + query + ", limit=" + limit + ", start=" + start + ", page=" + page
 				+ ", dir=" + dir + ", sort=" + sort + ", groupBy=" + groupBy + ", groupDir=" + groupDir + ", sorters="
-				+ sorters + ", groups=" + groups + ", filters=" + filters + ", params=" + params + "]";
+				+ getSorters() + ", groups=" + getGroups() + ", filters=" + filters() + ", params=" + params + "]";
 	}
 
 }
@@ -15,50 +15,64 @@
  */
 package ch.ralscha.extdirectspring.controller;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
 import org.springframework.stereotype.Controller;
-import org.springframework.util.NumberUtils;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import ch.ralscha.extdirectspring.bean.api.PollingProvider;
 import ch.ralscha.extdirectspring.bean.api.RemotingApi;
-import ch.ralscha.extdirectspring.bean.api.RemotingApiMixin;
 import ch.ralscha.extdirectspring.util.ApiCache;
 import ch.ralscha.extdirectspring.util.ApiCacheKey;
+import ch.ralscha.extdirectspring.util.ApiWriter;
+import ch.ralscha.extdirectspring.util.CacheableContent;
 import ch.ralscha.extdirectspring.util.ExtDirectSpringUtil;
 import ch.ralscha.extdirectspring.util.MethodInfo;
 import ch.ralscha.extdirectspring.util.MethodInfoCache;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Spring managed controller that handles /api.jsp, /api-debug.js,
- * /api-debug-doc.js and /api-{fingerprinted}.js requests.
+ * /api-debug-doc.js and /api-{fingerprinted}.js requests. The api.js variants
+ * listed in {@link Configuration#getApiVariants()} are rendered when the
+ * application context is refreshed.
  */
 @Controller
-public class ApiController {
+public class ApiController implements ApplicationListener<ApplicationContextEvent>, Ordered {
 
 	@Autowired
 	private ConfigurationService configurationService;
 
+	private static final String API_FILE_REGEX = "api[^/]*?\\.js";
+
+	private volatile Map<ApiCacheKey, CacheableContent> prerenderedApis = Collections.emptyMap();
+
 	/**
 	 * Method that handles api.js and api-debug.js calls. Generates a javascript
-	 * with the necessary code for Ext Direct.
+	 * with the necessary code for Ext Direct. The response contains an ETag
+	 * and a Last-Modified validator that change only when the registered
+	 * methods change, a conditional request is answered with 304 Not Modified.
 	 * 
 	 * @param apiNs name of the namespace the variable remotingApiVar will live
 	 *            in. Defaults to Ext.app
@@ -79,7 +93,6 @@ public class ApiController {
 	 * @param response the HTTP servlet response
 	 * @throws IOException
 	 */
-	@SuppressWarnings({ "resource" })
 	@RequestMapping(value = { "/api.js", "/api-debug.js", "/api-debug-doc.js" }, method = RequestMethod.GET)
 	public void api(@RequestParam(value = "apiNs", required = false) String apiNs,
 			@RequestParam(value = "actionNs", required = false) String actionNs,
@@ -96,15 +109,10 @@ public class ApiController {
 			response.setContentType(configurationService.getConfiguration().getJsContentType());
 			response.setCharacterEncoding(ExtDirectSpringUtil.UTF8_CHARSET.name());
 
-			String apiString = buildAndCacheApiString(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, group,
-					fullRouterUrl, baseRouterUrl, request);
-
-			byte[] outputBytes = apiString.getBytes(ExtDirectSpringUtil.UTF8_CHARSET);
-			response.setContentLength(outputBytes.length);
-
-			ServletOutputStream outputStream = response.getOutputStream();
-			outputStream.write(outputBytes);
-			outputStream.flush();
+			CacheableContent apiContent = buildAndCacheApiContent(apiNs, actionNs, remotingApiVar, pollingUrlsVar,
+					sseVar, group, getApiUrl(fullRouterUrl, baseRouterUrl, request));
+			ExtDirectSpringUtil.handleRevalidatedResponse(request, response, apiContent,
+					configurationService.getConfiguration());
 		} else {
 			// This code create JSON description for Sencha Architect. We can
 			// therefore ignore SSE urls.
@@ -116,13 +124,9 @@ public class ApiController {
 			boolean debug = requestUrlString.contains("api-debug.js");
 			String routerUrl = requestUrlString.replaceFirst("api[^/]*?\\.js", "router");
 
-			String apiString = buildApiJson(apiNs, actionNs, remotingApiVar, routerUrl, group, debug);
-			byte[] outputBytes = apiString.getBytes(ExtDirectSpringUtil.UTF8_CHARSET);
-			response.setContentLength(outputBytes.length);
-
-			ServletOutputStream outputStream = response.getOutputStream();
-			outputStream.write(outputBytes);
-			outputStream.flush();
+			CacheableContent apiJson = buildAndCacheApiJson(apiNs, actionNs, remotingApiVar, routerUrl, group, debug);
+			ExtDirectSpringUtil.handleRevalidatedResponse(request, response, apiJson,
+					configurationService.getConfiguration());
 		}
 	}
 
@@ -159,202 +163,159 @@ public class ApiController {
 			@RequestParam(value = "baseRouterUrl", required = false) String baseRouterUrl, HttpServletRequest request,
 			HttpServletResponse response) throws IOException {
 
-		String apiString = buildAndCacheApiString(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, group,
-				fullRouterUrl, baseRouterUrl, request);
+		CacheableContent apiContent = buildAndCacheApiContent(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar,
+				group, getApiUrl(fullRouterUrl, baseRouterUrl, request));
 
-		byte[] outputBytes = apiString.getBytes(ExtDirectSpringUtil.UTF8_CHARSET);
-		ExtDirectSpringUtil.handleCacheableResponse(request, response, outputBytes, configurationService
-				.getConfiguration().getJsContentType());
+		Configuration configuration = configurationService.getConfiguration();
+		ExtDirectSpringUtil.handleCacheableResponse(request, response, apiContent, configuration.getJsContentType(),
+				configuration);
 	}
 
-	private String buildAndCacheApiString(String requestApiNs, String actionNs, String requestRemotingApiVar,
-			String requestPollingUrlsVar, String requestSseVar, String group, boolean fullRouterUrl,
-			String baseRouterUrl, HttpServletRequest request) {
-
-		String apiNs = requestApiNs != null ? requestApiNs : "Ext.app";
-		String remotingApiVar = requestRemotingApiVar != null ? requestRemotingApiVar : "REMOTING_API";
-		String pollingUrlsVar = requestPollingUrlsVar != null ? requestPollingUrlsVar : "POLLING_URLS";
-		String sseVar = requestSseVar != null ? requestSseVar : "SSE";
-
-		String requestUrlString;
-
+	private static String getApiUrl(boolean fullRouterUrl, String baseRouterUrl, HttpServletRequest request) {
 		if (baseRouterUrl != null) {
-			requestUrlString = baseRouterUrl + (baseRouterUrl.endsWith("/") ? "" : "/");
+			return baseRouterUrl + (baseRouterUrl.endsWith("/") ? "" : "/");
 		} else if (fullRouterUrl) {
-			requestUrlString = request.getRequestURL().toString();
-		} else {
-			requestUrlString = request.getRequestURI();
+			return request.getRequestURL().toString();
 		}
-		String stripApiRegex = "api[^/]*?\\.js";
-		String routerUrl = requestUrlString.replaceFirst(stripApiRegex, "") + "router";
-		String basePollUrl = requestUrlString.replaceFirst(stripApiRegex, "") + "poll";
-		String baseSseUrl = requestUrlString.replaceFirst(stripApiRegex, "") + "sse";
-
-		if (!requestUrlString.contains("/api-debug-doc.js")) {
-			boolean debug = requestUrlString.contains("api-debug.js");
+		return request.getRequestURI();
+	}
 
-			ApiCacheKey apiKey = new ApiCacheKey(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, routerUrl,
-					group, debug);
-			String apiString = ApiCache.INSTANCE.get(apiKey);
-			if (apiString == null) {
-				apiString = buildApiString(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, routerUrl,
-						basePollUrl, baseSseUrl, group, debug, false);
-				ApiCache.INSTANCE.put(apiKey, apiString);
-			}
-			return apiString;
+	private CacheableContent buildAndCacheApiContent(String requestApiNs, final String actionNs,
+			String requestRemotingApiVar, String requestPollingUrlsVar, String requestSseVar, final String group,
+			String apiUrl) {
+
+		final String apiNs = requestApiNs != null ? requestApiNs : "Ext.app";
+		final String remotingApiVar = requestRemotingApiVar != null ? requestRemotingApiVar : "REMOTING_API";
+		final String pollingUrlsVar = requestPollingUrlsVar != null ? requestPollingUrlsVar : "POLLING_URLS";
+		final String sseVar = requestSseVar != null ? requestSseVar : "SSE";
+		final String baseUrl = apiUrl.replaceFirst(API_FILE_REGEX, "");
+		final boolean doc = apiUrl.contains("/api-debug-doc.js");
+		final boolean debug = doc || apiUrl.contains("api-debug.js");
+
+		ApiCacheKey apiKey = new ApiCacheKey(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, baseUrl
+				+ "router", group, debug, doc ? ApiCacheKey.FORMAT_DOC : null);
+		CacheableContent apiContent = prerenderedApis.get(apiKey);
+		if (apiContent == null) {
+			apiContent = ApiCache.INSTANCE.getContent(apiKey, new Callable<CacheableContent>() {
+				@Override
+				public CacheableContent call() {
+					return renderApiContent(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, baseUrl, group,
+							debug, doc);
+				}
+			});
 		}
-
-		return buildApiString(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, routerUrl, basePollUrl,
-				baseSseUrl, group, true, true);
-
+		return apiContent;
 	}
 
-	private String buildApiString(String apiNs, String actionNs, String remotingApiVar, String pollingUrlsVar,
-			String sseVar, String routerUrl, String basePollUrl, String baseSseUrl, String group, boolean debug,
-			boolean doc) {
-
-		RemotingApi remotingApi = new RemotingApi(configurationService.getConfiguration().getProviderType(), routerUrl,
-				actionNs);
-
-		remotingApi.setTimeout(configurationService.getConfiguration().getTimeout());
-		remotingApi.setMaxRetries(configurationService.getConfiguration().getMaxRetries());
-
-		Object enableBuffer = configurationService.getConfiguration().getEnableBuffer();
-		if (enableBuffer instanceof String && StringUtils.hasText((String) enableBuffer)) {
-			String enableBufferString = (String) enableBuffer;
-			if (enableBufferString.equalsIgnoreCase("true")) {
-				remotingApi.setEnableBuffer(true);
-			} else if (enableBufferString.equalsIgnoreCase("false")) {
-				remotingApi.setEnableBuffer(false);
-			} else {
-				Integer enableBufferMs = NumberUtils.parseNumber(enableBufferString, Integer.class);
-				remotingApi.setEnableBuffer(enableBufferMs);
+	private CacheableContent buildAndCacheApiJson(final String apiNs, final String actionNs,
+			final String remotingApiVar, final String routerUrl, final String group, final boolean debug) {
+		ApiCacheKey apiKey = new ApiCacheKey(apiNs, actionNs, remotingApiVar, null, null, group, routerUrl, debug,
+				ApiCacheKey.FORMAT_JSON);
+		return ApiCache.INSTANCE.getContent(apiKey, new Callable<CacheableContent>() {
+			@Override
+			public CacheableContent call() {
+				long lastModified = MethodInfoCache.INSTANCE.getLastModified();
+				byte[] apiJson = buildApiJson(apiNs, actionNs, remotingApiVar, routerUrl, group, debug);
+				return new CacheableContent(apiJson, lastModified).precompute(configurationService
+						.getConfiguration());
 			}
-		} else if (enableBuffer instanceof Number || enableBuffer instanceof Boolean) {
-			remotingApi.setEnableBuffer(enableBuffer);
-		}
-
-		buildRemotingApi(remotingApi, group);
-
-		StringBuilder sb = new StringBuilder();
-
-		if (StringUtils.hasText(apiNs)) {
-			sb.append("Ext.ns('");
-			sb.append(apiNs);
-			sb.append("');");
-		}
-
-		if (debug) {
-			sb.append("\n\n");
-		}
-
-		if (StringUtils.hasText(actionNs)) {
-			sb.append("Ext.ns('");
-			sb.append(actionNs);
-			sb.append("');");
+		});
+	}
 
-			if (debug) {
-				sb.append("\n\n");
+	/**
+	 * Renders the api.js and api-debug.js of all {@link ApiVariant}s listed in
+	 * the configuration and invalidates the {@link ApiCache}. Runs after the
+	 * {@link MethodRegistrar} registered the methods of a refreshed context or
+	 * removed the methods of another closed context.
+	 */
+	@Override
+	public void onApplicationEvent(ApplicationContextEvent event) {
+		if (event instanceof ContextClosedEvent) {
+			if (event.getApplicationContext() == configurationService.getApplicationContext()) {
+				// this controller is shut down
+				return;
 			}
+		} else if (!(event instanceof ContextRefreshedEvent)) {
+			return;
 		}
 
-		String jsonConfig;
-		if (!doc) {
-			jsonConfig = configurationService.getJsonHandler().writeValueAsString(remotingApi, debug);
-		} else {
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.addMixInAnnotations(RemotingApi.class, RemotingApiMixin.class);
-			try {
-				jsonConfig = mapper.writer().withDefaultPrettyPrinter().writeValueAsString(remotingApi);
-			} catch (JsonProcessingException e) {
-				jsonConfig = null;
-				LogFactory.getLog(ApiController.class).info("serialize object to json", e);
-			}
-		}
+		ApiCache.INSTANCE.invalidateAll();
 
-		if (StringUtils.hasText(apiNs)) {
-			sb.append(apiNs).append(".");
+		List<ApiVariant> apiVariants = configurationService.getConfiguration().getApiVariants();
+		if (apiVariants == null || apiVariants.isEmpty()) {
+			prerenderedApis = Collections.emptyMap();
+			return;
 		}
-		sb.append(remotingApiVar).append(" = ");
-		sb.append(jsonConfig);
-		sb.append(";");
-
-		List<PollingProvider> pollingProviders = remotingApi.getPollingProviders();
-		if (!pollingProviders.isEmpty()) {
-
-			if (debug) {
-				sb.append("\n\n");
-			}
-
-			if (StringUtils.hasText(apiNs)) {
-				sb.append(apiNs).append(".");
-			}
-			sb.append(pollingUrlsVar).append(" = {");
-			if (debug) {
-				sb.append("\n");
-			}
 
-			for (int i = 0; i < pollingProviders.size(); i++) {
-				if (debug) {
-					sb.append("  ");
-				}
-
-				sb.append("\"");
-				sb.append(pollingProviders.get(i).getEvent());
-				sb.append("\"");
-				sb.append(" : \"").append(basePollUrl).append("/");
-				sb.append(pollingProviders.get(i).getBeanName());
-				sb.append("/");
-				sb.append(pollingProviders.get(i).getMethod());
-				sb.append("/");
-				sb.append(pollingProviders.get(i).getEvent());
-				sb.append("\"");
-				if (i < pollingProviders.size() - 1) {
-					sb.append(",");
-					if (debug) {
-						sb.append("\n");
-					}
-				}
+		Map<ApiCacheKey, CacheableContent> rendered = new HashMap<ApiCacheKey, CacheableContent>();
+		for (ApiVariant variant : apiVariants) {
+			Assert.hasText(variant.getBaseUrl(), "baseUrl of " + variant + " must not be empty");
+
+			String apiNs = variant.getApiNs() != null ? variant.getApiNs() : "Ext.app";
+			String remotingApiVar = variant.getRemotingApiVar() != null ? variant.getRemotingApiVar()
+					: "REMOTING_API";
+			String pollingUrlsVar = variant.getPollingUrlsVar() != null ? variant.getPollingUrlsVar()
+					: "POLLING_URLS";
+			String sseVar = variant.getSseVar() != null ? variant.getSseVar() : "SSE";
+			String baseUrl = variant.getBaseUrl() + (variant.getBaseUrl().endsWith("/") ? "" : "/");
+
+			for (boolean debug : new boolean[] { false, true }) {
+				ApiCacheKey apiKey = new ApiCacheKey(apiNs, variant.getActionNs(), remotingApiVar, pollingUrlsVar,
+						sseVar, baseUrl + "router", variant.getGroup(), debug);
+				rendered.put(apiKey, renderApiContent(apiNs, variant.getActionNs(), remotingApiVar, pollingUrlsVar,
+						sseVar, baseUrl, variant.getGroup(), debug, false));
 			}
-			if (debug) {
-				sb.append("\n");
-			}
-			sb.append("};");
 		}
+		prerenderedApis = Collections.unmodifiableMap(rendered);
+	}
 
-		Map<String, List<String>> sseProviders = remotingApi.getSseProviders();
-		if (!sseProviders.isEmpty()) {
-
-			if (debug) {
-				sb.append("\n\n");
-			}
+	@Override
+	public int getOrder() {
+		return Ordered.LOWEST_PRECEDENCE;
+	}
 
-			Map<String, Map<String, String>> sseconfig = new HashMap<String, Map<String, String>>();
-			for (Entry<String, List<String>> entry : sseProviders.entrySet()) {
-				String bean = entry.getKey();
+	private CacheableContent renderApiContent(String apiNs, String actionNs, String remotingApiVar,
+			String pollingUrlsVar, String sseVar, String baseUrl, String group, boolean debug, boolean doc) {
+		long lastModified = MethodInfoCache.INSTANCE.getLastModified();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+		try {
+			writeApi(bos, apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, baseUrl, group, debug, doc);
+		} catch (IOException e) {
+			// cannot happen with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		CacheableContent apiContent = new CacheableContent(bos.toByteArray(), lastModified);
+		return apiContent.precompute(configurationService.getConfiguration());
+	}
 
-				Map<String, String> methods = new HashMap<String, String>();
-				sseconfig.put(bean, methods);
+	/**
+	 * Writes the api.js of the registered methods UTF-8 encoded into the
+	 * stream.
+	 * 
+	 * @param apiUrl the request URL of the api, or the base URL of the router
+	 *            with a trailing slash
+	 */
+	private void writeApi(OutputStream out, String requestApiNs, String actionNs, String requestRemotingApiVar,
+			String requestPollingUrlsVar, String requestSseVar, String apiUrl, String group, boolean debug,
+			boolean doc) throws IOException {
 
-				for (String method : entry.getValue()) {
-					methods.put(method, baseSseUrl + "/" + bean + "/" + method);
-				}
-			}
+		String apiNs = requestApiNs != null ? requestApiNs : "Ext.app";
+		String remotingApiVar = requestRemotingApiVar != null ? requestRemotingApiVar : "REMOTING_API";
+		String pollingUrlsVar = requestPollingUrlsVar != null ? requestPollingUrlsVar : "POLLING_URLS";
+		String sseVar = requestSseVar != null ? requestSseVar : "SSE";
 
-			String sseConfig = configurationService.getJsonHandler().writeValueAsString(sseconfig, debug);
+		String baseUrl = apiUrl.replaceFirst(API_FILE_REGEX, "");
+		String routerUrl = baseUrl + "router";
 
-			if (StringUtils.hasText(apiNs)) {
-				sb.append(apiNs).append(".");
-			}
-			sb.append(sseVar).append(" = ");
-			sb.append(sseConfig);
-			sb.append(";");
-		}
+		RemotingApi remotingApi = ApiWriter.createRemotingApi(configurationService.getConfiguration(), routerUrl,
+				actionNs);
+		buildRemotingApi(remotingApi, group);
 
-		return sb.toString();
+		ApiWriter.writeApi(out, remotingApi, apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, baseUrl,
+				configurationService.getJsonHandler().getMapper(), debug, doc);
 	}
 
-	private String buildApiJson(String requestApiNs, String actionNs, String requestRemotingApiVar, String routerUrl,
+	private byte[] buildApiJson(String requestApiNs, String actionNs, String requestRemotingApiVar, String routerUrl,
 			String group, boolean debug) {
 
 		String apiNs = requestApiNs != null ? requestApiNs : "Ext.app";
@@ -371,43 +332,21 @@ public class ApiController {
 
 		buildRemotingApi(remotingApi, group);
 
-		return configurationService.getJsonHandler().writeValueAsString(remotingApi, debug);
+		try {
+			return ApiWriter.getJsonWriter(configurationService.getJsonHandler().getMapper(), debug).writeValueAsBytes(
+					remotingApi);
+		} catch (JsonProcessingException e) {
+			LogFactory.getLog(ApiController.class).info("serialize object to json", e);
+			return "null".getBytes(ExtDirectSpringUtil.UTF8_CHARSET);
+		}
 
 	}
 
 	private static void buildRemotingApi(RemotingApi remotingApi, String requestedGroup) {
 		String group = requestedGroup != null ? requestedGroup.trim() : requestedGroup;
-		for (Map.Entry<MethodInfoCache.Key, MethodInfo> entry : MethodInfoCache.INSTANCE) {
-			MethodInfo methodInfo = entry.getValue();
-			if (isSameGroup(group, methodInfo.getGroup())) {
-				if (methodInfo.getAction() != null) {
-					remotingApi.addAction(entry.getKey().getBeanName(), methodInfo.getAction());
-				} else if (methodInfo.getPollingProvider() != null) {
-					remotingApi.addPollingProvider(methodInfo.getPollingProvider());
-				} else {
-					remotingApi.addSseProvider(entry.getKey().getBeanName(), methodInfo.getSseMethod());
-				}
-			}
+		for (Map.Entry<MethodInfoCache.Key, MethodInfo> entry : MethodInfoCache.INSTANCE.getEntries(group)) {
+			ApiWriter.addMethod(remotingApi, entry.getKey().getBeanName(), entry.getValue());
 		}
 	}
 
-	private static boolean isSameGroup(String requestedGroups, String annotationGroups) {
-		if (requestedGroups != null) {
-			if (!requestedGroups.isEmpty() && annotationGroups != null && !annotationGroups.isEmpty()) {
-				for (String requestedGroup : requestedGroups.split(",")) {
-					for (String annotationGroup : annotationGroups.split(",")) {
-						if (ExtDirectSpringUtil.equal(requestedGroup, annotationGroup)) {
-							return true;
-						}
-					}
-				}
-			} else if (requestedGroups.isEmpty() && (annotationGroups == null || annotationGroups.trim().isEmpty())) {
-				return true;
-			}
-			return false;
-		}
-
-		return true;
-	}
-
 }
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+/**
+ * Describes one api.js variant that is rendered at startup (see
+ * {@link Configuration#setApiVariants(java.util.List)}). The properties
+ * correspond to the request parameters of the api.js request. Properties that
+ * are not set use the same defaults as the request parameters.
+ */
+public class ApiVariant {
+
+	private String baseUrl;
+
+	private String apiNs;
+
+	private String actionNs;
+
+	private String remotingApiVar;
+
+	private String pollingUrlsVar;
+
+	private String sseVar;
+
+	private String group;
+
+	public ApiVariant() {
+		// default constructor
+	}
+
+	public ApiVariant(String baseUrl, String group) {
+		this.baseUrl = baseUrl;
+		this.group = group;
+	}
+
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * The URL the api.js is requested from, without the api.js file name (i.e.
+	 * "/myapp/action/"). The router, poll and sse URLs in the api.js are
+	 * relative to this URL. It must match the URL of the request, otherwise
+	 * the variant is not used and the api.js is rendered on the first request.
+	 * The same value is used when the request contains the baseRouterUrl
+	 * parameter.
+	 * <p>
+	 * Required
+	 * 
+	 * @param baseUrl new base url
+	 */
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl;
+	}
+
+	public String getApiNs() {
+		return apiNs;
+	}
+
+	public void setApiNs(String apiNs) {
+		this.apiNs = apiNs;
+	}
+
+	public String getActionNs() {
+		return actionNs;
+	}
+
+	public void setActionNs(String actionNs) {
+		this.actionNs = actionNs;
+	}
+
+	public String getRemotingApiVar() {
+		return remotingApiVar;
+	}
+
+	public void setRemotingApiVar(String remotingApiVar) {
+		this.remotingApiVar = remotingApiVar;
+	}
+
+	public String getPollingUrlsVar() {
+		return pollingUrlsVar;
+	}
+
+	public void setPollingUrlsVar(String pollingUrlsVar) {
+		this.pollingUrlsVar = pollingUrlsVar;
+	}
+
+	public String getSseVar() {
+		return sseVar;
+	}
+
+	public void setSseVar(String sseVar) {
+		this.sseVar = sseVar;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * Name of the api group. Multiple groups delimited with comma. Null
+	 * renders all methods.
+	 * 
+	 * @param group the group
+	 */
+	public void setGroup(String group) {
+		this.group = group;
+	}
+
+	@Override
+	public String toString() {
+		return "ApiVariant [baseUrl=" + baseUrl + ", apiNs=" + apiNs + ", actionNs=" + actionNs + ", remotingApiVar="
+				+ remotingApiVar + ", pollingUrlsVar=" + pollingUrlsVar + ", sseVar=" + sseVar + ", group=" + group
+				+ "]";
+	}
+
+}
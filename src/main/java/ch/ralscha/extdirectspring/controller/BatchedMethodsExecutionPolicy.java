@@ -29,5 +29,12 @@ public enum BatchedMethodsExecutionPolicy {
 	/**
 	 * Executes methods concurrently in a thread pool
 	 */
-	CONCURRENT
+	CONCURRENT,
+
+	/**
+	 * Executes small batches one after the other. Larger batches run the first
+	 * method on the calling thread and the other methods concurrently in a
+	 * thread pool
+	 */
+	ADAPTIVE
 }
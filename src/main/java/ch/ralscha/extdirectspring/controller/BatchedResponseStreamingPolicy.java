@@ -0,0 +1,41 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+/**
+ * Policies how the responses of concurrently executed batched methods are
+ * written to the client
+ * 
+ * @see BatchedMethodsExecutionPolicy#CONCURRENT
+ */
+public enum BatchedResponseStreamingPolicy {
+
+	/**
+	 * Waits for all methods and writes the responses in one piece
+	 */
+	NONE,
+
+	/**
+	 * Writes every response as soon as it and all responses with a lower
+	 * position in the batch are available
+	 */
+	TID_ORDER,
+
+	/**
+	 * Writes every response as soon as the method has finished
+	 */
+	COMPLETION_ORDER
+}
@@ -15,9 +15,11 @@
  */
 package ch.ralscha.extdirectspring.controller;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -29,6 +31,7 @@ import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
 import ch.ralscha.extdirectspring.bean.BaseResponse;
 import ch.ralscha.extdirectspring.bean.ExtDirectResponse;
 import ch.ralscha.extdirectspring.bean.ExtDirectStoreResult;
+import ch.ralscha.extdirectspring.util.ApiCache;
 import ch.ralscha.extdirectspring.util.JsonHandler;
 
 /**
@@ -57,10 +60,38 @@ public class Configuration {
 
 	private String jsContentType = "application/javascript";
 
+	private boolean compressResponse = false;
+
+	private int compressionThreshold = 1024;
+
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
 	private BatchedMethodsExecutionPolicy batchedMethodsExecutionPolicy = BatchedMethodsExecutionPolicy.SEQUENTIAL;
 
 	private ExecutorService batchedMethodsExecutorService = null;
 
+	private int batchedMethodsConcurrencyThreshold = 2;
+
+	private Long batchedMethodsTimeout = null;
+
+	private BatchedResponseStreamingPolicy batchedResponseStreamingPolicy = BatchedResponseStreamingPolicy.NONE;
+
+	private int storeModifyParallelDecodingThreshold = 0;
+
+	private ExecutorService storeModifyDecodingExecutorService = null;
+
+	private boolean eagerStoreReadRequestParsing = false;
+
+	private List<ApiVariant> apiVariants = null;
+
+	private int apiCacheMaximumSize = ApiCache.DEFAULT_MAXIMUM_SIZE;
+
+	private boolean asyncRouter = false;
+
+	private ExecutorService asyncRouterExecutorService = null;
+
+	private Long asyncRouterTimeout = null;
+
 	private String providerType = "remoting";
 
 	private String frameDomain = null;
@@ -316,6 +347,69 @@ public class Configuration {
 		this.streamResponse = streamResponse;
 	}
 
+	public boolean isCompressResponse() {
+		return compressResponse;
+	}
+
+	/**
+	 * If compressResponse is true, responses of the router, poll and api
+	 * requests are compressed with gzip or deflate if the client accepts one
+	 * of these encodings in the Accept-Encoding header and the response is at
+	 * least {@link #getCompressionThreshold()} bytes long.
+	 * <p>
+	 * Buffered responses are compressed after the JSON is written into the
+	 * buffer. Streamed responses are buffered until the threshold is reached.
+	 * Batches that are streamed with a {@link BatchedResponseStreamingPolicy}
+	 * other than {@link BatchedResponseStreamingPolicy#NONE} are never
+	 * compressed because every flushed response has to reach the client
+	 * immediately.
+	 * <p>
+	 * The compressed variant of a cached api.js is created once and reused.
+	 * <p>
+	 * Default value is false
+	 * 
+	 * @param compressResponse new flag
+	 */
+	public void setCompressResponse(boolean compressResponse) {
+		this.compressResponse = compressResponse;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * Specifies the minimum size in bytes a response must have to be
+	 * compressed when {@link #isCompressResponse()} is true. Small responses
+	 * do not profit from compression.
+	 * <p>
+	 * Default value is 1024
+	 * 
+	 * @param compressionThreshold minimum size in bytes
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		Assert.isTrue(compressionThreshold >= 0, "compressionThreshold must not be negative");
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * Specifies the compression level (0-9) when {@link #isCompressResponse()}
+	 * is true. 1 is the fastest, 9 the best compression.
+	 * <p>
+	 * Default value is {@link Deflater#DEFAULT_COMPRESSION}
+	 * 
+	 * @param compressionLevel new compression level
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		Assert.isTrue(compressionLevel >= Deflater.DEFAULT_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+				"compressionLevel must be between 0 and 9 or -1");
+		this.compressionLevel = compressionLevel;
+	}
+
 	/**
 	 * Specifies the Content-Type for api.js and api-debug.js.
 	 * <p>
@@ -346,6 +440,10 @@ public class Configuration {
 	 * methods one after the other.
 	 * {@link BatchedMethodsExecutionPolicy#CONCURRENT} executes methods
 	 * concurrently with the help of a thread pool.
+	 * {@link BatchedMethodsExecutionPolicy#ADAPTIVE} executes batches with up
+	 * to {@link #getBatchedMethodsConcurrencyThreshold()} methods one after
+	 * the other. For larger batches the first method runs on the request thread
+	 * and the other methods in the thread pool.
 	 * 
 	 * <p>
 	 * Default value is {@link BatchedMethodsExecutionPolicy#SEQUENTIAL}
@@ -366,9 +464,13 @@ public class Configuration {
 	 * Sets the thread pool used for executing batched methods concurrently.
 	 * <p>
 	 * If batchedMethodsExecutionPolicy is set to
-	 * {@link BatchedMethodsExecutionPolicy#CONCURRENT} but no
-	 * batchedMethodsExecutorService is specified the library creates a
-	 * {@link Executors#newFixedThreadPool(int)} with 5 threads.
+	 * {@link BatchedMethodsExecutionPolicy#CONCURRENT} or
+	 * {@link BatchedMethodsExecutionPolicy#ADAPTIVE} but no
+	 * batchedMethodsExecutorService is specified the library creates a pool
+	 * with 5 threads and a queue that holds at most 100 methods.
+	 * <p>
+	 * If the pool rejects a method, the method is executed on the request
+	 * thread.
 	 * 
 	 * @see #setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy)
 	 * @param batchedMethodsExecutorService the new thread pool
@@ -377,6 +479,256 @@ public class Configuration {
 		this.batchedMethodsExecutorService = batchedMethodsExecutorService;
 	}
 
+	public int getBatchedMethodsConcurrencyThreshold() {
+		return batchedMethodsConcurrencyThreshold;
+	}
+
+	/**
+	 * Specifies the maximum number of methods in a batch that are executed
+	 * one after the other when batchedMethodsExecutionPolicy is
+	 * {@link BatchedMethodsExecutionPolicy#ADAPTIVE}. Larger batches are
+	 * executed concurrently.
+	 * <p>
+	 * Default value is 2
+	 * 
+	 * @see #setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy)
+	 * @param batchedMethodsConcurrencyThreshold new threshold
+	 */
+	public void setBatchedMethodsConcurrencyThreshold(int batchedMethodsConcurrencyThreshold) {
+		this.batchedMethodsConcurrencyThreshold = batchedMethodsConcurrencyThreshold;
+	}
+
+	public Long getBatchedMethodsTimeout() {
+		return batchedMethodsTimeout;
+	}
+
+	/**
+	 * Sets the time in milliseconds the methods of a concurrently executed
+	 * batch may run. The time is measured from the start of the batch. Methods
+	 * that are not finished when the time is up are cancelled and answered with
+	 * an exception response, the responses of the other methods are sent
+	 * normally.
+	 * <p>
+	 * Methods that run on the request thread, like the first method of an
+	 * {@link BatchedMethodsExecutionPolicy#ADAPTIVE} batch or methods rejected
+	 * by the pool, cannot be interrupted.
+	 * <p>
+	 * Default value is null, there is no timeout.
+	 * 
+	 * @see #setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy)
+	 * @param batchedMethodsTimeout new timeout in milliseconds
+	 */
+	public void setBatchedMethodsTimeout(Long batchedMethodsTimeout) {
+		this.batchedMethodsTimeout = batchedMethodsTimeout;
+	}
+
+	public BatchedResponseStreamingPolicy getBatchedResponseStreamingPolicy() {
+		return batchedResponseStreamingPolicy;
+	}
+
+	/**
+	 * Specifies how the responses of concurrently executed batched methods are
+	 * sent to the client. {@link BatchedResponseStreamingPolicy#NONE} waits for
+	 * all methods and sends the responses in one piece.
+	 * {@link BatchedResponseStreamingPolicy#TID_ORDER} and
+	 * {@link BatchedResponseStreamingPolicy#COMPLETION_ORDER} open the JSON
+	 * array immediately and write and flush every response as soon as it is
+	 * available, either in the order of the request or in the order the
+	 * methods finish.
+	 * <p>
+	 * Streamed batches are sent without a Content-Length header. The setting
+	 * only has an effect if batchedMethodsExecutionPolicy is
+	 * {@link BatchedMethodsExecutionPolicy#CONCURRENT} or
+	 * {@link BatchedMethodsExecutionPolicy#ADAPTIVE}.
+	 * <p>
+	 * Default value is {@link BatchedResponseStreamingPolicy#NONE}
+	 * 
+	 * @see #setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy)
+	 * @param batchedResponseStreamingPolicy new policy
+	 */
+	public void setBatchedResponseStreamingPolicy(BatchedResponseStreamingPolicy batchedResponseStreamingPolicy) {
+		Assert.notNull(batchedResponseStreamingPolicy, "batchedResponseStreamingPolicy must not be null");
+		this.batchedResponseStreamingPolicy = batchedResponseStreamingPolicy;
+	}
+
+	public int getStoreModifyParallelDecodingThreshold() {
+		return storeModifyParallelDecodingThreshold;
+	}
+
+	/**
+	 * Specifies the number of records a STORE_MODIFY call must contain to be
+	 * decoded in parallel. The records are split into chunks that are decoded
+	 * by the threads of {@link #getStoreModifyDecodingExecutorService()} and
+	 * the request thread. The order of the records is preserved.
+	 * <p>
+	 * Default value is 0, records are always decoded on the request thread.
+	 * 
+	 * @param storeModifyParallelDecodingThreshold minimum number of records,
+	 * 0 disables parallel decoding
+	 */
+	public void setStoreModifyParallelDecodingThreshold(int storeModifyParallelDecodingThreshold) {
+		Assert.isTrue(storeModifyParallelDecodingThreshold >= 0,
+				"storeModifyParallelDecodingThreshold must not be negative");
+		this.storeModifyParallelDecodingThreshold = storeModifyParallelDecodingThreshold;
+	}
+
+	public ExecutorService getStoreModifyDecodingExecutorService() {
+		return storeModifyDecodingExecutorService;
+	}
+
+	/**
+	 * Sets the thread pool used for decoding the records of large STORE_MODIFY
+	 * calls in parallel.
+	 * <p>
+	 * If storeModifyParallelDecodingThreshold is greater than 0 but no
+	 * storeModifyDecodingExecutorService is specified the library creates a
+	 * {@link Executors#newFixedThreadPool(int)} with one thread per available
+	 * processor.
+	 * 
+	 * @see #setStoreModifyParallelDecodingThreshold(int)
+	 * @param storeModifyDecodingExecutorService the new thread pool
+	 */
+	public void setStoreModifyDecodingExecutorService(ExecutorService storeModifyDecodingExecutorService) {
+		this.storeModifyDecodingExecutorService = storeModifyDecodingExecutorService;
+	}
+
+	public boolean isEagerStoreReadRequestParsing() {
+		return eagerStoreReadRequestParsing;
+	}
+
+	/**
+	 * If false the filters, sorters and groups of a STORE_READ call are
+	 * created the first time
+	 * {@link ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest#getFilters()}
+	 * , getSorters() or getGroups() is called. Methods that never look at them
+	 * do not pay for parsing them. If true they are created before the method
+	 * is called.
+	 * <p>
+	 * Default value is false
+	 * 
+	 * @param eagerStoreReadRequestParsing new flag
+	 */
+	public void setEagerStoreReadRequestParsing(boolean eagerStoreReadRequestParsing) {
+		this.eagerStoreReadRequestParsing = eagerStoreReadRequestParsing;
+	}
+
+	public List<ApiVariant> getApiVariants() {
+		return apiVariants;
+	}
+
+	/**
+	 * Specifies the api.js variants that are rendered when the application
+	 * context is refreshed, after all {@link ExtDirectMethod}s are registered.
+	 * For every variant the api.js and api-debug.js are rendered, encoded,
+	 * fingerprinted with an ETag and, if {@link #isCompressResponse()} is
+	 * true, compressed. Requests for a pre-rendered variant are answered from
+	 * these bytes without any further work. Other variants are still rendered
+	 * on the first request and cached.
+	 * <p>
+	 * Default value is null
+	 * 
+	 * @param apiVariants the variants to pre-render
+	 */
+	public void setApiVariants(List<ApiVariant> apiVariants) {
+		this.apiVariants = apiVariants;
+	}
+
+	public int getApiCacheMaximumSize() {
+		return apiCacheMaximumSize;
+	}
+
+	/**
+	 * Specifies the maximum number of api.js variants that are rendered on
+	 * request and kept in the {@link ApiCache}. The key of a variant contains
+	 * the router URL, which depends on the request URL and the fullRouterUrl
+	 * and baseRouterUrl parameters. The least recently used variants are
+	 * evicted when the limit is reached. Variants listed in
+	 * {@link #getApiVariants()} do not count against this limit.
+	 * <p>
+	 * Default value is {@link ApiCache#DEFAULT_MAXIMUM_SIZE}
+	 * 
+	 * @param apiCacheMaximumSize maximum number of cached variants
+	 */
+	public void setApiCacheMaximumSize(int apiCacheMaximumSize) {
+		Assert.isTrue(apiCacheMaximumSize >= 0, "apiCacheMaximumSize must not be negative");
+		this.apiCacheMaximumSize = apiCacheMaximumSize;
+	}
+
+	public boolean isAsyncRouter() {
+		return asyncRouter;
+	}
+
+	/**
+	 * If asyncRouter is true, the {@link RouterController} handles Ext Direct
+	 * calls with the asynchronous support of Servlet 3. The router starts an
+	 * {@link javax.servlet.AsyncContext}, runs every call of the request on
+	 * the {@link #getAsyncRouterExecutorService()} and returns the container
+	 * thread to the pool immediately. The response is written as soon as the
+	 * last call has finished.
+	 * <p>
+	 * The DispatcherServlet has to be configured with
+	 * &lt;async-supported&gt;true&lt;/async-supported&gt;. If the container
+	 * does not support asynchronous processing for the request the router
+	 * falls back to the synchronous processing.
+	 * <p>
+	 * The calls see a copy of the parameters, headers, locales and attributes
+	 * of the request that is taken before the container thread is returned.
+	 * Other parts of the request, like the input stream, must not be accessed
+	 * by a method that may still run after the {@link #getAsyncRouterTimeout()
+	 * timeout}.
+	 * <p>
+	 * This flag does not affect form posts, poll and SSE requests.
+	 * <p>
+	 * Default value is false
+	 * 
+	 * @see #setAsyncRouterExecutorService(ExecutorService)
+	 * @see #setAsyncRouterTimeout(Long)
+	 * @param asyncRouter new flag
+	 */
+	public void setAsyncRouter(boolean asyncRouter) {
+		this.asyncRouter = asyncRouter;
+	}
+
+	public ExecutorService getAsyncRouterExecutorService() {
+		return asyncRouterExecutorService;
+	}
+
+	/**
+	 * Sets the thread pool that executes the method calls when
+	 * {@link #isAsyncRouter()} is true. The pool should be sized for the
+	 * number of calls that are expected to wait concurrently on downstream
+	 * resources.
+	 * <p>
+	 * If asyncRouter is true but no asyncRouterExecutorService is specified
+	 * the library creates a pool with 10 threads and a queue that holds at
+	 * most 200 calls. If the pool rejects a call, the call is answered with an
+	 * exception response.
+	 * 
+	 * @see #setAsyncRouter(boolean)
+	 * @param asyncRouterExecutorService the new thread pool
+	 */
+	public void setAsyncRouterExecutorService(ExecutorService asyncRouterExecutorService) {
+		this.asyncRouterExecutorService = asyncRouterExecutorService;
+	}
+
+	public Long getAsyncRouterTimeout() {
+		return asyncRouterTimeout;
+	}
+
+	/**
+	 * Sets the timeout in milliseconds of the asynchronous processing when
+	 * {@link #isAsyncRouter()} is true. Calls that are not finished when the
+	 * timeout expires are answered with an exception response.
+	 * <p>
+	 * Default value is null and the timeout of the container is used.
+	 * 
+	 * @see #setAsyncRouter(boolean)
+	 * @param asyncRouterTimeout new timeout in milliseconds
+	 */
+	public void setAsyncRouterTimeout(Long asyncRouterTimeout) {
+		this.asyncRouterTimeout = asyncRouterTimeout;
+	}
+
 	public String getProviderType() {
 		return providerType;
 	}
@@ -17,7 +17,10 @@ package ch.ralscha.extdirectspring.controller;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -29,6 +32,7 @@ import org.springframework.format.support.FormattingConversionService;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.support.WebArgumentResolver;
 
+import ch.ralscha.extdirectspring.util.ApiCache;
 import ch.ralscha.extdirectspring.util.JsonHandler;
 import ch.ralscha.extdirectspring.util.ParametersResolver;
 
@@ -68,9 +72,23 @@ public class ConfigurationService implements InitializingBean, DisposableBean {
 			routerExceptionHandler = new DefaultRouterExceptionHandler(this);
 		}
 
-		if (configuration.getBatchedMethodsExecutionPolicy() == BatchedMethodsExecutionPolicy.CONCURRENT
+		BatchedMethodsExecutionPolicy executionPolicy = configuration.getBatchedMethodsExecutionPolicy();
+		if ((executionPolicy == BatchedMethodsExecutionPolicy.CONCURRENT
+				|| executionPolicy == BatchedMethodsExecutionPolicy.ADAPTIVE)
 				&& configuration.getBatchedMethodsExecutorService() == null) {
-			configuration.setBatchedMethodsExecutorService(Executors.newFixedThreadPool(5));
+			configuration.setBatchedMethodsExecutorService(new ThreadPoolExecutor(5, 5, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(100)));
+		}
+
+		if (configuration.getStoreModifyParallelDecodingThreshold() > 0
+				&& configuration.getStoreModifyDecodingExecutorService() == null) {
+			configuration.setStoreModifyDecodingExecutorService(Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors()));
+		}
+
+		if (configuration.isAsyncRouter() && configuration.getAsyncRouterExecutorService() == null) {
+			configuration.setAsyncRouterExecutorService(new ThreadPoolExecutor(10, 10, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(200)));
 		}
 
 		if (configuration.getConversionService() == null) {
@@ -96,8 +114,11 @@ public class ConfigurationService implements InitializingBean, DisposableBean {
 			}
 		}
 
+		ApiCache.INSTANCE.setMaximumSize(configuration.getApiCacheMaximumSize());
+
 		Collection<WebArgumentResolver> webResolvers = context.getBeansOfType(WebArgumentResolver.class).values();
-		parametersResolver = new ParametersResolver(configuration.getConversionService(), jsonHandler, webResolvers);
+		parametersResolver = new ParametersResolver(configuration.getConversionService(), jsonHandler, webResolvers,
+				configuration);
 	}
 
 	@Override
@@ -105,6 +126,12 @@ public class ConfigurationService implements InitializingBean, DisposableBean {
 		if (configuration.getBatchedMethodsExecutorService() != null) {
 			configuration.getBatchedMethodsExecutorService().shutdown();
 		}
+		if (configuration.getAsyncRouterExecutorService() != null) {
+			configuration.getAsyncRouterExecutorService().shutdown();
+		}
+		if (configuration.getStoreModifyDecodingExecutorService() != null) {
+			configuration.getStoreModifyDecodingExecutorService().shutdown();
+		}
 	}
 
 	public Configuration getConfiguration() {
@@ -16,12 +16,16 @@
 package ch.ralscha.extdirectspring.controller;
 
 import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationUtils;
@@ -32,26 +36,42 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.method.HandlerMethodSelector;
 
 import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
+import ch.ralscha.extdirectspring.util.MethodInfo;
 import ch.ralscha.extdirectspring.util.MethodInfoCache;
 
 /**
  * Spring application listener that listens for ContextRefreshedEvent events. If
  * such an event is received the listener will scan for ExtDirectMethod
  * annotated methods in the current ApplicationContext. Found methods will be
- * cached in the {@link MethodInfoCache}. The class also reports warnings and
- * errors of misconfigured methods.
+ * cached in the {@link MethodInfoCache}. All methods of one context replace
+ * the methods the context registered before with one atomic update. The class
+ * also reports warnings and errors of misconfigured methods. When a context is
+ * closed its methods are removed from the cache and release the beans they
+ * resolved from this context.
  */
 @Service
-public class MethodRegistrar implements ApplicationListener<ContextRefreshedEvent>, Ordered {
+public class MethodRegistrar implements ApplicationListener<ApplicationContextEvent>, Ordered {
 
 	private static final Log log = LogFactory.getLog(RouterController.class);
 
 	@Override
-	public void onApplicationEvent(ContextRefreshedEvent event) {
+	public void onApplicationEvent(ApplicationContextEvent event) {
+		if (event instanceof ContextRefreshedEvent) {
+			registerMethods((ContextRefreshedEvent) event);
+		} else if (event instanceof ContextClosedEvent) {
+			for (Map.Entry<MethodInfoCache.Key, MethodInfo> entry : MethodInfoCache.INSTANCE) {
+				entry.getValue().releaseBean(event.getApplicationContext());
+			}
+			MethodInfoCache.INSTANCE.removeAll(event.getApplicationContext());
+		}
+	}
+
+	private void registerMethods(ContextRefreshedEvent event) {
 
 		ApplicationContext context = (ApplicationContext) event.getSource();
 
 		String[] beanNames = context.getBeanNamesForType(Object.class);
+		Map<MethodInfoCache.Key, MethodInfo> methodInfos = new LinkedHashMap<MethodInfoCache.Key, MethodInfo>();
 
 		for (String beanName : beanNames) {
 
@@ -69,7 +89,8 @@ public class MethodRegistrar implements ApplicationListener<ContextRefreshedEven
 				ExtDirectMethod directMethodAnnotation = AnnotationUtils.findAnnotation(method, ExtDirectMethod.class);
 				final String beanAndMethodName = beanName + "." + method.getName();
 				if (directMethodAnnotation.value().isValid(beanAndMethodName, userType, method)) {
-					MethodInfoCache.INSTANCE.put(beanName, handlerType, method, event.getApplicationContext());
+					methodInfos.put(new MethodInfoCache.Key(beanName, method.getName()), new MethodInfo(handlerType,
+							event.getApplicationContext(), beanName, method));
 
 					// /CLOVER:OFF
 					if (log.isDebugEnabled()) {
@@ -85,6 +106,8 @@ public class MethodRegistrar implements ApplicationListener<ContextRefreshedEven
 			}
 
 		}
+
+		MethodInfoCache.INSTANCE.replaceAll(event.getApplicationContext(), methodInfos);
 	}
 
 	@Override
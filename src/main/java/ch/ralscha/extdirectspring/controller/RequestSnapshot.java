@@ -0,0 +1,196 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * Copy of the parameters, headers, locales and attributes of a request. The
+ * copy is taken on the container thread and used by the method calls of an
+ * asynchronously processed router request, because the container may recycle
+ * the request as soon as the asynchronous processing is completed, for
+ * example by a timeout, while a call is still running.
+ * <p>
+ * Attributes that are set or removed by a call only change the copy. All
+ * other methods are delegated to the original request and must not be used
+ * by a call after the asynchronous processing is completed.
+ */
+final class RequestSnapshot extends HttpServletRequestWrapper {
+
+	private static final String RFC1123_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+	private final Map<String, String[]> parameters;
+
+	private final Map<String, List<String>> headers;
+
+	private final List<Locale> locales;
+
+	private final ConcurrentMap<String, Object> attributes;
+
+	RequestSnapshot(HttpServletRequest request) {
+		super(request);
+
+		Map<String, String[]> parameterMap = new LinkedHashMap<String, String[]>();
+		for (Enumeration<String> names = request.getParameterNames(); names.hasMoreElements();) {
+			String name = names.nextElement();
+			parameterMap.put(name, request.getParameterValues(name));
+		}
+		this.parameters = Collections.unmodifiableMap(parameterMap);
+
+		this.headers = new LinkedCaseInsensitiveMap<List<String>>();
+		Enumeration<String> headerNames = request.getHeaderNames();
+		if (headerNames != null) {
+			while (headerNames.hasMoreElements()) {
+				String name = headerNames.nextElement();
+				this.headers.put(name, Collections.list(request.getHeaders(name)));
+			}
+		}
+
+		this.locales = Collections.list(request.getLocales());
+
+		this.attributes = new ConcurrentHashMap<String, Object>();
+		for (Enumeration<String> names = request.getAttributeNames(); names.hasMoreElements();) {
+			String name = names.nextElement();
+			Object value = request.getAttribute(name);
+			if (value != null) {
+				this.attributes.put(name, value);
+			}
+		}
+	}
+
+	@Override
+	public String getParameter(String name) {
+		String[] values = parameters.get(name);
+		if (values != null && values.length > 0) {
+			return values[0];
+		}
+		return null;
+	}
+
+	@Override
+	public String[] getParameterValues(String name) {
+		return parameters.get(name);
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(parameters.keySet());
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return parameters;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		if (values != null && !values.isEmpty()) {
+			return values.get(0);
+		}
+		return null;
+	}
+
+	@Override
+	public Enumeration<String> getHeaders(String name) {
+		List<String> values = headers.get(name);
+		if (values != null) {
+			return Collections.enumeration(values);
+		}
+		return Collections.enumeration(Collections.<String> emptyList());
+	}
+
+	@Override
+	public Enumeration<String> getHeaderNames() {
+		return Collections.enumeration(new ArrayList<String>(headers.keySet()));
+	}
+
+	@Override
+	public int getIntHeader(String name) {
+		String value = getHeader(name);
+		if (value == null) {
+			return -1;
+		}
+		return Integer.parseInt(value);
+	}
+
+	@Override
+	public long getDateHeader(String name) {
+		String value = getHeader(name);
+		if (value == null) {
+			return -1L;
+		}
+
+		SimpleDateFormat dateFormat = new SimpleDateFormat(RFC1123_DATE_FORMAT, Locale.US);
+		dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			return dateFormat.parse(value).getTime();
+		} catch (ParseException e) {
+			throw new IllegalArgumentException("Header '" + name + "' is not a date: " + value);
+		}
+	}
+
+	@Override
+	public Locale getLocale() {
+		return locales.isEmpty() ? Locale.getDefault() : locales.get(0);
+	}
+
+	@Override
+	public Enumeration<Locale> getLocales() {
+		return Collections.enumeration(locales);
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(new ArrayList<String>(attributes.keySet()));
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	@Override
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+}
@@ -17,16 +17,33 @@ package ch.ralscha.extdirectspring.controller;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,6 +52,7 @@ import javax.servlet.http.HttpSession;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.FileCopyUtils;
@@ -42,6 +60,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
@@ -59,9 +79,14 @@ import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadResult;
 import ch.ralscha.extdirectspring.bean.ExtDirectStoreResult;
 import ch.ralscha.extdirectspring.bean.JsonViewHint;
 import ch.ralscha.extdirectspring.bean.ModelAndJsonView;
+import ch.ralscha.extdirectspring.util.ContentEncoding;
 import ch.ralscha.extdirectspring.util.ExtDirectSpringUtil;
+import ch.ralscha.extdirectspring.util.JsonHandler;
 import ch.ralscha.extdirectspring.util.MethodInfo;
 import ch.ralscha.extdirectspring.util.MethodInfoCache;
+import ch.ralscha.extdirectspring.util.OutputBufferPool;
+import ch.ralscha.extdirectspring.util.SegmentedByteArrayOutputStream;
+import ch.ralscha.extdirectspring.util.ThresholdCompressingOutputStream;
 
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerationException;
@@ -168,7 +193,7 @@ public class RouterController {
 			streamResponse = configurationService.getConfiguration().isStreamResponse();
 		}
 
-		writeJsonResponse(response, directPollResponse, jsonView, streamResponse);
+		writeJsonResponse(request, response, directPollResponse, jsonView, streamResponse, false, methodInfo);
 	}
 
 	@RequestMapping(value = "/sse/{beanName}/{method}")
@@ -226,7 +251,8 @@ public class RouterController {
 			log.error("Error invoking method '" + extAction + "." + extMethod + "'. Method  or Bean not found");
 			handleMethodNotFoundError(directResponse, extAction, extMethod);
 		}
-		writeJsonResponse(response, directResponse, jsonView, streamResponse, ExtDirectSpringUtil.isMultipart(request));
+		writeJsonResponse(request, response, directResponse, jsonView, streamResponse,
+				ExtDirectSpringUtil.isMultipart(request), methodInfo);
 
 		return null;
 	}
@@ -234,54 +260,421 @@ public class RouterController {
 	@RequestMapping(value = "/router", method = RequestMethod.POST, params = "!extAction")
 	public void router(HttpServletRequest request, HttpServletResponse response, Locale locale) throws IOException {
 
-		Object requestData = configurationService.getJsonHandler().readValue(request.getInputStream(), Object.class);
-
-		List<ExtDirectRequest> directRequests = new ArrayList<ExtDirectRequest>();
-		if (requestData instanceof Map) {
-			directRequests.add(configurationService.getJsonHandler().convertValue(requestData, ExtDirectRequest.class));
-		} else if (requestData instanceof List) {
-			for (Object oneRequest : (List<?>) requestData) {
-				directRequests.add(configurationService.getJsonHandler().convertValue(oneRequest,
-						ExtDirectRequest.class));
-			}
-		}
+		List<ExtDirectRequest> directRequests = configurationService.getJsonHandler().readDirectRequests(
+				request.getInputStream());
 
-		if (directRequests.size() == 1
+		if (configurationService.getConfiguration().isAsyncRouter() && request.isAsyncSupported()) {
+			handleMethodCallsAsync(directRequests, request, response, locale);
+		} else if (directRequests.size() == 1
 				|| configurationService.getConfiguration().getBatchedMethodsExecutionPolicy() == BatchedMethodsExecutionPolicy.SEQUENTIAL) {
 			handleMethodCallsSequential(directRequests, request, response, locale);
 		} else if (configurationService.getConfiguration().getBatchedMethodsExecutionPolicy() == BatchedMethodsExecutionPolicy.CONCURRENT) {
-			handleMethodCallsConcurrent(directRequests, request, response, locale);
+			handleMethodCallsConcurrent(directRequests, request, response, locale, false);
+		} else if (configurationService.getConfiguration().getBatchedMethodsExecutionPolicy() == BatchedMethodsExecutionPolicy.ADAPTIVE) {
+			if (directRequests.size() > configurationService.getConfiguration().getBatchedMethodsConcurrencyThreshold()) {
+				handleMethodCallsConcurrent(directRequests, request, response, locale, true);
+			} else {
+				handleMethodCallsSequential(directRequests, request, response, locale);
+			}
+		}
+
+	}
+
+	private void handleMethodCallsAsync(List<ExtDirectRequest> directRequests, HttpServletRequest request,
+			final HttpServletResponse response, final Locale locale) {
+
+		AsyncContext asyncContext = request.startAsync(request, response);
+		Long timeout = configurationService.getConfiguration().getAsyncRouterTimeout();
+		if (timeout != null) {
+			asyncContext.setTimeout(timeout);
+		}
+
+		// taken on the container thread, a call that is still running when
+		// the asynchronous processing is completed by a timeout must not
+		// access the request that the container recycles
+		final HttpServletRequest requestSnapshot = new RequestSnapshot(request);
+
+		final AsyncMethodCalls asyncMethodCalls = new AsyncMethodCalls(asyncContext, directRequests,
+				requestSnapshot, response);
+		asyncContext.addListener(asyncMethodCalls);
+
+		if (directRequests.isEmpty()) {
+			asyncMethodCalls.complete();
+			return;
 		}
 
+		final ServletRequestAttributes requestAttributes = asyncMethodCalls.getRequestAttributes();
+
+		ExecutorService executorService = configurationService.getConfiguration().getAsyncRouterExecutorService();
+		for (int i = 0; i < directRequests.size(); i++) {
+			final int index = i;
+			final ExtDirectRequest directRequest = directRequests.get(i);
+			Runnable methodCall = new Runnable() {
+				@Override
+				public void run() {
+					if (asyncMethodCalls.isCompleted()) {
+						return;
+					}
+
+					RequestContextHolder.setRequestAttributes(requestAttributes);
+					LocaleContextHolder.setLocale(locale);
+					try {
+						asyncMethodCalls.callFinished(index,
+								handleMethodCall(directRequest, requestSnapshot, response, locale));
+					} finally {
+						LocaleContextHolder.resetLocaleContext();
+						RequestContextHolder.resetRequestAttributes();
+					}
+				}
+			};
+
+			try {
+				asyncMethodCalls.addFuture(executorService.submit(methodCall));
+			} catch (RejectedExecutionException e) {
+				// never run a call on the container thread
+				asyncMethodCalls.callFinished(index, createExceptionResponse(directRequest, requestSnapshot, e));
+			}
+		}
 	}
 
+	/**
+	 * Collects the responses of the calls of one asynchronously processed
+	 * router request. The thread that finishes the last call writes the
+	 * response and completes the {@link AsyncContext}. If the asynchronous
+	 * processing times out the unfinished calls are cancelled and answered
+	 * with an exception response.
+	 */
+	private final class AsyncMethodCalls implements AsyncListener {
+
+		private final AsyncContext asyncContext;
+
+		private final List<ExtDirectRequest> directRequests;
+
+		private final AtomicReferenceArray<ExtDirectResponse> directResponses;
+
+		private final List<Future<?>> futures = new CopyOnWriteArrayList<Future<?>>();
+
+		private final HttpServletRequest request;
+
+		private final HttpServletResponse response;
+
+		private final ServletRequestAttributes requestAttributes;
+
+		private final AtomicInteger pendingCalls;
+
+		private final AtomicBoolean completed = new AtomicBoolean(false);
+
+		AsyncMethodCalls(AsyncContext asyncContext, List<ExtDirectRequest> directRequests,
+				HttpServletRequest request, HttpServletResponse response) {
+			this.asyncContext = asyncContext;
+			this.directRequests = directRequests;
+			this.directResponses = new AtomicReferenceArray<ExtDirectResponse>(directRequests.size());
+			this.request = request;
+			this.response = response;
+			this.requestAttributes = new ServletRequestAttributes(request);
+			this.pendingCalls = new AtomicInteger(directRequests.size());
+		}
+
+		ServletRequestAttributes getRequestAttributes() {
+			return requestAttributes;
+		}
+
+		boolean isCompleted() {
+			return completed.get();
+		}
+
+		void addFuture(Future<?> future) {
+			futures.add(future);
+			if (completed.get()) {
+				future.cancel(true);
+			}
+		}
+
+		void callFinished(int index, ExtDirectResponse directResponse) {
+			directResponses.set(index, directResponse);
+			if (pendingCalls.decrementAndGet() == 0) {
+				complete();
+			}
+		}
+
+		void complete() {
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+
+			try {
+				cancelPendingCalls();
+
+				List<ExtDirectResponse> responses = new ArrayList<ExtDirectResponse>(directResponses.length());
+				boolean streamResponse = configurationService.getConfiguration().isStreamResponse();
+
+				for (int i = 0; i < directResponses.length(); i++) {
+					ExtDirectResponse directResponse = directResponses.get(i);
+					if (directResponse == null) {
+						directResponse = createTimeoutResponse(directRequests.get(i), request);
+					}
+					streamResponse = streamResponse || directResponse.isStreamResponse();
+					responses.add(directResponse);
+				}
+
+				writeJsonResponse(request, response, responses, streamResponse);
+			} catch (Exception e) {
+				log.error("Error writing response", e);
+			} finally {
+				requestAttributes.requestCompleted();
+				asyncContext.complete();
+			}
+		}
+
+		private void cancelPendingCalls() {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			complete();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+
+			try {
+				cancelPendingCalls();
+			} finally {
+				requestAttributes.requestCompleted();
+				asyncContext.complete();
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			// nothing to do here
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// nothing to do here
+		}
+	}
+
+	private ExtDirectResponse createTimeoutResponse(ExtDirectRequest directRequest, HttpServletRequest request) {
+		return createExceptionResponse(directRequest, request, new TimeoutException("Method '"
+				+ directRequest.getAction() + "." + directRequest.getMethod() + "' timed out"));
+	}
+
+	private ExtDirectResponse createExceptionResponse(ExtDirectRequest directRequest, HttpServletRequest request,
+			Exception exception) {
+		ExtDirectResponse directResponse = new ExtDirectResponse(directRequest);
+		MethodInfo methodInfo = MethodInfoCache.INSTANCE.get(directRequest.getAction(), directRequest.getMethod());
+		log.error("Error calling method: " + directRequest.getMethod(), exception);
+		if (methodInfo != null) {
+			directResponse.setResult(handleException(methodInfo, directResponse, exception, request));
+		} else {
+			handleMethodNotFoundError(directResponse, directRequest.getAction(), directRequest.getMethod());
+		}
+		return directResponse;
+	}
+
+	/**
+	 * Executes the calls of a batch in the batchedMethodsExecutorService. If
+	 * callerRunsFirst is true the first call runs on the calling thread while
+	 * the other calls are executed in the pool.
+	 */
 	private void handleMethodCallsConcurrent(List<ExtDirectRequest> directRequests, HttpServletRequest request,
-			HttpServletResponse response, Locale locale) throws JsonGenerationException, JsonMappingException,
-			IOException {
+			HttpServletResponse response, Locale locale, boolean callerRunsFirst) throws JsonGenerationException,
+			JsonMappingException, IOException {
 
-		Class<?> jsonView = null;
+		Configuration configuration = configurationService.getConfiguration();
+		long deadline = getBatchedMethodsDeadline();
+
+		BatchedResponseStreamingPolicy streamingPolicy = configuration.getBatchedResponseStreamingPolicy();
+		if (streamingPolicy == BatchedResponseStreamingPolicy.COMPLETION_ORDER) {
+			handleMethodCallsConcurrentInCompletionOrder(directRequests, request, response, locale,
+					callerRunsFirst, deadline);
+			return;
+		}
 
 		List<Future<ExtDirectResponse>> futures = new ArrayList<Future<ExtDirectResponse>>(directRequests.size());
-		for (ExtDirectRequest directRequest : directRequests) {
-			Callable<ExtDirectResponse> callable = createMethodCallCallable(directRequest, request, response, locale);
-			futures.add(configurationService.getConfiguration().getBatchedMethodsExecutorService().submit(callable));
+		for (int i = 0; i < directRequests.size(); i++) {
+			if (i == 0 && callerRunsFirst) {
+				futures.add(null);
+			} else {
+				futures.add(submitMethodCall(configuration.getBatchedMethodsExecutorService(),
+						createMethodCallCallable(directRequests.get(i), request, response, locale)));
+			}
+		}
+
+		if (callerRunsFirst) {
+			futures.set(0, runMethodCall(createMethodCallCallable(directRequests.get(0), request, response, locale)));
+		}
+
+		if (streamingPolicy == BatchedResponseStreamingPolicy.TID_ORDER) {
+			JsonGenerator jsonGenerator = startBatchedJsonResponse(response);
+			for (int i = 0; i < futures.size(); i++) {
+				writeBatchedJsonResponse(jsonGenerator,
+						getMethodCallResponse(futures.get(i), directRequests.get(i), request, deadline));
+			}
+			finishBatchedJsonResponse(jsonGenerator);
+			return;
 		}
 
 		List<ExtDirectResponse> directResponses = new ArrayList<ExtDirectResponse>(directRequests.size());
-		boolean streamResponse = configurationService.getConfiguration().isStreamResponse();
-		for (Future<ExtDirectResponse> future : futures) {
+		boolean streamResponse = configuration.isStreamResponse();
+		for (int i = 0; i < futures.size(); i++) {
+			ExtDirectResponse directResponse = getMethodCallResponse(futures.get(i), directRequests.get(i), request,
+					deadline);
+			streamResponse = streamResponse || directResponse.isStreamResponse();
+			directResponses.add(directResponse);
+		}
+		writeJsonResponse(request, response, directResponses, streamResponse);
+	}
+
+	private void handleMethodCallsConcurrentInCompletionOrder(List<ExtDirectRequest> directRequests,
+			HttpServletRequest request, HttpServletResponse response, Locale locale, boolean callerRunsFirst,
+			long deadline) throws IOException {
+
+		CompletionService<ExtDirectResponse> completionService = new ExecutorCompletionService<ExtDirectResponse>(
+				configurationService.getConfiguration().getBatchedMethodsExecutorService());
+		Map<Future<ExtDirectResponse>, Integer> pendingCalls = new IdentityHashMap<Future<ExtDirectResponse>, Integer>();
+
+		JsonGenerator jsonGenerator = startBatchedJsonResponse(response);
+
+		for (int i = callerRunsFirst ? 1 : 0; i < directRequests.size(); i++) {
+			Callable<ExtDirectResponse> callable = createMethodCallCallable(directRequests.get(i), request, response,
+					locale);
 			try {
-				ExtDirectResponse directResponse = future.get();
-				streamResponse = streamResponse || directResponse.isStreamResponse();
-				jsonView = directResponse.getJsonView();
-				directResponses.add(directResponse);
-			} catch (InterruptedException e) {
-				log.error("Error invoking method", e);
-			} catch (ExecutionException e) {
-				log.error("Error invoking method", e);
+				pendingCalls.put(completionService.submit(callable), i);
+			} catch (RejectedExecutionException e) {
+				writeBatchedJsonResponse(jsonGenerator,
+						getMethodCallResponse(runMethodCall(callable), directRequests.get(i), request, deadline));
+			}
+		}
+
+		if (callerRunsFirst) {
+			writeBatchedJsonResponse(jsonGenerator,
+					handleMethodCall(directRequests.get(0), request, response, locale));
+		}
+
+		try {
+			while (!pendingCalls.isEmpty()) {
+				Future<ExtDirectResponse> future;
+				if (deadline != 0) {
+					future = completionService.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				} else {
+					future = completionService.take();
+				}
+
+				if (future == null) {
+					break;
+				}
+
+				int index = pendingCalls.remove(future);
+				writeBatchedJsonResponse(jsonGenerator,
+						getMethodCallResponse(future, directRequests.get(index), request, deadline));
 			}
+		} catch (InterruptedException e) {
+			log.error("Error invoking method", e);
+			Thread.currentThread().interrupt();
 		}
-		writeJsonResponse(response, directResponses, jsonView, streamResponse);
+
+		for (Map.Entry<Future<ExtDirectResponse>, Integer> entry : pendingCalls.entrySet()) {
+			entry.getKey().cancel(true);
+			writeBatchedJsonResponse(jsonGenerator, createTimeoutResponse(directRequests.get(entry.getValue()), request));
+		}
+
+		finishBatchedJsonResponse(jsonGenerator);
+	}
+
+	/**
+	 * @return the point in time (System.nanoTime()) when the calls of a batch
+	 *         are timed out, 0 if there is no timeout
+	 */
+	private long getBatchedMethodsDeadline() {
+		Long timeout = configurationService.getConfiguration().getBatchedMethodsTimeout();
+		if (timeout == null) {
+			return 0;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		return deadline != 0 ? deadline : 1;
+	}
+
+	/**
+	 * Submits a call to the executor. If the executor rejects the call it is
+	 * executed on the calling thread.
+	 */
+	private static Future<ExtDirectResponse> submitMethodCall(ExecutorService executorService,
+			Callable<ExtDirectResponse> callable) {
+		try {
+			return executorService.submit(callable);
+		} catch (RejectedExecutionException e) {
+			return runMethodCall(callable);
+		}
+	}
+
+	private static Future<ExtDirectResponse> runMethodCall(Callable<ExtDirectResponse> callable) {
+		FutureTask<ExtDirectResponse> futureTask = new FutureTask<ExtDirectResponse>(callable);
+		futureTask.run();
+		return futureTask;
+	}
+
+	/**
+	 * Waits for the result of a call until the deadline expires. Calls that
+	 * are not finished in time are cancelled and answered with an exception
+	 * response.
+	 */
+	private ExtDirectResponse getMethodCallResponse(Future<ExtDirectResponse> future,
+			ExtDirectRequest directRequest, HttpServletRequest request, long deadline) {
+		try {
+			if (deadline != 0) {
+				return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+			return future.get();
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			return createTimeoutResponse(directRequest, request);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			return createExceptionResponse(directRequest, request, e);
+		} catch (ExecutionException e) {
+			return createExceptionResponse(directRequest, request, e);
+		}
+	}
+
+	/**
+	 * Sets the headers of a streamed batch response, opens the JSON array and
+	 * flushes it to the client.
+	 */
+	private JsonGenerator startBatchedJsonResponse(HttpServletResponse response) throws IOException {
+		response.setContentType(APPLICATION_JSON.toString());
+		response.setCharacterEncoding(APPLICATION_JSON.getCharSet().name());
+
+		ObjectMapper objectMapper = configurationService.getJsonHandler().getMapper();
+		JsonGenerator jsonGenerator = objectMapper.getFactory().createJsonGenerator(response.getOutputStream(),
+				JsonEncoding.UTF8);
+		jsonGenerator.writeStartArray();
+		jsonGenerator.flush();
+		return jsonGenerator;
+	}
+
+	/**
+	 * Writes one element of a streamed batch response with its own json view
+	 * and flushes it to the client.
+	 */
+	private void writeBatchedJsonResponse(JsonGenerator jsonGenerator, ExtDirectResponse directResponse)
+			throws IOException {
+		configurationService.getJsonHandler().writeValue(jsonGenerator, directResponse, directResponse.getJsonView());
+		jsonGenerator.flush();
+	}
+
+	private static void finishBatchedJsonResponse(JsonGenerator jsonGenerator) throws IOException {
+		jsonGenerator.writeEndArray();
+		jsonGenerator.close();
 	}
 
 	private Callable<ExtDirectResponse> createMethodCallCallable(final ExtDirectRequest directRequest,
@@ -299,16 +692,14 @@ public class RouterController {
 			IOException {
 		List<ExtDirectResponse> directResponses = new ArrayList<ExtDirectResponse>(directRequests.size());
 		boolean streamResponse = configurationService.getConfiguration().isStreamResponse();
-		Class<?> jsonView = null;
 
 		for (ExtDirectRequest directRequest : directRequests) {
 			ExtDirectResponse directResponse = handleMethodCall(directRequest, request, response, locale);
 			streamResponse = streamResponse || directResponse.isStreamResponse();
-			jsonView = directResponse.getJsonView();
 			directResponses.add(directResponse);
 		}
 
-		writeJsonResponse(response, directResponses, jsonView, streamResponse);
+		writeJsonResponse(request, response, directResponses, streamResponse);
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
@@ -385,21 +776,98 @@ public class RouterController {
 
 	public void writeJsonResponse(HttpServletRequest request, HttpServletResponse response, Object responseObject,
 			Class<?> jsonView) throws IOException, JsonGenerationException, JsonMappingException {
-		writeJsonResponse(response, responseObject, jsonView, configurationService.getConfiguration()
-				.isStreamResponse(), ExtDirectSpringUtil.isMultipart(request));
+		writeJsonResponse(request, response, responseObject, jsonView, configurationService.getConfiguration()
+				.isStreamResponse(), ExtDirectSpringUtil.isMultipart(request), getMethodInfo(responseObject));
 	}
 
-	private void writeJsonResponse(HttpServletResponse response, Object responseObject, Class<?> jsonView,
-			boolean streamResponse) throws IOException, JsonGenerationException, JsonMappingException {
-		writeJsonResponse(response, responseObject, jsonView, streamResponse, false);
+	/**
+	 * Writes the responses of a batch as JSON array. Every response is
+	 * serialized with its own json view.
+	 */
+	private void writeJsonResponse(HttpServletRequest request, HttpServletResponse response,
+			List<ExtDirectResponse> directResponses, boolean streamResponse) throws IOException {
+
+		response.setContentType(APPLICATION_JSON.toString());
+		response.setCharacterEncoding(APPLICATION_JSON.getCharSet().name());
+
+		ServletOutputStream outputStream = response.getOutputStream();
+		JsonHandler jsonHandler = configurationService.getJsonHandler();
+
+		if (!streamResponse) {
+			MethodInfo[] methodInfos = new MethodInfo[directResponses.size()];
+			long sizeHint = 0;
+			for (int i = 0; i < methodInfos.length; i++) {
+				ExtDirectResponse directResponse = directResponses.get(i);
+				methodInfos[i] = MethodInfoCache.INSTANCE.get(directResponse.getAction(), directResponse.getMethod());
+				if (methodInfos[i] != null) {
+					sizeHint += methodInfos[i].getResponseSizeHistogram().getSizeHint();
+				}
+			}
+
+			SegmentedByteArrayOutputStream buffer = OutputBufferPool.INSTANCE.acquire((int) Math.min(sizeHint,
+					Integer.MAX_VALUE));
+			try {
+				JsonGenerator jsonGenerator = jsonHandler.getMapper().getFactory()
+						.createJsonGenerator(buffer, JsonEncoding.UTF8);
+				jsonGenerator.writeStartArray();
+				for (ExtDirectResponse directResponse : directResponses) {
+					jsonHandler.writeValue(jsonGenerator, directResponse, directResponse.getJsonView());
+				}
+				jsonGenerator.writeEndArray();
+				jsonGenerator.close();
+
+				// flushing the generator after every element only to measure
+				// it is too expensive, every method of the batch records an
+				// equal share of the batch instead
+				if (methodInfos.length > 0) {
+					int elementSize = buffer.size() / methodInfos.length;
+					for (MethodInfo methodInfo : methodInfos) {
+						if (methodInfo != null) {
+							methodInfo.getResponseSizeHistogram().record(elementSize);
+						}
+					}
+				}
+
+				writeBuffer(request, response, buffer);
+			} finally {
+				OutputBufferPool.INSTANCE.release(buffer);
+			}
+		} else {
+			JsonGenerator jsonGenerator = createStreamJsonGenerator(jsonHandler.getMapper(), request, response);
+			jsonGenerator.writeStartArray();
+			for (ExtDirectResponse directResponse : directResponses) {
+				jsonHandler.writeValue(jsonGenerator, directResponse, directResponse.getJsonView());
+			}
+			jsonGenerator.writeEndArray();
+			jsonGenerator.close();
+		}
+
+		outputStream.flush();
 	}
 
-	@SuppressWarnings("resource")
 	public void writeJsonResponse(HttpServletResponse response, Object responseObject, Class<?> jsonView,
 			boolean streamResponse, boolean isMultipart) throws IOException, JsonGenerationException,
 			JsonMappingException {
 
-		ObjectMapper objectMapper = configurationService.getJsonHandler().getMapper();
+		writeJsonResponse(null, response, responseObject, jsonView, streamResponse, isMultipart,
+				getMethodInfo(responseObject));
+	}
+
+	private static MethodInfo getMethodInfo(Object responseObject) {
+		if (responseObject instanceof ExtDirectResponse) {
+			ExtDirectResponse directResponse = (ExtDirectResponse) responseObject;
+			return MethodInfoCache.INSTANCE.get(directResponse.getAction(), directResponse.getMethod());
+		}
+		return null;
+	}
+
+	@SuppressWarnings("resource")
+	private void writeJsonResponse(HttpServletRequest request, HttpServletResponse response, Object responseObject,
+			Class<?> jsonView, boolean streamResponse, boolean isMultipart, MethodInfo methodInfo)
+			throws IOException, JsonGenerationException, JsonMappingException {
+
+		JsonHandler jsonHandler = configurationService.getJsonHandler();
+		ObjectMapper objectMapper = jsonHandler.getMapper();
 
 		if (isMultipart) {
 			response.setContentType(RouterController.TEXT_HTML.toString());
@@ -412,7 +880,7 @@ public class RouterController {
 			if (jsonView == null) {
 				responseJson = objectMapper.writeValueAsString(responseObject);
 			} else {
-				responseJson = objectMapper.writerWithView(jsonView).writeValueAsString(responseObject);
+				responseJson = jsonHandler.getWriterWithView(jsonView).writeValueAsString(responseObject);
 			}
 
 			responseJson = responseJson.replace("&quot;", "\\&quot;");
@@ -436,26 +904,24 @@ public class RouterController {
 			ServletOutputStream outputStream = response.getOutputStream();
 
 			if (!streamResponse) {
-				ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
-				JsonGenerator jsonGenerator = objectMapper.getFactory().createJsonGenerator(bos, JsonEncoding.UTF8);
-
-				if (jsonView == null) {
-					objectMapper.writeValue(jsonGenerator, responseObject);
-				} else {
-					objectMapper.writerWithView(jsonView).writeValue(jsonGenerator, responseObject);
+				int sizeHint = methodInfo != null ? methodInfo.getResponseSizeHistogram().getSizeHint() : 0;
+				SegmentedByteArrayOutputStream buffer = OutputBufferPool.INSTANCE.acquire(sizeHint);
+				try {
+					JsonGenerator jsonGenerator = objectMapper.getFactory().createJsonGenerator(buffer,
+							JsonEncoding.UTF8);
+					jsonHandler.writeValue(jsonGenerator, responseObject, jsonView);
+					jsonGenerator.close();
+
+					if (methodInfo != null) {
+						methodInfo.getResponseSizeHistogram().record(buffer.size());
+					}
+					writeBuffer(request, response, buffer);
+				} finally {
+					OutputBufferPool.INSTANCE.release(buffer);
 				}
-
-				response.setContentLength(bos.size());
-				outputStream.write(bos.toByteArray());
-				jsonGenerator.close();
 			} else {
-				JsonGenerator jsonGenerator = objectMapper.getFactory().createJsonGenerator(outputStream,
-						JsonEncoding.UTF8);
-				if (jsonView == null) {
-					objectMapper.writeValue(jsonGenerator, responseObject);
-				} else {
-					objectMapper.writerWithView(jsonView).writeValue(jsonGenerator, responseObject);
-				}
+				JsonGenerator jsonGenerator = createStreamJsonGenerator(objectMapper, request, response);
+				jsonHandler.writeValue(jsonGenerator, responseObject, jsonView);
 				jsonGenerator.close();
 			}
 
@@ -463,6 +929,60 @@ public class RouterController {
 		}
 	}
 
+	/**
+	 * Writes a buffered response. The response is compressed if the
+	 * configuration and the client allow it.
+	 */
+	private void writeBuffer(HttpServletRequest request, HttpServletResponse response,
+			SegmentedByteArrayOutputStream buffer) throws IOException {
+		Configuration configuration = configurationService.getConfiguration();
+		ContentEncoding contentEncoding = ExtDirectSpringUtil.getContentEncoding(request, response, configuration,
+				buffer.size());
+
+		if (contentEncoding == null) {
+			response.setContentLength(buffer.size());
+			buffer.writeTo(response.getOutputStream());
+		} else {
+			ExtDirectSpringUtil.setContentEncodingHeader(response, contentEncoding);
+			DeflaterOutputStream compressedOutputStream = contentEncoding.wrap(response.getOutputStream(),
+					configuration.getCompressionLevel());
+			buffer.writeTo(compressedOutputStream);
+			compressedOutputStream.close();
+		}
+	}
+
+	/**
+	 * Creates the generator of a streamed response. If the response may be
+	 * compressed the generator does not pass its flushes after every value on
+	 * to the stream, they would stop the
+	 * {@link ThresholdCompressingOutputStream} from compressing the response.
+	 */
+	private JsonGenerator createStreamJsonGenerator(ObjectMapper objectMapper, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		OutputStream outputStream = createStreamOutputStream(request, response);
+		JsonGenerator jsonGenerator = objectMapper.getFactory().createJsonGenerator(outputStream, JsonEncoding.UTF8);
+		if (outputStream instanceof ThresholdCompressingOutputStream) {
+			jsonGenerator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+		}
+		return jsonGenerator;
+	}
+
+	/**
+	 * Returns the stream a streamed response is written to. If the
+	 * configuration and the client allow compression the response is
+	 * compressed as soon as it exceeds the compression threshold.
+	 */
+	private OutputStream createStreamOutputStream(HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		Configuration configuration = configurationService.getConfiguration();
+		ContentEncoding contentEncoding = ExtDirectSpringUtil.getContentEncoding(request, response, configuration, -1);
+		if (contentEncoding == null) {
+			return response.getOutputStream();
+		}
+		return new ThresholdCompressingOutputStream(response, contentEncoding,
+				configuration.getCompressionThreshold(), configuration.getCompressionLevel());
+	}
+
 	private Object processRemotingRequest(HttpServletRequest request, HttpServletResponse response, Locale locale,
 			ExtDirectRequest directRequest, MethodInfo methodInfo) throws Exception {
 
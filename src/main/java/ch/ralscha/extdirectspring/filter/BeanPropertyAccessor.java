@@ -0,0 +1,112 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Reads a (possibly nested, dot separated) property of a bean through the
+ * getter methods resolved once per bean class and property path.
+ */
+final class BeanPropertyAccessor {
+
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, BeanPropertyAccessor>> cache = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, BeanPropertyAccessor>>();
+
+	private final String path;
+
+	private final Method[] readMethods;
+
+	private final Class<?> propertyType;
+
+	private BeanPropertyAccessor(Class<?> beanClass, String path) {
+		this.path = path;
+		String[] names = path.split("\\.");
+		this.readMethods = new Method[names.length];
+		Class<?> currentClass = beanClass;
+		for (int i = 0; i < names.length; i++) {
+			PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(currentClass, names[i]);
+			if (pd == null || pd.getReadMethod() == null) {
+				throw new IllegalArgumentException("Property '" + path + "' is not readable on "
+						+ beanClass.getName());
+			}
+			readMethods[i] = pd.getReadMethod();
+			ReflectionUtils.makeAccessible(readMethods[i]);
+			currentClass = pd.getPropertyType();
+		}
+		this.propertyType = ClassUtils.resolvePrimitiveIfNecessary(currentClass);
+	}
+
+	/**
+	 * Returns the accessor for the property path of the bean class. Accessors
+	 * are cached, resolving the same path twice does not introspect the class
+	 * again.
+	 * 
+	 * @throws IllegalArgumentException if a property along the path does not
+	 *             have a getter
+	 */
+	static BeanPropertyAccessor forProperty(Class<?> beanClass, String path) {
+		ConcurrentMap<String, BeanPropertyAccessor> accessors = cache.get(beanClass);
+		if (accessors == null) {
+			accessors = new ConcurrentHashMap<String, BeanPropertyAccessor>();
+			ConcurrentMap<String, BeanPropertyAccessor> existing = cache.putIfAbsent(beanClass, accessors);
+			if (existing != null) {
+				accessors = existing;
+			}
+		}
+
+		BeanPropertyAccessor accessor = accessors.get(path);
+		if (accessor == null) {
+			accessor = new BeanPropertyAccessor(beanClass, path);
+			accessors.put(path, accessor);
+		}
+		return accessor;
+	}
+
+	String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return type of the property. Primitive types are returned as their
+	 *         wrapper type
+	 */
+	Class<?> getPropertyType() {
+		return propertyType;
+	}
+
+	/**
+	 * @return value of the property or null if the property or one of the
+	 *         intermediate properties of a nested path is null
+	 */
+	Object getValue(Object bean) {
+		Object current = bean;
+		for (Method readMethod : readMethods) {
+			if (current == null) {
+				return null;
+			}
+			current = ReflectionUtils.invokeMethod(readMethod, current);
+		}
+		return current;
+	}
+
+}
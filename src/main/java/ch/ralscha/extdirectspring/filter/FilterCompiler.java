@@ -0,0 +1,436 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.filter.FilterPredicate.FilterMatcher;
+
+/**
+ * Compiles {@link Filter} instances into a {@link FilterPredicate} that can be
+ * applied to in-memory collections.
+ * <p>
+ * All the work that does not depend on the tested object is done once during
+ * compilation: the getter methods are resolved and cached per class, numeric
+ * filter values are converted to the representation of the property type,
+ * date filter values are parsed and list filter values are put into a hash
+ * set. The resulting predicate can be reused for any number of objects and
+ * threads.
+ * <p>
+ * Semantics of the filters:
+ * <ul>
+ * <li>{@link StringFilter}: case insensitive 'contains' on the string
+ * representation of the property</li>
+ * <li>{@link NumericFilter}: compares the number with the {@link Comparison}
+ * (default {@link Comparison#EQUAL}).</li>
+ * <li>{@link DateFilter}: parses the value with the date pattern and compares
+ * whole days in the time zone. Supported property types are {@link Date},
+ * {@link Calendar} and {@link Long} (milliseconds since epoch)</li>
+ * <li>{@link ListFilter}: the string representation of the property (name for
+ * enums) is one of the values</li>
+ * <li>{@link BooleanFilter}: the property is equal to the value</li>
+ * </ul>
+ * A null property never matches, except for a {@link Comparison#NOT_EQUAL}
+ * comparison.
+ */
+public final class FilterCompiler {
+
+	/**
+	 * Date format the date filter of Ext JS sends by default ('m/d/Y')
+	 */
+	public static final String DEFAULT_DATE_PATTERN = "MM/dd/yyyy";
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private FilterCompiler() {
+		// singleton
+	}
+
+	/**
+	 * Compiles the filters of the request into a predicate for the bean class,
+	 * using the {@link #DEFAULT_DATE_PATTERN}
+	 * 
+	 * @throws IllegalArgumentException if a filtered property does not exist
+	 *             or the filter is not applicable to the property type
+	 */
+	public static <T> FilterPredicate<T> compile(Class<T> beanClass, ExtDirectStoreReadRequest request) {
+		return compile(beanClass, request.getFilters(), DEFAULT_DATE_PATTERN, TimeZone.getDefault());
+	}
+
+	/**
+	 * Compiles the filters into a predicate for the bean class, using the
+	 * {@link #DEFAULT_DATE_PATTERN}
+	 * 
+	 * @throws IllegalArgumentException if a filtered property does not exist
+	 *             or the filter is not applicable to the property type
+	 */
+	public static <T> FilterPredicate<T> compile(Class<T> beanClass, Collection<? extends Filter> filters) {
+		return compile(beanClass, filters, DEFAULT_DATE_PATTERN, TimeZone.getDefault());
+	}
+
+	/**
+	 * Compiles the filters into a predicate for the bean class.
+	 * 
+	 * @param beanClass class of the objects the predicate is applied to
+	 * @param filters the filters, null entries are ignored
+	 * @param datePattern {@link SimpleDateFormat} pattern of the values of
+	 *            {@link DateFilter}s
+	 * @param timeZone time zone that defines the day boundaries of
+	 *            {@link DateFilter}s
+	 * @throws IllegalArgumentException if a filtered property does not exist
+	 *             or the filter is not applicable to the property type
+	 */
+	public static <T> FilterPredicate<T> compile(Class<T> beanClass, Collection<? extends Filter> filters,
+			String datePattern, TimeZone timeZone) {
+		List<FilterMatcher> matchers = new ArrayList<FilterMatcher>();
+		if (filters != null) {
+			for (Filter filter : filters) {
+				if (filter != null) {
+					BeanPropertyAccessor accessor = BeanPropertyAccessor.forProperty(beanClass, filter.getField());
+					matchers.add(createMatcher(accessor, filter, datePattern, timeZone));
+				}
+			}
+		}
+		return new FilterPredicate<T>(beanClass, matchers);
+	}
+
+	private static FilterMatcher createMatcher(BeanPropertyAccessor accessor, Filter filter, String datePattern,
+			TimeZone timeZone) {
+		if (filter instanceof StringFilter) {
+			return new StringMatcher(accessor, ((StringFilter) filter).getValue());
+		} else if (filter instanceof NumericFilter) {
+			NumericFilter numericFilter = (NumericFilter) filter;
+			return createNumericMatcher(accessor, numericFilter.getValue(), comparison(numericFilter.getComparison()));
+		} else if (filter instanceof DateFilter) {
+			DateFilter dateFilter = (DateFilter) filter;
+			return createDateMatcher(accessor, dateFilter.getValue(), comparison(dateFilter.getComparison()),
+					datePattern, timeZone);
+		} else if (filter instanceof ListFilter) {
+			return new ListMatcher(accessor, ((ListFilter) filter).getValue());
+		} else if (filter instanceof BooleanFilter) {
+			return new BooleanMatcher(accessor, ((BooleanFilter) filter).getValue());
+		}
+		throw new IllegalArgumentException("Filter not supported: " + filter);
+	}
+
+	static Comparison comparison(Comparison comparison) {
+		if (comparison == null) {
+			return Comparison.EQUAL;
+		}
+		if (comparison == Comparison.LIKE || comparison == Comparison.IN) {
+			throw new IllegalArgumentException("Comparison " + comparison + " not supported for numbers and dates");
+		}
+		return comparison;
+	}
+
+	private static boolean test(Comparison comparison, int compareResult) {
+		switch (comparison) {
+		case LESS_THAN:
+			return compareResult < 0;
+		case LESS_THAN_OR_EQUAL:
+			return compareResult <= 0;
+		case GREATER_THAN:
+			return compareResult > 0;
+		case GREATER_THAN_OR_EQUAL:
+			return compareResult >= 0;
+		case NOT_EQUAL:
+			return compareResult != 0;
+		default:
+			return compareResult == 0;
+		}
+	}
+
+	private static FilterMatcher createNumericMatcher(BeanPropertyAccessor accessor, Number value,
+			Comparison comparison) {
+		Class<?> type = accessor.getPropertyType();
+		if (!Number.class.isAssignableFrom(type)) {
+			throw new IllegalArgumentException("Property '" + accessor.getPath() + "' is not a number");
+		}
+		if (value == null) {
+			return new NullMatcher(accessor, comparison);
+		}
+		if (type == BigDecimal.class || type == BigInteger.class) {
+			return new BigDecimalMatcher(accessor, toBigDecimal(value), comparison);
+		}
+		if (isIntegral(type) && isIntegral(value.getClass())) {
+			return new LongMatcher(accessor, value.longValue(), comparison);
+		}
+		return new DoubleMatcher(accessor, value.doubleValue(), comparison);
+	}
+
+	private static boolean isIntegral(Class<?> type) {
+		return type == Long.class || type == Integer.class || type == Short.class || type == Byte.class;
+	}
+
+	static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		} else if (number instanceof BigInteger) {
+			return new BigDecimal((BigInteger) number);
+		} else if (isIntegral(number.getClass())) {
+			return BigDecimal.valueOf(number.longValue());
+		}
+		return new BigDecimal(number.toString());
+	}
+
+	private static FilterMatcher createDateMatcher(BeanPropertyAccessor accessor, String value,
+			Comparison comparison, String datePattern, TimeZone timeZone) {
+		Class<?> type = accessor.getPropertyType();
+		if (!Date.class.isAssignableFrom(type) && !Calendar.class.isAssignableFrom(type) && type != Long.class) {
+			throw new IllegalArgumentException("Property '" + accessor.getPath() + "' is not a date");
+		}
+		if (value == null) {
+			return new NullMatcher(accessor, comparison);
+		}
+
+		long[] day = parseDay(value, datePattern, timeZone);
+		return new DateMatcher(accessor, day[0], day[1], comparison);
+	}
+
+	/**
+	 * Parses the value of a {@link DateFilter}.
+	 * 
+	 * @return start of the day and start of the following day in milliseconds
+	 * @throws IllegalArgumentException if the value does not match the pattern
+	 */
+	static long[] parseDay(String value, String datePattern, TimeZone timeZone) {
+		SimpleDateFormat format = new SimpleDateFormat(datePattern, Locale.ENGLISH);
+		format.setLenient(false);
+		format.setTimeZone(timeZone);
+		Date date;
+		try {
+			date = format.parse(value);
+		} catch (ParseException e) {
+			throw new IllegalArgumentException("Date '" + value + "' does not match pattern '" + datePattern + "'", e);
+		}
+
+		Calendar calendar = Calendar.getInstance(timeZone, Locale.ENGLISH);
+		calendar.setTime(date);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		long dayStart = calendar.getTimeInMillis();
+		calendar.add(Calendar.DAY_OF_MONTH, 1);
+		return new long[] { dayStart, calendar.getTimeInMillis() };
+	}
+
+	private static final class NullMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final boolean notEqual;
+
+		NullMatcher(BeanPropertyAccessor accessor, Comparison comparison) {
+			this.accessor = accessor;
+			this.notEqual = comparison == Comparison.NOT_EQUAL;
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			return (accessor.getValue(bean) == null) != notEqual;
+		}
+	}
+
+	private static final class StringMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final String lowerCaseValue;
+
+		StringMatcher(BeanPropertyAccessor accessor, String value) {
+			this.accessor = accessor;
+			this.lowerCaseValue = value != null ? value.toLowerCase(Locale.ENGLISH) : null;
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			Object value = accessor.getValue(bean);
+			if (value == null || lowerCaseValue == null) {
+				return value == lowerCaseValue;
+			}
+			return value.toString().toLowerCase(Locale.ENGLISH).contains(lowerCaseValue);
+		}
+	}
+
+	private static final class LongMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final long value;
+
+		private final Comparison comparison;
+
+		LongMatcher(BeanPropertyAccessor accessor, long value, Comparison comparison) {
+			this.accessor = accessor;
+			this.value = value;
+			this.comparison = comparison;
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			Number number = (Number) accessor.getValue(bean);
+			if (number == null) {
+				return comparison == Comparison.NOT_EQUAL;
+			}
+			long l = number.longValue();
+			return test(comparison, l < value ? -1 : (l == value ? 0 : 1));
+		}
+	}
+
+	private static final class DoubleMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final double value;
+
+		private final Comparison comparison;
+
+		DoubleMatcher(BeanPropertyAccessor accessor, double value, Comparison comparison) {
+			this.accessor = accessor;
+			this.value = value;
+			this.comparison = comparison;
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			Number number = (Number) accessor.getValue(bean);
+			if (number == null) {
+				return comparison == Comparison.NOT_EQUAL;
+			}
+			double d = number.doubleValue();
+			return test(comparison, d < value ? -1 : (d == value ? 0 : 1));
+		}
+	}
+
+	private static final class BigDecimalMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final BigDecimal value;
+
+		private final Comparison comparison;
+
+		BigDecimalMatcher(BeanPropertyAccessor accessor, BigDecimal value, Comparison comparison) {
+			this.accessor = accessor;
+			this.value = value;
+			this.comparison = comparison;
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			Number number = (Number) accessor.getValue(bean);
+			if (number == null) {
+				return comparison == Comparison.NOT_EQUAL;
+			}
+			return test(comparison, toBigDecimal(number).compareTo(value));
+		}
+	}
+
+	private static final class DateMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final long dayStart;
+
+		private final long nextDayStart;
+
+		private final Comparison comparison;
+
+		DateMatcher(BeanPropertyAccessor accessor, long dayStart, long nextDayStart, Comparison comparison) {
+			this.accessor = accessor;
+			this.dayStart = dayStart;
+			this.nextDayStart = nextDayStart;
+			this.comparison = comparison;
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			Object value = accessor.getValue(bean);
+			if (value == null) {
+				return comparison == Comparison.NOT_EQUAL;
+			}
+
+			long millis;
+			if (value instanceof Date) {
+				millis = ((Date) value).getTime();
+			} else if (value instanceof Calendar) {
+				millis = ((Calendar) value).getTimeInMillis();
+			} else {
+				millis = ((Long) value).longValue();
+			}
+
+			// compares whole days: the day of the filter is [dayStart,
+			// nextDayStart)
+			int compareResult;
+			if (millis < dayStart) {
+				compareResult = -1;
+			} else if (millis >= nextDayStart) {
+				compareResult = 1;
+			} else {
+				compareResult = 0;
+			}
+			return test(comparison, compareResult);
+		}
+	}
+
+	private static final class ListMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final Set<String> values;
+
+		ListMatcher(BeanPropertyAccessor accessor, Collection<String> values) {
+			this.accessor = accessor;
+			this.values = values != null ? new HashSet<String>(values) : new HashSet<String>();
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			Object value = accessor.getValue(bean);
+			if (value == null) {
+				return false;
+			}
+			if (value instanceof Enum) {
+				return values.contains(((Enum<?>) value).name());
+			}
+			return values.contains(value.toString());
+		}
+	}
+
+	private static final class BooleanMatcher implements FilterMatcher {
+		private final BeanPropertyAccessor accessor;
+
+		private final Boolean value;
+
+		BooleanMatcher(BeanPropertyAccessor accessor, boolean value) {
+			this.accessor = accessor;
+			this.value = Boolean.valueOf(value);
+		}
+
+		@Override
+		public boolean matches(Object bean) {
+			return value.equals(accessor.getValue(bean));
+		}
+	}
+
+}
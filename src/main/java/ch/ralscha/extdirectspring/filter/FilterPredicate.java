@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled, immutable and thread safe predicate over beans of a specific
+ * class. An object matches if it satisfies all filters the predicate was
+ * compiled from.
+ * 
+ * @see FilterCompiler
+ */
+public final class FilterPredicate<T> {
+
+	private final Class<T> beanClass;
+
+	private final FilterMatcher[] matchers;
+
+	FilterPredicate(Class<T> beanClass, List<FilterMatcher> matchers) {
+		this.beanClass = beanClass;
+		this.matchers = matchers.toArray(new FilterMatcher[matchers.size()]);
+	}
+
+	public Class<T> getBeanClass() {
+		return beanClass;
+	}
+
+	/**
+	 * @return true if the object satisfies all filters. A predicate compiled
+	 *         from an empty filter list matches every object
+	 */
+	public boolean matches(T object) {
+		for (FilterMatcher matcher : matchers) {
+			if (!matcher.matches(object)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a new list with all the objects that match this predicate, in
+	 * iteration order of the source.
+	 */
+	public List<T> filter(Iterable<? extends T> objects) {
+		List<T> result = new ArrayList<T>();
+		for (T object : objects) {
+			if (matches(object)) {
+				result.add(object);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tests one filter against one bean.
+	 */
+	interface FilterMatcher {
+		boolean matches(Object bean);
+	}
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameterized SQL fragments created by the {@link SqlTranslator}. Each
+ * fragment contains its keyword ('WHERE', 'ORDER BY', 'LIMIT') or is an empty
+ * string if the request does not need it.
+ * <p>
+ * The where clause and its parameters can be used on their own to count the
+ * total number of rows.
+ */
+public final class SqlQuery {
+
+	private final String where;
+
+	private final String orderBy;
+
+	private final String limit;
+
+	private final String sql;
+
+	private final List<Object> whereParameters;
+
+	private final List<Object> limitParameters;
+
+	SqlQuery(String where, String orderBy, String limit, String sql, List<Object> whereParameters,
+			List<Object> limitParameters) {
+		this.where = where;
+		this.orderBy = orderBy;
+		this.limit = limit;
+		this.sql = sql;
+		this.whereParameters = Collections.unmodifiableList(whereParameters);
+		this.limitParameters = Collections.unmodifiableList(limitParameters);
+	}
+
+	/**
+	 * @return 'WHERE ...' or an empty string if there are no filters
+	 */
+	public String getWhere() {
+		return where;
+	}
+
+	/**
+	 * @return 'ORDER BY ...' or an empty string if there are no groups and
+	 *         sorters
+	 */
+	public String getOrderBy() {
+		return orderBy;
+	}
+
+	/**
+	 * @return 'LIMIT ? OFFSET ?' or an empty string if the request has neither
+	 *         a limit nor a start
+	 */
+	public String getLimit() {
+		return limit;
+	}
+
+	public List<Object> getWhereParameters() {
+		return whereParameters;
+	}
+
+	public List<Object> getLimitParameters() {
+		return limitParameters;
+	}
+
+	/**
+	 * @return where, order by and limit fragments separated by a space
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return where and limit parameters in the order of the placeholders in
+	 *         {@link #getSql()}
+	 */
+	public List<Object> getParameters() {
+		List<Object> parameters = new ArrayList<Object>(whereParameters.size() + limitParameters.size());
+		parameters.addAll(whereParameters);
+		parameters.addAll(limitParameters);
+		return parameters;
+	}
+
+	@Override
+	public String toString() {
+		return "SqlQuery [sql=" + getSql() + ", parameters=" + getParameters() + "]";
+	}
+
+}
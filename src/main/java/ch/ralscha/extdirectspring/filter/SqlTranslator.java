@@ -0,0 +1,390 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.springframework.util.Assert;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.bean.GroupInfo;
+import ch.ralscha.extdirectspring.bean.SortDirection;
+import ch.ralscha.extdirectspring.bean.SortInfo;
+
+/**
+ * Translates the filters, groups, sorters and paging information of a
+ * {@link ExtDirectStoreReadRequest} into parameterized SQL fragments.
+ * <p>
+ * Only fields that are part of the field to column mapping can be used, the
+ * column names are never taken from the request. Values are always bound as
+ * parameters. Requests with the same shape (the same filters, comparisons,
+ * sorters and paging, but different values) produce the identical SQL text,
+ * so prepared statement caches of the driver and the database are hit. The
+ * SQL of a shape is created once and kept in a bounded LRU cache.
+ * <p>
+ * The filters have the same semantics as the predicates of the
+ * {@link FilterCompiler}: {@link StringFilter} is a case insensitive
+ * 'contains', {@link DateFilter} compares whole days and
+ * {@link Comparison#NOT_EQUAL} matches NULL. The parameter list of a
+ * {@link ListFilter} is padded to the next power of two with the last value,
+ * which keeps the number of distinct statements small. Paging is written as
+ * 'LIMIT ? OFFSET ?'. A request with a start (or page) but without a limit
+ * uses the same statement with {@link Integer#MAX_VALUE} as limit, because
+ * not every database supports an OFFSET without LIMIT. The offset is the same
+ * the {@link StoreQuery} uses.
+ * <p>
+ * Instances are thread safe.
+ */
+public final class SqlTranslator {
+
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	private static final char LIKE_ESCAPE = '!';
+
+	private final Map<String, String> columns;
+
+	private final String datePattern;
+
+	private final TimeZone timeZone;
+
+	private final Map<String, SqlShape> shapeCache;
+
+	/**
+	 * Creates a translator with the {@link FilterCompiler#DEFAULT_DATE_PATTERN}
+	 * , the default time zone and a shape cache of
+	 * {@link #DEFAULT_CACHE_SIZE} entries.
+	 * 
+	 * @param fieldToColumn whitelist of the fields the client can filter and
+	 *            sort on, mapped to the column names
+	 */
+	public SqlTranslator(Map<String, String> fieldToColumn) {
+		this(fieldToColumn, FilterCompiler.DEFAULT_DATE_PATTERN, TimeZone.getDefault(), DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param fieldToColumn whitelist of the fields the client can filter and
+	 *            sort on, mapped to the column names
+	 * @param datePattern pattern of the values of {@link DateFilter}s
+	 * @param timeZone time zone that defines the day boundaries of
+	 *            {@link DateFilter}s
+	 * @param cacheSize maximum number of cached statement shapes
+	 */
+	public SqlTranslator(Map<String, String> fieldToColumn, String datePattern, TimeZone timeZone,
+			final int cacheSize) {
+		Assert.notNull(fieldToColumn, "fieldToColumn must not be null");
+		Assert.isTrue(cacheSize >= 0, "cacheSize must not be negative");
+		this.columns = Collections.unmodifiableMap(new HashMap<String, String>(fieldToColumn));
+		this.datePattern = datePattern;
+		this.timeZone = timeZone;
+		this.shapeCache = Collections.synchronizedMap(new LinkedHashMap<String, SqlShape>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SqlShape> eldest) {
+				return size() > cacheSize;
+			}
+		});
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a filter, group or sorter references
+	 *             a field that is not part of the mapping, or a filter value
+	 *             is invalid
+	 */
+	public SqlQuery translate(ExtDirectStoreReadRequest request) {
+		List<Filter> filters = request.getFilters();
+		List<OrderElement> order = orderElements(request.getGroups(), request.getSorters());
+		boolean limited = request.getLimit() != null && request.getLimit() > 0;
+		int offset = StoreQuery.offset(request);
+		boolean paging = limited || offset > 0;
+
+		StringBuilder key = new StringBuilder();
+		List<Object> whereParameters = new ArrayList<Object>();
+		for (Filter filter : filters) {
+			if (filter != null) {
+				appendFilter(filter, key, whereParameters, null);
+			}
+		}
+		for (OrderElement element : order) {
+			key.append('o').append(element.column).append(element.descending ? 'D' : 'A').append(';');
+		}
+		if (paging) {
+			key.append('p');
+		}
+
+		String shapeKey = key.toString();
+		SqlShape shape = shapeCache.get(shapeKey);
+		if (shape == null) {
+			shape = createShape(filters, order, paging);
+			shapeCache.put(shapeKey, shape);
+		}
+
+		List<Object> limitParameters = new ArrayList<Object>(2);
+		if (paging) {
+			limitParameters.add(limited ? request.getLimit() : Integer.MAX_VALUE);
+			limitParameters.add(offset);
+		}
+
+		return new SqlQuery(shape.where, shape.orderBy, shape.limit, shape.sql, whereParameters, limitParameters);
+	}
+
+	int getCachedShapeCount() {
+		return shapeCache.size();
+	}
+
+	private SqlShape createShape(List<Filter> filters, List<OrderElement> order, boolean paging) {
+		StringBuilder where = new StringBuilder();
+		List<Object> ignoredParameters = new ArrayList<Object>();
+		StringBuilder ignoredKey = new StringBuilder();
+		for (Filter filter : filters) {
+			if (filter != null) {
+				where.append(where.length() == 0 ? "WHERE " : " AND ");
+				appendFilter(filter, ignoredKey, ignoredParameters, where);
+			}
+		}
+
+		StringBuilder orderBy = new StringBuilder();
+		for (OrderElement element : order) {
+			orderBy.append(orderBy.length() == 0 ? "ORDER BY " : ", ");
+			orderBy.append(element.column).append(element.descending ? " DESC" : " ASC");
+		}
+
+		return new SqlShape(where.toString(), orderBy.toString(), paging ? "LIMIT ? OFFSET ?" : "");
+	}
+
+	private String column(String field) {
+		String column = field != null ? columns.get(field) : null;
+		if (column == null) {
+			throw new IllegalArgumentException("Field '" + field + "' is not mapped to a column");
+		}
+		return column;
+	}
+
+	private List<OrderElement> orderElements(List<GroupInfo> groups, List<SortInfo> sorters) {
+		List<OrderElement> elements = new ArrayList<OrderElement>();
+		for (GroupInfo group : groups) {
+			elements.add(new OrderElement(column(group.getProperty()), group.getDirection()));
+		}
+		for (SortInfo sorter : sorters) {
+			elements.add(new OrderElement(column(sorter.getProperty()), sorter.getDirection()));
+		}
+		return elements;
+	}
+
+	/**
+	 * Appends the shape of the filter to the key and its values to the
+	 * parameters. If sql is not null the condition is appended too.
+	 */
+	private void appendFilter(Filter filter, StringBuilder key, List<Object> parameters, StringBuilder sql) {
+		String column = column(filter.getField());
+		key.append(filter.getField()).append(':');
+
+		if (filter instanceof StringFilter) {
+			String value = ((StringFilter) filter).getValue();
+			if (value == null) {
+				key.append("s0");
+				append(sql, column, " IS NULL");
+			} else {
+				key.append('s');
+				parameters.add('%' + escapeLike(value.toLowerCase(Locale.ENGLISH)) + '%');
+				if (sql != null) {
+					sql.append("LOWER(").append(column).append(") LIKE ? ESCAPE '").append(LIKE_ESCAPE).append('\'');
+				}
+			}
+		} else if (filter instanceof NumericFilter) {
+			NumericFilter numericFilter = (NumericFilter) filter;
+			Comparison comparison = FilterCompiler.comparison(numericFilter.getComparison());
+			key.append('n').append(comparison.ordinal());
+			if (numericFilter.getValue() == null) {
+				key.append('0');
+				append(sql, column, comparison == Comparison.NOT_EQUAL ? " IS NOT NULL" : " IS NULL");
+			} else {
+				parameters.add(numericFilter.getValue());
+				if (comparison == Comparison.NOT_EQUAL) {
+					appendNotEqual(sql, column, "<> ?");
+				} else {
+					append(sql, column, " " + operator(comparison) + " ?");
+				}
+			}
+		} else if (filter instanceof DateFilter) {
+			DateFilter dateFilter = (DateFilter) filter;
+			Comparison comparison = FilterCompiler.comparison(dateFilter.getComparison());
+			key.append('d').append(comparison.ordinal());
+			if (dateFilter.getValue() == null) {
+				key.append('0');
+				append(sql, column, comparison == Comparison.NOT_EQUAL ? " IS NOT NULL" : " IS NULL");
+			} else {
+				long[] day = FilterCompiler.parseDay(dateFilter.getValue(), datePattern, timeZone);
+				appendDateCondition(sql, column, comparison, new Timestamp(day[0]), new Timestamp(day[1]), parameters);
+			}
+		} else if (filter instanceof ListFilter) {
+			List<String> values = ((ListFilter) filter).getValue();
+			if (values == null || values.isEmpty()) {
+				key.append("l0");
+				if (sql != null) {
+					sql.append("1 = 0");
+				}
+			} else {
+				int size = Integer.highestOneBit(values.size());
+				if (size < values.size()) {
+					size = size << 1;
+				}
+				key.append('l').append(size);
+				parameters.addAll(values);
+				for (int i = values.size(); i < size; i++) {
+					parameters.add(values.get(values.size() - 1));
+				}
+				if (sql != null) {
+					sql.append(column).append(" IN (");
+					for (int i = 0; i < size; i++) {
+						sql.append(i == 0 ? "?" : ", ?");
+					}
+					sql.append(')');
+				}
+			}
+		} else if (filter instanceof BooleanFilter) {
+			key.append('b');
+			parameters.add(Boolean.valueOf(((BooleanFilter) filter).getValue()));
+			append(sql, column, " = ?");
+		} else {
+			throw new IllegalArgumentException("Filter not supported: " + filter);
+		}
+
+		key.append(';');
+	}
+
+	private static void appendDateCondition(StringBuilder sql, String column, Comparison comparison,
+			Timestamp dayStart, Timestamp nextDayStart, List<Object> parameters) {
+		switch (comparison) {
+		case LESS_THAN:
+			parameters.add(dayStart);
+			append(sql, column, " < ?");
+			break;
+		case LESS_THAN_OR_EQUAL:
+			parameters.add(nextDayStart);
+			append(sql, column, " < ?");
+			break;
+		case GREATER_THAN:
+			parameters.add(nextDayStart);
+			append(sql, column, " >= ?");
+			break;
+		case GREATER_THAN_OR_EQUAL:
+			parameters.add(dayStart);
+			append(sql, column, " >= ?");
+			break;
+		case NOT_EQUAL:
+			parameters.add(dayStart);
+			parameters.add(nextDayStart);
+			if (sql != null) {
+				sql.append('(').append(column).append(" < ? OR ").append(column).append(" >= ? OR ").append(column)
+						.append(" IS NULL)");
+			}
+			break;
+		default:
+			parameters.add(dayStart);
+			parameters.add(nextDayStart);
+			if (sql != null) {
+				sql.append('(').append(column).append(" >= ? AND ").append(column).append(" < ?)");
+			}
+			break;
+		}
+	}
+
+	private static void append(StringBuilder sql, String column, String condition) {
+		if (sql != null) {
+			sql.append(column).append(condition);
+		}
+	}
+
+	private static void appendNotEqual(StringBuilder sql, String column, String condition) {
+		if (sql != null) {
+			sql.append('(').append(column).append(' ').append(condition).append(" OR ").append(column)
+					.append(" IS NULL)");
+		}
+	}
+
+	private static String operator(Comparison comparison) {
+		switch (comparison) {
+		case LESS_THAN:
+			return "<";
+		case LESS_THAN_OR_EQUAL:
+			return "<=";
+		case GREATER_THAN:
+			return ">";
+		case GREATER_THAN_OR_EQUAL:
+			return ">=";
+		default:
+			return "=";
+		}
+	}
+
+	private static String escapeLike(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 4);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+				sb.append(LIKE_ESCAPE);
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static final class OrderElement {
+		final String column;
+
+		final boolean descending;
+
+		OrderElement(String column, SortDirection direction) {
+			this.column = column;
+			this.descending = direction == SortDirection.DESCENDING;
+		}
+	}
+
+	private static final class SqlShape {
+		final String where;
+
+		final String orderBy;
+
+		final String limit;
+
+		final String sql;
+
+		SqlShape(String where, String orderBy, String limit) {
+			this.where = where;
+			this.orderBy = orderBy;
+			this.limit = limit;
+
+			StringBuilder sb = new StringBuilder(where);
+			if (orderBy.length() > 0) {
+				sb.append(sb.length() > 0 ? " " : "").append(orderBy);
+			}
+			if (limit.length() > 0) {
+				sb.append(sb.length() > 0 ? " " : "").append(limit);
+			}
+			this.sql = sb.toString();
+		}
+	}
+
+}
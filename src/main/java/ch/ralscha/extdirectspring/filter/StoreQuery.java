@@ -0,0 +1,306 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreResult;
+import ch.ralscha.extdirectspring.bean.GroupInfo;
+import ch.ralscha.extdirectspring.bean.SortDirection;
+import ch.ralscha.extdirectspring.bean.SortInfo;
+
+/**
+ * Answers a {@link ExtDirectStoreReadRequest} from an in-memory collection.
+ * Applies the filters, sorts by the groups and then by the sorters of the
+ * request and returns the requested page together with the number of records
+ * that passed the filters. The page starts at the start of the request, or at
+ * (page - 1) * limit if the request has no start. Without a limit all records
+ * from the start on are returned.
+ * <p>
+ * For a paging request only the first start + limit elements are ordered.
+ * They are selected with a bounded heap, the rest of the collection is never
+ * sorted. The result is the same as a stable sort of the whole collection
+ * would produce.
+ * <p>
+ * Comparators are built from cached property accessors and are themselves
+ * cached per bean class and sort specification.
+ * 
+ * @see FilterCompiler
+ */
+public final class StoreQuery {
+
+	private static final int MAX_CACHED_COMPARATORS = 512;
+
+	private static final ConcurrentMap<ComparatorKey, Comparator<Object>> comparatorCache = new ConcurrentHashMap<ComparatorKey, Comparator<Object>>();
+
+	private StoreQuery() {
+		// singleton
+	}
+
+	/**
+	 * Returns the index of the first requested record. If the request has no
+	 * start it is calculated from page and limit, a request without start and
+	 * page starts with the first record.
+	 */
+	static int offset(ExtDirectStoreReadRequest request) {
+		if (request.getStart() != null) {
+			return Math.max(0, request.getStart());
+		}
+
+		Integer page = request.getPage();
+		Integer limit = request.getLimit();
+		if (page != null && page > 1 && limit != null && limit > 0) {
+			return (int) Math.min((long) (page - 1) * limit, Integer.MAX_VALUE);
+		}
+		return 0;
+	}
+
+	/**
+	 * Runs the request against the data. Filters are compiled with the
+	 * defaults of {@link FilterCompiler#compile(Class, ExtDirectStoreReadRequest)}
+	 * 
+	 * @param beanClass class of the elements
+	 * @param data the source collection, it is not modified
+	 * @param request the read request
+	 * @return page of the filtered and sorted data and the total number of
+	 *         elements that passed the filters
+	 */
+	public static <T> ExtDirectStoreResult<T> execute(Class<T> beanClass, Collection<? extends T> data,
+			ExtDirectStoreReadRequest request) {
+		return execute(FilterCompiler.compile(beanClass, request), data, request);
+	}
+
+	/**
+	 * Runs the request against the data, using an already compiled predicate
+	 * instead of the filters of the request.
+	 */
+	public static <T> ExtDirectStoreResult<T> execute(FilterPredicate<T> predicate, Collection<? extends T> data,
+			ExtDirectStoreReadRequest request) {
+		List<T> filtered = predicate.filter(data);
+		Comparator<T> comparator = comparator(predicate.getBeanClass(), request.getGroups(), request.getSorters());
+
+		int start = offset(request);
+		Integer limit = request.getLimit();
+
+		List<T> page;
+		if (limit != null && limit > 0) {
+			page = page(filtered, comparator, start, limit);
+		} else {
+			if (comparator != null) {
+				Collections.sort(filtered, comparator);
+			}
+			page = start > 0 ? new ArrayList<T>(filtered.subList(Math.min(start, filtered.size()), filtered.size()))
+					: filtered;
+		}
+
+		return new ExtDirectStoreResult<T>(Long.valueOf(filtered.size()), page);
+	}
+
+	/**
+	 * Returns the comparator that orders by the groups first and then by the
+	 * sorters. Null values are ordered before non null values.
+	 * 
+	 * @return the comparator or null if there are neither groups nor sorters
+	 * @throws IllegalArgumentException if a property does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Comparator<T> comparator(Class<T> beanClass, List<GroupInfo> groups, List<SortInfo> sorters) {
+		List<String> properties = new ArrayList<String>();
+		List<SortDirection> directions = new ArrayList<SortDirection>();
+		StringBuilder spec = new StringBuilder();
+		if (groups != null) {
+			for (GroupInfo group : groups) {
+				properties.add(group.getProperty());
+				directions.add(group.getDirection());
+				spec.append(group.getProperty()).append(':').append(group.getDirection()).append(';');
+			}
+		}
+		if (sorters != null) {
+			for (SortInfo sorter : sorters) {
+				properties.add(sorter.getProperty());
+				directions.add(sorter.getDirection());
+				spec.append(sorter.getProperty()).append(':').append(sorter.getDirection()).append(';');
+			}
+		}
+		if (properties.isEmpty()) {
+			return null;
+		}
+
+		ComparatorKey key = new ComparatorKey(beanClass, spec.toString());
+		Comparator<Object> comparator = comparatorCache.get(key);
+		if (comparator == null) {
+			PropertyComparator[] comparators = new PropertyComparator[properties.size()];
+			for (int i = 0; i < comparators.length; i++) {
+				comparators[i] = new PropertyComparator(beanClass, properties.get(i), directions.get(i));
+			}
+			comparator = comparators.length == 1 ? comparators[0] : new ChainedComparator(comparators);
+			if (comparatorCache.size() < MAX_CACHED_COMPARATORS) {
+				comparatorCache.put(key, comparator);
+			}
+		}
+		return (Comparator<T>) comparator;
+	}
+
+	private static <T> List<T> page(List<T> data, Comparator<T> comparator, int start, int limit) {
+		int size = data.size();
+		if (start >= size) {
+			return new ArrayList<T>();
+		}
+		int end = (int) Math.min((long) start + limit, size);
+
+		if (comparator == null) {
+			return new ArrayList<T>(data.subList(start, end));
+		}
+		if (end == size) {
+			Collections.sort(data, comparator);
+			return new ArrayList<T>(data.subList(start, end));
+		}
+
+		// keeps the 'end' smallest elements, the heap's head is the largest
+		// of them. Ties are broken by the position in the source which
+		// makes the result identical to a stable sort
+		final Comparator<T> elementComparator = comparator;
+		PriorityQueue<IndexedElement<T>> heap = new PriorityQueue<IndexedElement<T>>(end,
+				new Comparator<IndexedElement<T>>() {
+					@Override
+					public int compare(IndexedElement<T> o1, IndexedElement<T> o2) {
+						return -o1.compareTo(o2, elementComparator);
+					}
+				});
+
+		for (int i = 0; i < size; i++) {
+			T element = data.get(i);
+			if (heap.size() < end) {
+				heap.add(new IndexedElement<T>(element, i));
+			} else if (comparator.compare(element, heap.peek().element) < 0) {
+				heap.poll();
+				heap.add(new IndexedElement<T>(element, i));
+			}
+		}
+
+		List<T> result = new ArrayList<T>(end - start);
+		for (int i = end - 1; i >= 0; i--) {
+			IndexedElement<T> largest = heap.poll();
+			if (i >= start) {
+				result.add(largest.element);
+			}
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	private static final class IndexedElement<T> {
+		final T element;
+
+		final int index;
+
+		IndexedElement(T element, int index) {
+			this.element = element;
+			this.index = index;
+		}
+
+		int compareTo(IndexedElement<T> other, Comparator<T> comparator) {
+			int result = comparator.compare(element, other.element);
+			if (result == 0) {
+				return index < other.index ? -1 : (index == other.index ? 0 : 1);
+			}
+			return result;
+		}
+	}
+
+	private static final class PropertyComparator implements Comparator<Object> {
+		private final BeanPropertyAccessor accessor;
+
+		private final boolean descending;
+
+		PropertyComparator(Class<?> beanClass, String property, SortDirection direction) {
+			this.accessor = BeanPropertyAccessor.forProperty(beanClass, property);
+			this.descending = direction == SortDirection.DESCENDING;
+		}
+
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public int compare(Object o1, Object o2) {
+			Comparable v1 = (Comparable) accessor.getValue(o1);
+			Comparable v2 = (Comparable) accessor.getValue(o2);
+			int result;
+			if (v1 == null) {
+				result = v2 == null ? 0 : -1;
+			} else if (v2 == null) {
+				result = 1;
+			} else {
+				result = v1.compareTo(v2);
+			}
+			return descending ? -result : result;
+		}
+	}
+
+	private static final class ChainedComparator implements Comparator<Object> {
+		private final PropertyComparator[] comparators;
+
+		ChainedComparator(PropertyComparator[] comparators) {
+			this.comparators = comparators;
+		}
+
+		@Override
+		public int compare(Object o1, Object o2) {
+			for (PropertyComparator comparator : comparators) {
+				int result = comparator.compare(o1, o2);
+				if (result != 0) {
+					return result;
+				}
+			}
+			return 0;
+		}
+	}
+
+	private static final class ComparatorKey {
+		private final Class<?> beanClass;
+
+		private final String spec;
+
+		ComparatorKey(Class<?> beanClass, String spec) {
+			this.beanClass = beanClass;
+			this.spec = spec;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * beanClass.hashCode() + spec.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ComparatorKey)) {
+				return false;
+			}
+			ComparatorKey other = (ComparatorKey) obj;
+			return beanClass.equals(other.beanClass) && spec.equals(other.spec);
+		}
+	}
+
+}
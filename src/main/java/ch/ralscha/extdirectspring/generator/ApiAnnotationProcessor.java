@@ -0,0 +1,281 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.generator;
+
+import java.beans.Introspector;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.ReflectionUtils.MethodFilter;
+import org.springframework.util.StringUtils;
+import org.springframework.web.method.HandlerMethodSelector;
+
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
+import ch.ralscha.extdirectspring.bean.api.RemotingApi;
+import ch.ralscha.extdirectspring.controller.Configuration;
+import ch.ralscha.extdirectspring.util.ApiWriter;
+import ch.ralscha.extdirectspring.util.MethodInfo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Annotation processor that writes the api.js of all {@link ExtDirectMethod}
+ * annotated methods at compile time. The api is written into the class output
+ * as api-&lt;md5&gt;.js together with the Sencha Architect descriptor
+ * api-&lt;md5&gt;.json. The md5 hash of the api.js changes only when the api
+ * changes, the files can be served as immutable static resources.
+ * <p>
+ * Like the {@link ModelAnnotationProcessor} the processor loads the annotated
+ * classes with Class.forName, they have to be compiled and on the classpath of
+ * the processor. The bean name of a class is the value of its stereotype
+ * annotation or the uncapitalized simple class name, the same name the Spring
+ * component scan would use.
+ */
+@SupportedAnnotationTypes({ "ch.ralscha.extdirectspring.annotation.ExtDirectMethod" })
+@SupportedOptions({ "apiNs", "actionNs", "remotingApiVar", "pollingUrlsVar", "sseVar", "baseUrl", "group", "debug",
+		"outputPath", "providerType", "timeout", "maxRetries", "enableBuffer" })
+public class ApiAnnotationProcessor extends AbstractProcessor {
+
+	private static final boolean ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS = false;
+
+	private static final String OPTION_APINS = "apiNs";
+
+	private static final String OPTION_ACTIONNS = "actionNs";
+
+	private static final String OPTION_REMOTINGAPIVAR = "remotingApiVar";
+
+	private static final String OPTION_POLLINGURLSVAR = "pollingUrlsVar";
+
+	private static final String OPTION_SSEVAR = "sseVar";
+
+	private static final String OPTION_BASEURL = "baseUrl";
+
+	private static final String OPTION_GROUP = "group";
+
+	private static final String OPTION_DEBUG = "debug";
+
+	private static final String OPTION_OUTPUTPATH = "outputPath";
+
+	private static final String OPTION_PROVIDERTYPE = "providerType";
+
+	private static final String OPTION_TIMEOUT = "timeout";
+
+	private static final String OPTION_MAXRETRIES = "maxRetries";
+
+	private static final String OPTION_ENABLEBUFFER = "enableBuffer";
+
+	private final static ObjectMapper mapper = new ObjectMapper();
+
+	private final Set<String> classNames = new LinkedHashSet<String>();
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Running " + getClass().getSimpleName());
+
+		if (roundEnv.processingOver()) {
+			if (!classNames.isEmpty()) {
+				writeApi();
+			}
+			return ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS;
+		}
+
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				Element enclosingElement = element.getEnclosingElement();
+				if (element.getKind() == ElementKind.METHOD && enclosingElement instanceof TypeElement) {
+					classNames.add(processingEnv.getElementUtils().getBinaryName((TypeElement) enclosingElement)
+							.toString());
+				}
+			}
+		}
+
+		return ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS;
+	}
+
+	private void writeApi() {
+		Map<String, String> options = processingEnv.getOptions();
+
+		String apiNs = options.containsKey(OPTION_APINS) ? options.get(OPTION_APINS) : "Ext.app";
+		String actionNs = options.get(OPTION_ACTIONNS);
+		String remotingApiVar = StringUtils.hasText(options.get(OPTION_REMOTINGAPIVAR)) ? options
+				.get(OPTION_REMOTINGAPIVAR) : "REMOTING_API";
+		String pollingUrlsVar = StringUtils.hasText(options.get(OPTION_POLLINGURLSVAR)) ? options
+				.get(OPTION_POLLINGURLSVAR) : "POLLING_URLS";
+		String sseVar = StringUtils.hasText(options.get(OPTION_SSEVAR)) ? options.get(OPTION_SSEVAR) : "SSE";
+		String group = options.get(OPTION_GROUP);
+		boolean debug = "true".equals(options.get(OPTION_DEBUG));
+
+		String baseUrl = StringUtils.hasText(options.get(OPTION_BASEURL)) ? options.get(OPTION_BASEURL) : "/";
+		if (!baseUrl.endsWith("/")) {
+			baseUrl = baseUrl + "/";
+		}
+
+		Configuration configuration = new Configuration();
+		if (StringUtils.hasText(options.get(OPTION_PROVIDERTYPE))) {
+			configuration.setProviderType(options.get(OPTION_PROVIDERTYPE));
+		}
+		if (StringUtils.hasText(options.get(OPTION_TIMEOUT))) {
+			configuration.setTimeout(Integer.valueOf(options.get(OPTION_TIMEOUT)));
+		}
+		if (StringUtils.hasText(options.get(OPTION_MAXRETRIES))) {
+			configuration.setMaxRetries(Integer.valueOf(options.get(OPTION_MAXRETRIES)));
+		}
+		configuration.setEnableBuffer(options.get(OPTION_ENABLEBUFFER));
+
+		RemotingApi remotingApi = ApiWriter.createRemotingApi(configuration, baseUrl + "router", actionNs);
+		RemotingApi descriptor = new RemotingApi(configuration.getProviderType(), baseUrl + "router", actionNs);
+		if (StringUtils.hasText(apiNs)) {
+			descriptor.setDescriptor(apiNs + "." + remotingApiVar);
+		} else {
+			descriptor.setDescriptor(remotingApiVar);
+		}
+
+		for (Map.Entry<String, MethodInfo> entry : collectMethods(group).entrySet()) {
+			String beanName = entry.getKey().substring(0, entry.getKey().indexOf('.'));
+			ApiWriter.addMethod(remotingApi, beanName, entry.getValue());
+			ApiWriter.addMethod(descriptor, beanName, entry.getValue());
+		}
+
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+			ApiWriter.writeApi(bos, remotingApi, apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, baseUrl,
+					mapper, debug, false);
+			byte[] api = bos.toByteArray();
+			String fileName = "api-" + DigestUtils.md5DigestAsHex(api);
+
+			String outputPath = options.get(OPTION_OUTPUTPATH);
+			if (StringUtils.hasText(outputPath)) {
+				fileName = StringUtils.trimTrailingCharacter(outputPath, '/') + "/" + fileName;
+			}
+
+			writeResource(fileName + ".js", api);
+			writeResource(fileName + ".json", ApiWriter.getJsonWriter(mapper, debug).writeValueAsBytes(descriptor));
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the methods of the requested groups, with the same group
+	 * semantics as the ApiController: null returns all methods, a blank string
+	 * the methods without a group.
+	 * 
+	 * @return beanName.methodName -> MethodInfo
+	 */
+	private Map<String, MethodInfo> collectMethods(String group) {
+		Set<String> requestedGroups = null;
+		if (group != null) {
+			requestedGroups = new LinkedHashSet<String>();
+			if (StringUtils.hasText(group)) {
+				requestedGroups.addAll(Arrays.asList(group.trim().split(",")));
+			}
+		}
+
+		Map<String, MethodInfo> methodInfos = new LinkedHashMap<String, MethodInfo>();
+		for (String className : classNames) {
+			try {
+				Class<?> clazz = Class.forName(className);
+				String beanName = getBeanName(clazz);
+
+				Set<Method> methods = HandlerMethodSelector.selectMethods(clazz, new MethodFilter() {
+					@Override
+					public boolean matches(Method method) {
+						return AnnotationUtils.findAnnotation(method, ExtDirectMethod.class) != null;
+					}
+				});
+
+				for (Method method : methods) {
+					ExtDirectMethod directMethodAnnotation = AnnotationUtils.findAnnotation(method,
+							ExtDirectMethod.class);
+					String beanAndMethodName = beanName + "." + method.getName();
+					if (directMethodAnnotation.value().isValid(beanAndMethodName, clazz, method)) {
+						MethodInfo methodInfo = new MethodInfo(clazz, null, beanName, method);
+						if (isInGroups(methodInfo.getGroup(), requestedGroups)) {
+							methodInfos.put(beanAndMethodName, methodInfo);
+						}
+					} else {
+						processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+								"Skip invalid method " + beanAndMethodName);
+					}
+				}
+			} catch (ClassNotFoundException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage());
+			}
+		}
+		return methodInfos;
+	}
+
+	private static boolean isInGroups(String methodGroup, Set<String> requestedGroups) {
+		if (requestedGroups == null) {
+			return true;
+		}
+		if (requestedGroups.isEmpty()) {
+			return !StringUtils.hasText(methodGroup);
+		}
+		if (methodGroup != null) {
+			for (String name : methodGroup.split(",")) {
+				if (requestedGroups.contains(name)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static String getBeanName(Class<?> clazz) {
+		for (Annotation annotation : clazz.getAnnotations()) {
+			if (annotation instanceof Component || annotation.annotationType().isAnnotationPresent(Component.class)) {
+				Object value = AnnotationUtils.getValue(annotation);
+				if (value instanceof String && StringUtils.hasText((String) value)) {
+					return (String) value;
+				}
+			}
+		}
+		return Introspector.decapitalize(ClassUtils.getShortName(clazz));
+	}
+
+	private void writeResource(String relativeName, byte[] data) throws IOException {
+		FileObject fo = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", relativeName);
+		OutputStream os = fo.openOutputStream();
+		os.write(data);
+		os.close();
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Created " + relativeName);
+	}
+
+}
@@ -15,10 +15,26 @@
  */
 package ch.ralscha.extdirectspring.util;
 
-import java.lang.ref.SoftReference;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.util.Assert;
+
+/**
+ * Size bounded cache for the rendered api.js variants. When the cache is full
+ * the least recently used entry is evicted. Lookups do not lock, every entry
+ * remembers the tick of its last access and the entry with the oldest tick is
+ * evicted when a new entry is added to a full cache. Concurrent requests for
+ * a missing entry render the content only once (see
+ * {@link #getContent(ApiCacheKey, Callable)}). The cache counts hits, misses,
+ * loads and evictions and is invalidated when the application context is
+ * refreshed.
+ */
 public enum ApiCache {
 
 	/**
@@ -26,30 +42,258 @@ public enum ApiCache {
 	 */
 	INSTANCE;
 
-	private final Map<ApiCacheKey, SoftReference<String>> cache;
+	public static final int DEFAULT_MAXIMUM_SIZE = 128;
+
+	/**
+	 * Guards adding, evicting and invalidating entries. Lookups don't take the
+	 * lock.
+	 */
+	private final Object lock = new Object();
+
+	private final ConcurrentMap<ApiCacheKey, Entry> cache;
+
+	private final ConcurrentMap<ApiCacheKey, FutureTask<CacheableContent>> loading;
+
+	private final AtomicLong accessTick = new AtomicLong();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong loadCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private volatile int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+	private long generation = 0;
 
 	private ApiCache() {
-		cache = new ConcurrentHashMap<ApiCacheKey, SoftReference<String>>();
+		cache = new ConcurrentHashMap<ApiCacheKey, Entry>();
+		loading = new ConcurrentHashMap<ApiCacheKey, FutureTask<CacheableContent>>();
+	}
+
+	/**
+	 * Specifies the maximum number of entries. If the cache contains more
+	 * entries the least recently used are evicted.
+	 * <p>
+	 * Default value is {@link #DEFAULT_MAXIMUM_SIZE}
+	 * 
+	 * @param maximumSize the new maximum size
+	 */
+	public void setMaximumSize(int maximumSize) {
+		Assert.isTrue(maximumSize >= 0, "maximumSize must not be negative");
+		synchronized (lock) {
+			this.maximumSize = maximumSize;
+			evictEntries();
+		}
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
 	}
 
 	public void put(ApiCacheKey key, String apiString) {
-		cache.put(key, new SoftReference<String>(apiString));
+		put(key, new CacheableContent(apiString.getBytes(ExtDirectSpringUtil.UTF8_CHARSET)));
+	}
+
+	public void put(ApiCacheKey key, CacheableContent content) {
+		synchronized (lock) {
+			putEntry(key, content);
+		}
 	}
 
 	public String get(ApiCacheKey key) {
-		if (key != null) {
-			SoftReference<String> apiStringReference = cache.get(key);
-			if (apiStringReference != null && apiStringReference.get() != null) {
-				return apiStringReference.get();
-			}
+		CacheableContent content = getContent(key);
+		if (content != null) {
+			return new String(content.getData(), ExtDirectSpringUtil.UTF8_CHARSET);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the cached content together with its ETag and compressed
+	 * variants.
+	 * 
+	 * @param key the cache key
+	 * @return the cached content or null
+	 */
+	public CacheableContent getContent(ApiCacheKey key) {
+		if (key == null) {
+			return null;
 		}
+
+		Entry entry = cache.get(key);
+		if (entry != null) {
+			entry.lastAccess = accessTick.incrementAndGet();
+			hitCount.incrementAndGet();
+			return entry.content;
+		}
+		missCount.incrementAndGet();
 		return null;
 	}
 
 	/**
-	 * for unit tests
+	 * Returns the cached content or loads it with the loader and caches it.
+	 * If other threads request the same missing key while the content is
+	 * loaded they wait for the result instead of loading it again. Content
+	 * that is loaded while the cache is invalidated is returned but not
+	 * cached.
+	 * 
+	 * @param key the cache key
+	 * @param loader creates the content if it is not cached
+	 * @return the cached or loaded content
+	 */
+	public CacheableContent getContent(ApiCacheKey key, Callable<CacheableContent> loader) {
+		CacheableContent content = getContent(key);
+		if (content != null) {
+			return content;
+		}
+
+		final long loadGeneration;
+		synchronized (lock) {
+			loadGeneration = generation;
+		}
+
+		FutureTask<CacheableContent> task = new FutureTask<CacheableContent>(loader);
+		FutureTask<CacheableContent> runningTask = loading.putIfAbsent(key, task);
+		if (runningTask != null) {
+			return getResult(key, runningTask);
+		}
+
+		// the content has to be in the cache before the task is removed,
+		// otherwise a request in between loads the content again
+		try {
+			task.run();
+			content = getResult(key, task);
+			loadCount.incrementAndGet();
+			synchronized (lock) {
+				if (generation == loadGeneration) {
+					putEntry(key, content);
+				}
+			}
+		} finally {
+			loading.remove(key, task);
+		}
+		return content;
+	}
+
+	private static CacheableContent getResult(ApiCacheKey key, FutureTask<CacheableContent> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the api of " + key, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Adds an entry and evicts the least recently used entries if the cache is
+	 * full. Caller has to hold the lock.
+	 */
+	private void putEntry(ApiCacheKey key, CacheableContent content) {
+		cache.put(key, new Entry(content, accessTick.incrementAndGet()));
+		evictEntries();
+	}
+
+	/**
+	 * Caller has to hold the lock.
+	 */
+	private void evictEntries() {
+		while (cache.size() > maximumSize) {
+			ApiCacheKey eldestKey = null;
+			long eldestAccess = Long.MAX_VALUE;
+			for (Map.Entry<ApiCacheKey, Entry> entry : cache.entrySet()) {
+				if (entry.getValue().lastAccess < eldestAccess) {
+					eldestAccess = entry.getValue().lastAccess;
+					eldestKey = entry.getKey();
+				}
+			}
+			if (eldestKey == null) {
+				return;
+			}
+			cache.remove(eldestKey);
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes all entries. Loads that are running are not added to the cache
+	 * when they finish.
+	 */
+	public void invalidateAll() {
+		synchronized (lock) {
+			cache.clear();
+			loading.clear();
+			generation++;
+		}
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return number of lookups that found an entry
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return number of lookups that did not find an entry
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return number of entries that were loaded by
+	 *         {@link #getContent(ApiCacheKey, Callable)}
+	 */
+	public long getLoadCount() {
+		return loadCount.get();
+	}
+
+	/**
+	 * @return number of entries that were removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Removes all entries and resets the counters and the maximum size. For
+	 * unit tests.
 	 */
 	public void clear() {
-		cache.clear();
+		invalidateAll();
+		setMaximumSize(DEFAULT_MAXIMUM_SIZE);
+		hitCount.set(0);
+		missCount.set(0);
+		loadCount.set(0);
+		evictionCount.set(0);
 	}
+
+	private static final class Entry {
+
+		private final CacheableContent content;
+
+		private volatile long lastAccess;
+
+		Entry(CacheableContent content, long lastAccess) {
+			this.content = content;
+			this.lastAccess = lastAccess;
+		}
+	}
+
 }
@@ -19,6 +19,16 @@ import java.util.Arrays;
 
 public final class ApiCacheKey {
 
+	/**
+	 * Format of the api-debug-doc.js with the documentation of the methods
+	 */
+	public static final String FORMAT_DOC = "doc";
+
+	/**
+	 * Format of the JSON description requested with the format parameter
+	 */
+	public static final String FORMAT_JSON = "json";
+
 	private final String apiNs;
 
 	private final String actionNs;
@@ -35,8 +45,19 @@ public final class ApiCacheKey {
 
 	private final boolean debug;
 
+	private final String format;
+
 	public ApiCacheKey(String apiNs, String actionNs, String remotingApiVar, String pollingUrlsVar, String sseVar,
 			String group, String routerUrl, boolean debug) {
+		this(apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, group, routerUrl, debug, null);
+	}
+
+	/**
+	 * @param format null for the api.js and api-debug.js, {@link #FORMAT_DOC}
+	 *            or {@link #FORMAT_JSON} for the other variants
+	 */
+	public ApiCacheKey(String apiNs, String actionNs, String remotingApiVar, String pollingUrlsVar, String sseVar,
+			String group, String routerUrl, boolean debug, String format) {
 		this.apiNs = apiNs;
 		this.actionNs = actionNs;
 		this.remotingApiVar = remotingApiVar;
@@ -45,6 +66,7 @@ public final class ApiCacheKey {
 		this.group = group;
 		this.routerUrl = routerUrl;
 		this.debug = debug;
+		this.format = format;
 	}
 
 	@Override
@@ -58,14 +80,14 @@ public final class ApiCacheKey {
 				&& ExtDirectSpringUtil.equal(remotingApiVar, other.remotingApiVar)
 				&& ExtDirectSpringUtil.equal(pollingUrlsVar, other.pollingUrlsVar)
 				&& ExtDirectSpringUtil.equal(sseVar, other.sseVar) && ExtDirectSpringUtil.equal(group, other.group)
-				&& ExtDirectSpringUtil.equal(routerUrl, other.routerUrl) && ExtDirectSpringUtil.equal(debug,
-				other.debug));
+				&& ExtDirectSpringUtil.equal(routerUrl, other.routerUrl)
+				&& ExtDirectSpringUtil.equal(debug, other.debug) && ExtDirectSpringUtil.equal(format, other.format));
 	}
 
 	@Override
 	public int hashCode() {
 		return Arrays.hashCode(new Object[] { apiNs, actionNs, remotingApiVar, pollingUrlsVar, sseVar, routerUrl,
-				group, debug });
+				group, debug, format });
 	}
 
 }
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.util.NumberUtils;
+import org.springframework.util.StringUtils;
+
+import ch.ralscha.extdirectspring.bean.api.PollingProvider;
+import ch.ralscha.extdirectspring.bean.api.RemotingApi;
+import ch.ralscha.extdirectspring.bean.api.RemotingApiMixin;
+import ch.ralscha.extdirectspring.controller.Configuration;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes the api.js (namespaces, remoting api, polling urls and sse urls) of a
+ * {@link RemotingApi}. Used by the ApiController at runtime and by the
+ * ApiAnnotationProcessor at compile time.
+ */
+public final class ApiWriter {
+
+	/**
+	 * Writer for the api-debug-doc.js. Serializes the documentation of the
+	 * methods.
+	 */
+	private static final ObjectWriter docWriter = createDocWriter();
+
+	private ApiWriter() {
+		// singleton
+	}
+
+	/**
+	 * Creates an empty {@link RemotingApi} with the timeout, maxRetries and
+	 * enableBuffer settings of the configuration.
+	 * 
+	 * @param configuration the configuration
+	 * @param routerUrl the url of the router
+	 * @param actionNs the namespace of the actions, may be null
+	 * @return the new RemotingApi
+	 */
+	public static RemotingApi createRemotingApi(Configuration configuration, String routerUrl, String actionNs) {
+		RemotingApi remotingApi = new RemotingApi(configuration.getProviderType(), routerUrl, actionNs);
+
+		remotingApi.setTimeout(configuration.getTimeout());
+		remotingApi.setMaxRetries(configuration.getMaxRetries());
+
+		Object enableBuffer = configuration.getEnableBuffer();
+		if (enableBuffer instanceof String && StringUtils.hasText((String) enableBuffer)) {
+			String enableBufferString = (String) enableBuffer;
+			if (enableBufferString.equalsIgnoreCase("true")) {
+				remotingApi.setEnableBuffer(true);
+			} else if (enableBufferString.equalsIgnoreCase("false")) {
+				remotingApi.setEnableBuffer(false);
+			} else {
+				Integer enableBufferMs = NumberUtils.parseNumber(enableBufferString, Integer.class);
+				remotingApi.setEnableBuffer(enableBufferMs);
+			}
+		} else if (enableBuffer instanceof Number || enableBuffer instanceof Boolean) {
+			remotingApi.setEnableBuffer(enableBuffer);
+		}
+
+		return remotingApi;
+	}
+
+	/**
+	 * Adds the method to the action, polling provider or sse provider list of
+	 * the remoting api.
+	 * 
+	 * @param remotingApi the remoting api
+	 * @param beanName the name of the bean
+	 * @param methodInfo the method
+	 */
+	public static void addMethod(RemotingApi remotingApi, String beanName, MethodInfo methodInfo) {
+		if (methodInfo.getAction() != null) {
+			remotingApi.addAction(beanName, methodInfo.getAction());
+		} else if (methodInfo.getPollingProvider() != null) {
+			remotingApi.addPollingProvider(methodInfo.getPollingProvider());
+		} else {
+			remotingApi.addSseProvider(beanName, methodInfo.getSseMethod());
+		}
+	}
+
+	/**
+	 * Writes the api UTF-8 encoded into the stream. The JSON parts are written
+	 * with {@link JsonGenerator}s into the same stream, the api is never held
+	 * in a String. The stream is flushed but not closed.
+	 * 
+	 * @param out the stream
+	 * @param remotingApi the remoting api
+	 * @param apiNs the namespace of the variables, may be blank
+	 * @param actionNs the namespace of the actions, may be null
+	 * @param remotingApiVar the name of the remoting api variable
+	 * @param pollingUrlsVar the name of the polling urls variable
+	 * @param sseVar the name of the sse variable
+	 * @param baseUrl the base url of the poll and sse urls, with a trailing
+	 *            slash
+	 * @param mapper the mapper that serializes the JSON parts
+	 * @param debug true writes a formatted api
+	 * @param doc true writes the remoting api with the documentation of the
+	 *            methods
+	 */
+	public static void writeApi(OutputStream out, RemotingApi remotingApi, String apiNs, String actionNs,
+			String remotingApiVar, String pollingUrlsVar, String sseVar, String baseUrl, ObjectMapper mapper,
+			boolean debug, boolean doc) throws IOException {
+
+		String basePollUrl = baseUrl + "poll";
+		String baseSseUrl = baseUrl + "sse";
+
+		Writer writer = new OutputStreamWriter(out, ExtDirectSpringUtil.UTF8_CHARSET);
+
+		if (StringUtils.hasText(apiNs)) {
+			writer.write("Ext.ns('");
+			writer.write(apiNs);
+			writer.write("');");
+		}
+
+		if (debug) {
+			writer.write("\n\n");
+		}
+
+		if (StringUtils.hasText(actionNs)) {
+			writer.write("Ext.ns('");
+			writer.write(actionNs);
+			writer.write("');");
+
+			if (debug) {
+				writer.write("\n\n");
+			}
+		}
+
+		if (StringUtils.hasText(apiNs)) {
+			writer.write(apiNs);
+			writer.write(".");
+		}
+		writer.write(remotingApiVar);
+		writer.write(" = ");
+		if (!doc) {
+			writeJson(writer, remotingApi, getJsonWriter(mapper, debug));
+		} else {
+			writeJson(writer, remotingApi, docWriter);
+		}
+		writer.write(";");
+
+		List<PollingProvider> pollingProviders = remotingApi.getPollingProviders();
+		if (!pollingProviders.isEmpty()) {
+
+			if (debug) {
+				writer.write("\n\n");
+			}
+
+			if (StringUtils.hasText(apiNs)) {
+				writer.write(apiNs);
+				writer.write(".");
+			}
+			writer.write(pollingUrlsVar);
+			writer.write(" = {");
+			if (debug) {
+				writer.write("\n");
+			}
+
+			for (int i = 0; i < pollingProviders.size(); i++) {
+				if (debug) {
+					writer.write("  ");
+				}
+
+				PollingProvider pollingProvider = pollingProviders.get(i);
+				writer.write("\"");
+				writer.write(String.valueOf(pollingProvider.getEvent()));
+				writer.write("\" : \"");
+				writer.write(basePollUrl);
+				writer.write("/");
+				writer.write(String.valueOf(pollingProvider.getBeanName()));
+				writer.write("/");
+				writer.write(String.valueOf(pollingProvider.getMethod()));
+				writer.write("/");
+				writer.write(String.valueOf(pollingProvider.getEvent()));
+				writer.write("\"");
+				if (i < pollingProviders.size() - 1) {
+					writer.write(",");
+					if (debug) {
+						writer.write("\n");
+					}
+				}
+			}
+			if (debug) {
+				writer.write("\n");
+			}
+			writer.write("};");
+		}
+
+		Map<String, List<String>> sseProviders = remotingApi.getSseProviders();
+		if (!sseProviders.isEmpty()) {
+
+			if (debug) {
+				writer.write("\n\n");
+			}
+
+			Map<String, Map<String, String>> sseconfig = new HashMap<String, Map<String, String>>();
+			for (Entry<String, List<String>> entry : sseProviders.entrySet()) {
+				String bean = entry.getKey();
+
+				Map<String, String> methods = new HashMap<String, String>();
+				sseconfig.put(bean, methods);
+
+				for (String method : entry.getValue()) {
+					methods.put(method, baseSseUrl + "/" + bean + "/" + method);
+				}
+			}
+
+			if (StringUtils.hasText(apiNs)) {
+				writer.write(apiNs);
+				writer.write(".");
+			}
+			writer.write(sseVar);
+			writer.write(" = ");
+			writeJson(writer, sseconfig, getJsonWriter(mapper, debug));
+			writer.write(";");
+		}
+
+		writer.flush();
+	}
+
+	/**
+	 * Returns a writer of the mapper, formatting the output if debug is true.
+	 */
+	public static ObjectWriter getJsonWriter(ObjectMapper mapper, boolean debug) {
+		if (debug) {
+			return mapper.writer().withDefaultPrettyPrinter();
+		}
+		return mapper.writer();
+	}
+
+	/**
+	 * Serializes the value with its own {@link JsonGenerator} into the writer.
+	 * The generator is closed, the writer is not.
+	 */
+	private static void writeJson(Writer writer, Object value, ObjectWriter objectWriter) throws IOException {
+		JsonGenerator generator = objectWriter.getFactory().createGenerator(writer);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		try {
+			objectWriter.writeValue(generator, value);
+		} finally {
+			generator.close();
+		}
+	}
+
+	private static ObjectWriter createDocWriter() {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.addMixInAnnotations(RemotingApi.class, RemotingApiMixin.class);
+		return mapper.writer().withDefaultPrettyPrinter();
+	}
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.DigestUtils;
+
+import ch.ralscha.extdirectspring.controller.Configuration;
+
+/**
+ * Immutable content of a response that is sent many times, like the api.js.
+ * The ETag and the compressed variants are created on first use, or up front
+ * with {@link #precompute(Configuration)}, and reused for every following
+ * response. Together with the ETag the content can carry a last modified time
+ * that is sent as Last-Modified validator.
+ */
+public final class CacheableContent {
+
+	private final byte[] data;
+
+	private final long lastModified;
+
+	private volatile String[] etags;
+
+	private final ConcurrentMap<EncodingKey, byte[]> encodedData = new ConcurrentHashMap<EncodingKey, byte[]>(4);
+
+	/**
+	 * @param data the uncompressed content. The array must not be changed
+	 *            afterwards.
+	 */
+	public CacheableContent(byte[] data) {
+		this(data, -1);
+	}
+
+	/**
+	 * @param data the uncompressed content. The array must not be changed
+	 *            afterwards.
+	 * @param lastModified the time the content was last modified in
+	 *            milliseconds, -1 if unknown
+	 */
+	public CacheableContent(byte[] data, long lastModified) {
+		this.data = data;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return the uncompressed content. Must not be changed.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return the time the content was last modified in milliseconds, -1 if
+	 *         unknown
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the ETag of the uncompressed content
+	 */
+	public String getEtag() {
+		return etags()[0];
+	}
+
+	/**
+	 * Returns the ETag of a compressed variant. Every variant of a resource
+	 * must have its own strong ETag.
+	 * 
+	 * @param contentEncoding the encoding of the variant, may be null
+	 * @return the ETag of the variant
+	 */
+	public String getEtag(ContentEncoding contentEncoding) {
+		return etags()[contentEncoding != null ? contentEncoding.ordinal() + 1 : 0];
+	}
+
+	private String[] etags() {
+		String[] result = etags;
+		if (result == null) {
+			String md5 = "\"0" + DigestUtils.md5DigestAsHex(data);
+			ContentEncoding[] contentEncodings = ContentEncoding.values();
+			result = new String[contentEncodings.length + 1];
+			result[0] = md5 + "\"";
+			for (ContentEncoding contentEncoding : contentEncodings) {
+				result[contentEncoding.ordinal() + 1] = md5 + "-" + contentEncoding.getName() + "\"";
+			}
+			etags = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the compressed variant of the content. The variant is created on
+	 * the first call and cached.
+	 * 
+	 * @param contentEncoding the encoding
+	 * @param level the compression level
+	 * @return the compressed content. Must not be changed.
+	 */
+	public byte[] getEncodedData(ContentEncoding contentEncoding, int level) {
+		EncodingKey key = new EncodingKey(contentEncoding, level);
+		byte[] result = encodedData.get(key);
+		if (result == null) {
+			result = contentEncoding.encode(data, level);
+			encodedData.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the ETags and, if compression is enabled and the content is not
+	 * smaller than the threshold, all compressed variants, so that serving the
+	 * content does not need to hash or compress anything.
+	 * 
+	 * @param configuration the configuration with the compression settings
+	 * @return this content
+	 */
+	public CacheableContent precompute(Configuration configuration) {
+		etags();
+		if (configuration.isCompressResponse() && data.length >= configuration.getCompressionThreshold()) {
+			for (ContentEncoding contentEncoding : ContentEncoding.values()) {
+				getEncodedData(contentEncoding, configuration.getCompressionLevel());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Key of a compressed variant: the encoding and the compression level
+	 */
+	private static final class EncodingKey {
+
+		private final ContentEncoding contentEncoding;
+
+		private final int level;
+
+		EncodingKey(ContentEncoding contentEncoding, int level) {
+			this.contentEncoding = contentEncoding;
+			this.level = level;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof EncodingKey)) {
+				return false;
+			}
+
+			EncodingKey other = (EncodingKey) o;
+			return contentEncoding == other.contentEncoding && level == other.level;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * contentEncoding.hashCode() + level;
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Content encodings the library is able to compress a response with.
+ */
+public enum ContentEncoding {
+
+	GZIP("gzip"),
+
+	DEFLATE("deflate");
+
+	private final String name;
+
+	private ContentEncoding(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name of the encoding used in the Content-Encoding header
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Selects the encoding with the highest quality value from an
+	 * Accept-Encoding header. gzip wins over deflate if both have the same
+	 * quality.
+	 * 
+	 * @param acceptEncoding value of the Accept-Encoding header, may be null
+	 * @return the selected encoding or null if the client accepts none of them
+	 */
+	public static ContentEncoding negotiate(String acceptEncoding) {
+		if (!StringUtils.hasText(acceptEncoding)) {
+			return null;
+		}
+
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+
+		for (String element : acceptEncoding.split(",")) {
+			String[] parts = element.split(";");
+			String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+			float quality = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim().toLowerCase(Locale.ENGLISH);
+				if (parameter.startsWith("q=")) {
+					try {
+						quality = Float.parseFloat(parameter.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+
+			if (coding.equals("gzip") || coding.equals("x-gzip")) {
+				gzip = Math.max(gzip, quality);
+			} else if (coding.equals("deflate")) {
+				deflate = Math.max(deflate, quality);
+			} else if (coding.equals("*")) {
+				any = Math.max(any, quality);
+			}
+		}
+
+		if (gzip < 0) {
+			gzip = any;
+		}
+		if (deflate < 0) {
+			deflate = any;
+		}
+
+		if (gzip > 0 && gzip >= deflate) {
+			return GZIP;
+		}
+		if (deflate > 0) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a stream that compresses the written bytes into the specified
+	 * stream. Closing the returned stream finishes the compressed data and
+	 * releases the native resources but does not close the target stream.
+	 * 
+	 * @param out the target stream
+	 * @param level compression level
+	 * @return the compressing stream
+	 * @throws IOException if the header cannot be written
+	 */
+	public DeflaterOutputStream wrap(OutputStream out, final int level) throws IOException {
+		if (this == GZIP) {
+			return new GZIPOutputStream(out, 8192) {
+				{
+					def.setLevel(level);
+				}
+
+				@Override
+				public void close() throws IOException {
+					finish();
+					def.end();
+					out.flush();
+				}
+			};
+		}
+
+		return new DeflaterOutputStream(out, new Deflater(level), 8192) {
+			@Override
+			public void close() throws IOException {
+				finish();
+				def.end();
+				out.flush();
+			}
+		};
+	}
+
+	/**
+	 * Compresses a byte array.
+	 * 
+	 * @param data the uncompressed data
+	 * @param level compression level
+	 * @return the compressed data
+	 */
+	public byte[] encode(byte[] data, int level) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 4 + 64);
+			DeflaterOutputStream dos = wrap(bos, level);
+			dos.write(data);
+			dos.close();
+			return bos.toByteArray();
+		} catch (IOException e) {
+			// cannot happen with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.Locale;
 
@@ -29,10 +28,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.context.ApplicationContext;
 import org.springframework.util.Assert;
-import org.springframework.util.DigestUtils;
-import org.springframework.util.ReflectionUtils;
 
 import ch.ralscha.extdirectspring.bean.ExtDirectRequest;
+import ch.ralscha.extdirectspring.controller.Configuration;
 
 /**
  * Utility class
@@ -71,7 +69,9 @@ public final class ExtDirectSpringUtil {
 	}
 
 	/**
-	 * Invokes a method on a Spring managed bean.
+	 * Invokes a method on a Spring managed bean. Singleton beans are resolved
+	 * only once per {@link MethodInfo}, all other beans are looked up in the
+	 * context on every call.
 	 * 
 	 * @param context a Spring application context
 	 * @param beanName the name of the bean
@@ -84,11 +84,8 @@ public final class ExtDirectSpringUtil {
 	 */
 	public static Object invoke(ApplicationContext context, String beanName, MethodInfo methodInfo,
 			final Object[] params) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		Object bean = context.getBean(beanName);
-
-		Method handlerMethod = methodInfo.getMethod();
-		ReflectionUtils.makeAccessible(handlerMethod);
-		return handlerMethod.invoke(bean, params);
+		Object bean = methodInfo != null ? methodInfo.getBean(context, beanName) : context.getBean(beanName);
+		return methodInfo.getMethod().invoke(bean, params);
 	}
 
 	public static Object invoke(HttpServletRequest request, HttpServletResponse response, Locale locale,
@@ -159,18 +156,149 @@ public final class ExtDirectSpringUtil {
 	 */
 	public static void handleCacheableResponse(HttpServletRequest request, HttpServletResponse response, byte[] data,
 			String contentType) throws IOException {
-		String ifNoneMatch = request.getHeader("If-None-Match");
-		String etag = "\"0" + DigestUtils.md5DigestAsHex(data) + "\"";
+		handleCacheableResponse(request, response, new CacheableContent(data), contentType, null);
+	}
 
-		if (etag.equals(ifNoneMatch)) {
+	/**
+	 * Checks the ETag and the last modified time of the content and sends back
+	 * HTTP status 304 if not modified. If modified sets content type, adds
+	 * cache headers ({@link #addCacheHeaders(HttpServletResponse, String, Integer)}
+	 * and Last-Modified) and writes the content with {@link #writeContent}. If the response is
+	 * compressed the cached compressed variant of the content is sent.
+	 * 
+	 * @param request the HTTP servlet request
+	 * @param response the HTTP servlet response
+	 * @param content the response content
+	 * @param contentType the content type of the data (i.e.
+	 *            "application/javascript;charset=UTF-8")
+	 * @param configuration the configuration with the compression settings.
+	 *            The response is not compressed if null.
+	 * @throws IOException
+	 */
+	public static void handleCacheableResponse(HttpServletRequest request, HttpServletResponse response,
+			CacheableContent content, String contentType, Configuration configuration) throws IOException {
+		ContentEncoding contentEncoding = getContentEncoding(request, response, configuration,
+				content.getData().length);
+		String etag = content.getEtag(contentEncoding);
+
+		if (isNotModified(request, etag, content.getLastModified())) {
+			response.setHeader("ETag", etag);
 			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 			return;
 		}
 
 		response.setContentType(contentType);
-		response.setContentLength(data.length);
-
 		addCacheHeaders(response, etag, 6);
+		if (content.getLastModified() >= 0) {
+			response.setDateHeader("Last-Modified", content.getLastModified());
+		}
+		writeContent(response, content, contentEncoding, configuration);
+	}
+
+	/**
+	 * Checks the ETag and the last modified time and sends back HTTP status 304
+	 * if not modified. If modified adds the ETag and Last-Modified validators
+	 * and a Cache-Control header that requires the client to revalidate the
+	 * content on every use, and writes the content with {@link #writeContent}.
+	 * Used for content with an URL that does not change when the content
+	 * changes. The content type has to be set by the caller.
+	 * 
+	 * @param request the HTTP servlet request
+	 * @param response the HTTP servlet response
+	 * @param content the response content
+	 * @param configuration the configuration with the compression settings.
+	 *            The response is not compressed if null.
+	 * @throws IOException
+	 */
+	public static void handleRevalidatedResponse(HttpServletRequest request, HttpServletResponse response,
+			CacheableContent content, Configuration configuration) throws IOException {
+		ContentEncoding contentEncoding = getContentEncoding(request, response, configuration,
+				content.getData().length);
+		String etag = content.getEtag(contentEncoding);
+
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "no-cache");
+		if (content.getLastModified() >= 0) {
+			response.setDateHeader("Last-Modified", content.getLastModified());
+		}
+
+		if (isNotModified(request, etag, content.getLastModified())) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		writeContent(response, content, contentEncoding, configuration);
+	}
+
+	/**
+	 * Evaluates the If-None-Match and If-Modified-Since request headers. If the
+	 * request contains an If-None-Match header the If-Modified-Since header is
+	 * ignored.
+	 * 
+	 * @param request the HTTP servlet request
+	 * @param etag the ETag of the content
+	 * @param lastModified the time the content was last modified in
+	 *            milliseconds, -1 if unknown
+	 * @return true if the copy of the client is still valid
+	 */
+	public static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String candidate : ifNoneMatch.split(",")) {
+				String tag = candidate.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if (tag.equals(etag) || tag.equals("*")) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		if (lastModified >= 0) {
+			long ifModifiedSince;
+			try {
+				ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+			return ifModifiedSince >= 0 && lastModified / 1000L * 1000L <= ifModifiedSince;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Writes the content into the {@link HttpServletResponse#getOutputStream()}
+	 * and sets the content length. If the client accepts a compressed response
+	 * the cached compressed variant of the content is sent.
+	 * 
+	 * @param request the HTTP servlet request
+	 * @param response the HTTP servlet response
+	 * @param content the response content
+	 * @param configuration the configuration with the compression settings.
+	 *            The response is not compressed if null.
+	 * @throws IOException
+	 */
+	public static void writeContent(HttpServletRequest request, HttpServletResponse response,
+			CacheableContent content, Configuration configuration) throws IOException {
+		ContentEncoding contentEncoding = getContentEncoding(request, response, configuration,
+				content.getData().length);
+		writeContent(response, content, contentEncoding, configuration);
+	}
+
+	private static void writeContent(HttpServletResponse response, CacheableContent content,
+			ContentEncoding contentEncoding, Configuration configuration) throws IOException {
+		byte[] data;
+		if (contentEncoding != null) {
+			data = content.getEncodedData(contentEncoding, configuration.getCompressionLevel());
+			setContentEncodingHeader(response, contentEncoding);
+		} else {
+			data = content.getData();
+		}
+
+		response.setContentLength(data.length);
 
 		@SuppressWarnings("resource")
 		ServletOutputStream out = response.getOutputStream();
@@ -178,4 +306,40 @@ public final class ExtDirectSpringUtil {
 		out.flush();
 	}
 
+	/**
+	 * Selects the encoding a response is compressed with. Returns null if
+	 * compression is disabled, the response is smaller than the threshold or
+	 * the client does not accept a compressed response. If compression is
+	 * enabled the Vary header is set, so caches keep the variants apart.
+	 * 
+	 * @param request the HTTP servlet request, may be null
+	 * @param response the HTTP servlet response
+	 * @param configuration the configuration with the compression settings,
+	 *            may be null
+	 * @param length the length of the uncompressed response, -1 if unknown
+	 * @return the encoding or null if the response is sent uncompressed
+	 */
+	public static ContentEncoding getContentEncoding(HttpServletRequest request, HttpServletResponse response,
+			Configuration configuration, int length) {
+		if (request == null || configuration == null || !configuration.isCompressResponse()) {
+			return null;
+		}
+
+		response.setHeader("Vary", "Accept-Encoding");
+		if (length >= 0 && length < configuration.getCompressionThreshold()) {
+			return null;
+		}
+		return ContentEncoding.negotiate(request.getHeader("Accept-Encoding"));
+	}
+
+	/**
+	 * Sets the Content-Encoding header.
+	 * 
+	 * @param response the HTTP servlet response
+	 * @param contentEncoding the encoding of the response
+	 */
+	public static void setContentEncodingHeader(HttpServletResponse response, ContentEncoding contentEncoding) {
+		response.setHeader("Content-Encoding", contentEncoding.getName());
+	}
+
 }
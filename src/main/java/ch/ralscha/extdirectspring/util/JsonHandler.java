@@ -15,14 +15,29 @@
  */
 package ch.ralscha.extdirectspring.util;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.LogFactory;
 import org.springframework.util.Assert;
 
+import ch.ralscha.extdirectspring.bean.ExtDirectRequest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 /**
  * Object contains an {@link ObjectMapper} and provides convenient methods.
@@ -31,6 +46,10 @@ public class JsonHandler {
 
 	private ObjectMapper mapper;
 
+	private final ConcurrentMap<Class<?>, ObjectWriter> viewWriters = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+	private final ConcurrentMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<JavaType, ObjectReader>();
+
 	public JsonHandler() {
 		mapper = new ObjectMapper();
 	}
@@ -44,6 +63,8 @@ public class JsonHandler {
 		Assert.notNull(mapper, "ObjectMapper must not be null");
 
 		this.mapper = mapper;
+		viewWriters.clear();
+		readers.clear();
 	}
 
 	/**
@@ -85,6 +106,64 @@ public class JsonHandler {
 		}
 	}
 
+	/**
+	 * Returns an {@link ObjectWriter} that serializes objects with the
+	 * specified json view. The writer is created once per view class and
+	 * cached until a new {@link ObjectMapper} is set.
+	 * 
+	 * @param jsonView the json view class. must not be <code>null</code>
+	 * @return the cached writer for the view
+	 */
+	public ObjectWriter getWriterWithView(Class<?> jsonView) {
+		ObjectWriter writer = viewWriters.get(jsonView);
+		if (writer == null) {
+			writer = mapper.writerWithView(jsonView);
+			ObjectWriter existingWriter = viewWriters.putIfAbsent(jsonView, writer);
+			if (existingWriter != null) {
+				writer = existingWriter;
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * Returns an {@link ObjectReader} that creates instances of the specified
+	 * type. The reader is created once per type and cached until a new
+	 * {@link ObjectMapper} is set.
+	 * 
+	 * @param type the type of the objects the reader creates
+	 * @return the cached reader for the type
+	 */
+	public ObjectReader getReader(JavaType type) {
+		ObjectReader reader = readers.get(type);
+		if (reader == null) {
+			reader = mapper.reader(type);
+			ObjectReader existingReader = readers.putIfAbsent(type, reader);
+			if (existingReader != null) {
+				reader = existingReader;
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * Writes an object as JSON to a {@link JsonGenerator}. If jsonView is not
+	 * null the object is serialized with the cached writer of this view. The
+	 * generator is not closed.
+	 * 
+	 * @param jsonGenerator the target generator
+	 * @param obj the source object
+	 * @param jsonView the json view class, may be <code>null</code>
+	 * @throws IOException if the object cannot be serialized or written
+	 */
+	public void writeValue(JsonGenerator jsonGenerator, Object obj, Class<?> jsonView) throws IOException {
+		if (jsonView == null) {
+			mapper.writeValue(jsonGenerator, obj);
+		} else {
+			getWriterWithView(jsonView).writeValue(jsonGenerator, obj);
+		}
+	}
+
 	/**
 	 * Converts a JSON string into an object. In case of an exception returns
 	 * null and logs the exception.
@@ -160,4 +239,79 @@ public class JsonHandler {
 	public <T> T convertValue(Object object, JavaType toValueTypeRef) {
 		return mapper.convertValue(object, toValueTypeRef);
 	}
+
+	/**
+	 * Reads one Ext Direct request or a batch of requests from an InputStream.
+	 * The JSON tokens are read in one pass and the requests are created
+	 * directly without an intermediate object tree. The data payload of every
+	 * request is kept as a buffer of tokens and only converted when it is
+	 * accessed. Elements of a batch that are not objects are logged and
+	 * returned as an empty request without action and method, unknown fields
+	 * are logged and ignored. In case of an invalid JSON returns an empty list
+	 * and logs the exception.
+	 * 
+	 * @param is a InputStream
+	 * @return list of the requests, never <code>null</code>
+	 * @throws IOException if the InputStream cannot be read
+	 */
+	public List<ExtDirectRequest> readDirectRequests(InputStream is) throws IOException {
+		JsonParser jp = mapper.getFactory().createParser(is);
+		try {
+			JsonToken token = jp.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				return Collections.singletonList(readDirectRequest(jp));
+			} else if (token == JsonToken.START_ARRAY) {
+				List<ExtDirectRequest> directRequests = new ArrayList<ExtDirectRequest>();
+				while ((token = jp.nextToken()) != JsonToken.END_ARRAY) {
+					if (token == JsonToken.START_OBJECT) {
+						directRequests.add(readDirectRequest(jp));
+					} else {
+						// answered with a method not found exception, so the
+						// batch keeps its size and the order of the responses
+						LogFactory.getLog(JsonHandler.class).warn(
+								"batch element " + directRequests.size() + " is not an Ext Direct request: " + token);
+						jp.skipChildren();
+						directRequests.add(new ExtDirectRequest());
+					}
+				}
+				return directRequests;
+			}
+		} catch (JsonProcessingException e) {
+			LogFactory.getLog(JsonHandler.class).info("deserialize json to object", e);
+		} finally {
+			jp.close();
+		}
+		return Collections.emptyList();
+	}
+
+	private ExtDirectRequest readDirectRequest(JsonParser jp) throws IOException {
+		ExtDirectRequest directRequest = new ExtDirectRequest();
+
+		while (jp.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = jp.getCurrentName();
+			JsonToken token = jp.nextToken();
+
+			if ("action".equals(fieldName)) {
+				directRequest.setAction(token == JsonToken.VALUE_NULL ? null : jp.getText());
+			} else if ("method".equals(fieldName)) {
+				directRequest.setMethod(token == JsonToken.VALUE_NULL ? null : jp.getText());
+			} else if ("type".equals(fieldName)) {
+				directRequest.setType(token == JsonToken.VALUE_NULL ? null : jp.getText());
+			} else if ("tid".equals(fieldName)) {
+				directRequest.setTid(jp.getValueAsInt());
+			} else if ("data".equals(fieldName)) {
+				if (token != JsonToken.VALUE_NULL) {
+					TokenBuffer dataBuffer = new TokenBuffer(mapper);
+					dataBuffer.copyCurrentStructure(jp);
+					directRequest.setDataBuffer(dataBuffer);
+				}
+			} else {
+				LogFactory.getLog(JsonHandler.class).warn("unknown field '" + fieldName + "' in Ext Direct request");
+				jp.skipChildren();
+			}
+		}
+
+		return directRequest;
+	}
+
 }
@@ -22,7 +22,9 @@ import java.util.List;
 
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.MethodParameter;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.method.HandlerMethod;
@@ -54,6 +56,10 @@ public final class MethodInfo {
 
 	private List<ParameterInfo> parameters;
 
+	private ParameterBinding[] parameterBindings;
+
+	private MethodParameter[] methodParameters;
+
 	private Method method;
 
 	private String forwardPath;
@@ -68,6 +74,14 @@ public final class MethodInfo {
 
 	private String sseMethod;
 
+	private final String beanName;
+
+	private final boolean singletonBean;
+
+	private volatile ResolvedBean resolvedBean;
+
+	private final ResponseSizeHistogram responseSizeHistogram = new ResponseSizeHistogram();
+
 	public MethodInfo(Class<?> clazz, ApplicationContext context, String beanName, Method method) {
 
 		ExtDirectMethod extDirectMethodAnnotation = AnnotationUtils.findAnnotation(method, ExtDirectMethod.class);
@@ -89,9 +103,19 @@ public final class MethodInfo {
 		this.synchronizeOnSession = extDirectMethodAnnotation.synchronizeOnSession();
 		this.streamResponse = extDirectMethodAnnotation.streamResponse();
 
+		this.beanName = beanName;
+		this.singletonBean = context != null && beanName != null && context.containsBean(beanName)
+				&& context.isSingleton(beanName);
+
 		if (type != ExtDirectMethodType.FORM_POST) {
 			this.method = method;
+			ReflectionUtils.makeAccessible(method);
 			this.parameters = buildParameterList(clazz, method);
+			this.parameterBindings = ParameterBinding.createPlan(type, parameters);
+			this.methodParameters = new MethodParameter[parameters.size()];
+			for (int paramIndex = 0; paramIndex < methodParameters.length; paramIndex++) {
+				methodParameters[paramIndex] = new MethodParameter(method, paramIndex);
+			}
 
 			this.collectionType = (extDirectMethodAnnotation.entryClass() == Object.class) ? null
 					: extDirectMethodAnnotation.entryClass();
@@ -131,7 +155,7 @@ public final class MethodInfo {
 					}
 					this.forwardPath = "forward:" + path;
 				}
-			} else {
+			} else if (context != null) {
 				this.handlerMethod = new HandlerMethod(beanName, context, method).createWithResolvedBean();
 			}
 		}
@@ -255,6 +279,42 @@ public final class MethodInfo {
 		return method;
 	}
 
+	/**
+	 * Returns the bean the method has to be invoked on. A singleton bean is
+	 * looked up only once per application context and then reused for all
+	 * following calls. Beans with any other scope (prototype, request,
+	 * session) are always retrieved from the application context.
+	 * 
+	 * @param applicationContext the Spring application context
+	 * @param name the name of the bean
+	 * @return the bean
+	 */
+	Object getBean(ApplicationContext applicationContext, String name) {
+		if (singletonBean && beanName.equals(name)) {
+			ResolvedBean resolved = resolvedBean;
+			if (resolved == null || resolved.context != applicationContext) {
+				resolved = new ResolvedBean(applicationContext, applicationContext.getBean(name));
+				resolvedBean = resolved;
+			}
+			return resolved.bean;
+		}
+		return applicationContext.getBean(name);
+	}
+
+	/**
+	 * Forgets the singleton bean if it was resolved from the given context.
+	 * Called when the context is closed, so the cache does not keep the
+	 * context and its bean alive.
+	 * 
+	 * @param applicationContext the closed application context
+	 */
+	public void releaseBean(ApplicationContext applicationContext) {
+		ResolvedBean resolved = resolvedBean;
+		if (resolved != null && resolved.context == applicationContext) {
+			resolvedBean = null;
+		}
+	}
+
 	public String getForwardPath() {
 		return forwardPath;
 	}
@@ -267,6 +327,23 @@ public final class MethodInfo {
 		return parameters;
 	}
 
+	/**
+	 * @return the binding of every parameter, selected when this object was
+	 *         created. The array has the same order as
+	 *         {@link #getParameters()}.
+	 */
+	ParameterBinding[] getParameterBindings() {
+		return parameterBindings;
+	}
+
+	/**
+	 * @param paramIndex index of the parameter
+	 * @return the MethodParameter that is handed to the WebArgumentResolvers
+	 */
+	MethodParameter getMethodParameter(int paramIndex) {
+		return methodParameters[paramIndex];
+	}
+
 	public Class<?> getCollectionType() {
 		return collectionType;
 	}
@@ -287,6 +364,14 @@ public final class MethodInfo {
 		return streamResponse;
 	}
 
+	/**
+	 * @return the histogram of the recent sizes of the serialized responses of
+	 *         this method
+	 */
+	public ResponseSizeHistogram getResponseSizeHistogram() {
+		return responseSizeHistogram;
+	}
+
 	public PollingProvider getPollingProvider() {
 		return pollingProvider;
 	}
@@ -332,4 +417,16 @@ public final class MethodInfo {
 		return null;
 	}
 
+	private static final class ResolvedBean {
+
+		private final ApplicationContext context;
+
+		private final Object bean;
+
+		ResolvedBean(ApplicationContext context, Object bean) {
+			this.context = context;
+			this.bean = bean;
+		}
+	}
+
 }
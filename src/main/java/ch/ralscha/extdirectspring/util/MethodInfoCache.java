@@ -16,16 +16,44 @@
 package ch.ralscha.extdirectspring.util;
 
 import java.lang.reflect.Method;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.springframework.context.ApplicationContext;
 
 /**
- * A simple cache for methods with key beanName/methodName
+ * A simple cache for methods with key beanName/methodName.
+ * <p>
+ * The cache is an immutable two level index (beanName -> methodName ->
+ * MethodInfo). Every modification creates a new {@link Registry} with the
+ * index, the list of all methods, the group index and the time of the
+ * modification. The registry is published with one volatile write, lookups
+ * from request threads never lock and never allocate and always see a
+ * consistent version of the cache.
+ * <p>
+ * The methods are kept separately for every application context they are
+ * registered from. A refreshed context replaces all of its methods, methods
+ * that no longer exist are removed from the cache. If several contexts
+ * register the same bean and method the context that was registered last
+ * wins.
+ * <p>
+ * Together with the index the cache builds a group index (group -> methods).
+ * The group attribute of every method is split once when the methods are
+ * registered, {@link #getEntries(String)} then returns the methods of a group
+ * without looking at the methods of other groups.
+ * <p>
+ * The time of the last modification is the Last-Modified validator of the
+ * api.js responses, it changes only when the registered methods change.
  */
 public enum MethodInfoCache implements Iterable<Map.Entry<MethodInfoCache.Key, MethodInfo>> {
 
@@ -34,10 +62,11 @@ public enum MethodInfoCache implements Iterable<Map.Entry<MethodInfoCache.Key, M
 	 */
 	INSTANCE;
 
-	private final Map<Key, MethodInfo> cache;
+	private volatile Registry registry;
 
 	private MethodInfoCache() {
-		cache = new HashMap<Key, MethodInfo>();
+		Map<ApplicationContext, Map<Key, MethodInfo>> noSources = Collections.emptyMap();
+		registry = new Registry(noSources, nextLastModified(0));
 	}
 
 	/**
@@ -48,9 +77,59 @@ public enum MethodInfoCache implements Iterable<Map.Entry<MethodInfoCache.Key, M
 	 * @param method the method
 	 * @param context the Spring application context
 	 */
-	public void put(String beanName, Class<?> clazz, Method method, ApplicationContext context) {
+	public synchronized void put(String beanName, Class<?> clazz, Method method, ApplicationContext context) {
 		MethodInfo info = new MethodInfo(clazz, context, beanName, method);
-		cache.put(new Key(beanName, method.getName()), info);
+		Map<Key, MethodInfo> methodInfos = new LinkedHashMap<Key, MethodInfo>();
+		Map<Key, MethodInfo> existingMethodInfos = registry.sources.get(context);
+		if (existingMethodInfos != null) {
+			methodInfos.putAll(existingMethodInfos);
+		}
+		methodInfos.put(new Key(beanName, method.getName()), info);
+		publish(context, methodInfos);
+	}
+
+	/**
+	 * Put all the methods into the MethodCache with one atomic update. Existing
+	 * entries with the same key are replaced. The methods are not associated
+	 * with an application context.
+	 * 
+	 * @param methodInfos the methods to add
+	 */
+	public synchronized void putAll(Map<Key, MethodInfo> methodInfos) {
+		if (methodInfos.isEmpty()) {
+			return;
+		}
+
+		Map<Key, MethodInfo> newMethodInfos = new LinkedHashMap<Key, MethodInfo>();
+		Map<Key, MethodInfo> existingMethodInfos = registry.sources.get(null);
+		if (existingMethodInfos != null) {
+			newMethodInfos.putAll(existingMethodInfos);
+		}
+		newMethodInfos.putAll(methodInfos);
+		publish(null, newMethodInfos);
+	}
+
+	/**
+	 * Replaces all the methods of an application context with one atomic
+	 * update. Methods the context registered before and that are not part of
+	 * methodInfos are removed.
+	 * 
+	 * @param context the application context the methods belong to
+	 * @param methodInfos all methods of the context
+	 */
+	public synchronized void replaceAll(ApplicationContext context, Map<Key, MethodInfo> methodInfos) {
+		publish(context, new LinkedHashMap<Key, MethodInfo>(methodInfos));
+	}
+
+	/**
+	 * Removes all the methods of an application context.
+	 * 
+	 * @param context the application context the methods belong to
+	 */
+	public synchronized void removeAll(ApplicationContext context) {
+		if (registry.sources.containsKey(context)) {
+			publish(context, null);
+		}
 	}
 
 	/**
@@ -62,7 +141,197 @@ public enum MethodInfoCache implements Iterable<Map.Entry<MethodInfoCache.Key, M
 	 *         the cache
 	 */
 	public MethodInfo get(String beanName, String methodName) {
-		return cache.get(new Key(beanName, methodName));
+		Map<String, MethodInfo> methods = registry.cache.get(beanName);
+		if (methods != null) {
+			return methods.get(methodName);
+		}
+		return null;
+	}
+
+	/**
+	 * Publishes a new registry with the methods of the given source. The
+	 * changed source moves to the end and wins over the sources registered
+	 * before. Caller has to hold the lock.
+	 * 
+	 * @param source the application context, may be null
+	 * @param methodInfos the new methods of the source, null or empty removes
+	 *            the source
+	 */
+	private void publish(ApplicationContext source, Map<Key, MethodInfo> methodInfos) {
+		Registry current = registry;
+		Map<ApplicationContext, Map<Key, MethodInfo>> newSources;
+		newSources = new LinkedHashMap<ApplicationContext, Map<Key, MethodInfo>>(current.sources);
+		newSources.remove(source);
+		if (methodInfos != null && !methodInfos.isEmpty()) {
+			newSources.put(source, Collections.unmodifiableMap(methodInfos));
+		}
+		registry = new Registry(Collections.unmodifiableMap(newSources), nextLastModified(current.lastModified));
+	}
+
+	/**
+	 * Returns the time of the next modification. HTTP dates have a precision
+	 * of one second, the time is rounded down to full seconds and increased
+	 * by at least one second with every modification, so two versions of the
+	 * cache never share a time.
+	 */
+	private static long nextLastModified(long lastModified) {
+		long now = System.currentTimeMillis() / 1000L * 1000L;
+		return Math.max(now, lastModified + 1000L);
+	}
+
+	/**
+	 * @return the time of the last modification of the cache in milliseconds,
+	 *         rounded down to full seconds
+	 */
+	public long getLastModified() {
+		return registry.lastModified;
+	}
+
+	/**
+	 * Returns the methods that belong to the requested groups, in iteration
+	 * order of the cache.
+	 * 
+	 * @param requestedGroups null returns all methods. An empty string returns
+	 *            the methods without a group. Otherwise a comma separated
+	 *            list of groups, a method is returned if one of its groups is
+	 *            equal to one of the requested groups. The groups are not
+	 *            trimmed.
+	 * @return unmodifiable list of methods
+	 */
+	public List<Map.Entry<Key, MethodInfo>> getEntries(String requestedGroups) {
+		GroupIndex index = registry.groupIndex;
+		if (requestedGroups == null) {
+			return index.all;
+		}
+
+		if (requestedGroups.isEmpty()) {
+			return index.ungrouped;
+		}
+
+		String[] requested = requestedGroups.split(",");
+		if (requested.length == 1) {
+			List<Map.Entry<Key, MethodInfo>> result = index.groups.get(requested[0]);
+			return result != null ? result : Collections.<Map.Entry<Key, MethodInfo>> emptyList();
+		}
+
+		BitSet positions = new BitSet(index.all.size());
+		for (String group : requested) {
+			int[] groupPositions = index.positions.get(group);
+			if (groupPositions != null) {
+				for (int position : groupPositions) {
+					positions.set(position);
+				}
+			}
+		}
+
+		List<Map.Entry<Key, MethodInfo>> result = new ArrayList<Map.Entry<Key, MethodInfo>>(positions.cardinality());
+		for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+			result.add(index.all.get(i));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Immutable version of the cache. Contains the methods of every source,
+	 * the merged beanName -> methodName -> MethodInfo index, the list of all
+	 * methods and the group index.
+	 */
+	private static final class Registry {
+
+		final Map<ApplicationContext, Map<Key, MethodInfo>> sources;
+
+		final Map<String, Map<String, MethodInfo>> cache;
+
+		final List<Map.Entry<Key, MethodInfo>> entries;
+
+		final GroupIndex groupIndex;
+
+		final long lastModified;
+
+		Registry(Map<ApplicationContext, Map<Key, MethodInfo>> sources, long lastModified) {
+			this.sources = sources;
+			this.lastModified = lastModified;
+
+			Map<Key, MethodInfo> merged = new LinkedHashMap<Key, MethodInfo>();
+			for (Map<Key, MethodInfo> methodInfos : sources.values()) {
+				merged.putAll(methodInfos);
+			}
+
+			Map<String, Map<String, MethodInfo>> newCache = new HashMap<String, Map<String, MethodInfo>>();
+			List<Map.Entry<Key, MethodInfo>> newEntries = new ArrayList<Map.Entry<Key, MethodInfo>>(merged.size());
+			for (Map.Entry<Key, MethodInfo> entry : merged.entrySet()) {
+				Map<String, MethodInfo> methods = newCache.get(entry.getKey().getBeanName());
+				if (methods == null) {
+					methods = new HashMap<String, MethodInfo>();
+					newCache.put(entry.getKey().getBeanName(), methods);
+				}
+				methods.put(entry.getKey().getMethodName(), entry.getValue());
+				newEntries.add(new SimpleImmutableEntry<Key, MethodInfo>(entry));
+			}
+			for (Map.Entry<String, Map<String, MethodInfo>> entry : newCache.entrySet()) {
+				entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+			}
+
+			this.cache = Collections.unmodifiableMap(newCache);
+			this.entries = Collections.unmodifiableList(newEntries);
+			this.groupIndex = new GroupIndex(this.entries);
+		}
+	}
+
+	/**
+	 * Immutable group -> methods index. Every method is listed under each of
+	 * its comma separated groups, methods without a group are listed in
+	 * ungrouped. The positions refer to the list of all methods and are used
+	 * to merge several groups in the original order without duplicates.
+	 */
+	private static final class GroupIndex {
+
+		final List<Map.Entry<Key, MethodInfo>> all;
+
+		final List<Map.Entry<Key, MethodInfo>> ungrouped;
+
+		final Map<String, List<Map.Entry<Key, MethodInfo>>> groups;
+
+		final Map<String, int[]> positions;
+
+		GroupIndex(List<Map.Entry<Key, MethodInfo>> all) {
+			this.all = all;
+
+			List<Map.Entry<Key, MethodInfo>> ungroupedEntries = new ArrayList<Map.Entry<Key, MethodInfo>>();
+			Map<String, List<Integer>> groupPositions = new HashMap<String, List<Integer>>();
+			for (int i = 0; i < all.size(); i++) {
+				Map.Entry<Key, MethodInfo> entry = all.get(i);
+				String group = entry.getValue().getGroup();
+				if (group == null || group.trim().isEmpty()) {
+					ungroupedEntries.add(entry);
+				}
+				if (group != null && !group.isEmpty()) {
+					for (String name : new LinkedHashSet<String>(Arrays.asList(group.split(",")))) {
+						List<Integer> list = groupPositions.get(name);
+						if (list == null) {
+							list = new ArrayList<Integer>();
+							groupPositions.put(name, list);
+						}
+						list.add(i);
+					}
+				}
+			}
+
+			this.ungrouped = Collections.unmodifiableList(ungroupedEntries);
+			this.groups = new HashMap<String, List<Map.Entry<Key, MethodInfo>>>();
+			this.positions = new HashMap<String, int[]>();
+			for (Map.Entry<String, List<Integer>> entry : groupPositions.entrySet()) {
+				List<Integer> list = entry.getValue();
+				int[] array = new int[list.size()];
+				List<Map.Entry<Key, MethodInfo>> groupEntries = new ArrayList<Map.Entry<Key, MethodInfo>>(list.size());
+				for (int j = 0; j < array.length; j++) {
+					array[j] = list.get(j);
+					groupEntries.add(all.get(array[j]));
+				}
+				this.positions.put(entry.getKey(), array);
+				this.groups.put(entry.getKey(), Collections.unmodifiableList(groupEntries));
+			}
+		}
 	}
 
 	public final static class Key {
@@ -80,6 +349,10 @@ public enum MethodInfoCache implements Iterable<Map.Entry<MethodInfoCache.Key, M
 			return beanName;
 		}
 
+		public String getMethodName() {
+			return methodName;
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (!(o instanceof Key)) {
@@ -100,11 +373,12 @@ public enum MethodInfoCache implements Iterable<Map.Entry<MethodInfoCache.Key, M
 
 	@Override
 	public Iterator<Entry<Key, MethodInfo>> iterator() {
-		return cache.entrySet().iterator();
+		return registry.entries.iterator();
 	}
 
-	public void clear() {
-		cache.clear();
+	public synchronized void clear() {
+		Map<ApplicationContext, Map<Key, MethodInfo>> noSources = Collections.emptyMap();
+		registry = new Registry(noSources, nextLastModified(registry.lastModified));
 	}
 
 }
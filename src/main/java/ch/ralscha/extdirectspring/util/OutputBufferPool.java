@@ -0,0 +1,81 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of {@link SegmentedByteArrayOutputStream} instances that are
+ * used to buffer non streamed responses. The pool is striped by thread to
+ * avoid contention. A stripe holds at most one buffer and a returned buffer
+ * keeps at most {@link #MAX_RETAINED_BYTES} bytes of segments, so the memory
+ * held by the pool is bounded. If a stripe is empty a new buffer is created.
+ */
+public enum OutputBufferPool {
+
+	/**
+	 * Singleton enum pattern
+	 */
+	INSTANCE;
+
+	static final int MAX_RETAINED_BYTES = 1024 * 1024;
+
+	private final AtomicReferenceArray<SegmentedByteArrayOutputStream> stripes;
+
+	private final int mask;
+
+	private OutputBufferPool() {
+		int size = 1;
+		while (size < Runtime.getRuntime().availableProcessors() * 2) {
+			size <<= 1;
+		}
+		stripes = new AtomicReferenceArray<SegmentedByteArrayOutputStream>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Takes a buffer from the pool or creates a new one. The buffer has to be
+	 * given back with {@link #release(SegmentedByteArrayOutputStream)}.
+	 * 
+	 * @param sizeHint expected number of bytes that will be written
+	 * @return an empty buffer
+	 */
+	public SegmentedByteArrayOutputStream acquire(int sizeHint) {
+		SegmentedByteArrayOutputStream buffer = stripes.getAndSet(stripe(), null);
+		if (buffer == null) {
+			return new SegmentedByteArrayOutputStream(sizeHint);
+		}
+		buffer.reset(sizeHint);
+		return buffer;
+	}
+
+	/**
+	 * Gives a buffer back to the pool. The buffer must not be used after this
+	 * call.
+	 * 
+	 * @param buffer a buffer obtained from {@link #acquire(int)}
+	 */
+	public void release(SegmentedByteArrayOutputStream buffer) {
+		buffer.trim(MAX_RETAINED_BYTES);
+		stripes.compareAndSet(stripe(), null, buffer);
+	}
+
+	private int stripe() {
+		long id = Thread.currentThread().getId();
+		return (int) (id ^ (id >>> 32)) & mask;
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.util.List;
+
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethodType;
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+
+/**
+ * Specifies where the {@link ParametersResolver} takes the value of a method
+ * parameter from. The binding of every parameter is selected once when the
+ * {@link MethodInfo} is created.
+ */
+enum ParameterBinding {
+
+	/**
+	 * Servlet objects and the other types listed in {@link SupportedParameters}
+	 */
+	SUPPORTED_PARAMETER,
+
+	/**
+	 * The {@link ExtDirectStoreReadRequest} built from the first data entry
+	 */
+	STORE_READ_REQUEST,
+
+	/**
+	 * The records of a STORE_MODIFY call. Falls back to the binding returned
+	 * by {@link #forParameter(ParameterInfo)} if the request does not contain
+	 * records.
+	 */
+	STORE_MODIFY_RECORDS,
+
+	/**
+	 * Named value of a parameter annotated with @RequestParam
+	 */
+	REQUEST_PARAM,
+
+	/**
+	 * Http header of a parameter annotated with @RequestHeader
+	 */
+	REQUEST_HEADER,
+
+	/**
+	 * Named value, the next positional value or the value of a
+	 * WebArgumentResolver, whichever is found first
+	 */
+	VALUE;
+
+	static ParameterBinding[] createPlan(ExtDirectMethodType type, List<ParameterInfo> parameters) {
+		ParameterBinding[] plan = new ParameterBinding[parameters.size()];
+		for (int i = 0; i < plan.length; i++) {
+			ParameterInfo parameter = parameters.get(i);
+			ParameterBinding binding = forParameter(parameter);
+			if (type == ExtDirectMethodType.STORE_MODIFY && parameter.getCollectionType() != null
+					&& binding != SUPPORTED_PARAMETER && binding != STORE_READ_REQUEST) {
+				binding = STORE_MODIFY_RECORDS;
+			}
+			plan[i] = binding;
+		}
+		return plan;
+	}
+
+	static ParameterBinding forParameter(ParameterInfo parameter) {
+		if (parameter.isSupportedParameter()) {
+			return SUPPORTED_PARAMETER;
+		} else if (ExtDirectStoreReadRequest.class.isAssignableFrom(parameter.getType())) {
+			return STORE_READ_REQUEST;
+		} else if (parameter.isHasRequestParamAnnotation()) {
+			return REQUEST_PARAM;
+		} else if (parameter.isHasRequestHeaderAnnotation()) {
+			return REQUEST_HEADER;
+		}
+		return VALUE;
+	}
+
+}
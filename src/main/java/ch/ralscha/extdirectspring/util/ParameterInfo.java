@@ -17,7 +17,9 @@ package ch.ralscha.extdirectspring.util;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 
+import org.springframework.beans.BeanUtils;
 import org.springframework.core.GenericTypeResolver;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
 import org.springframework.core.MethodParameter;
@@ -27,6 +29,10 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ValueConstants;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
 /**
  * Object holds information about a parameter. i.e. the name, type and the
  * attributes of a RequestParam annotation.
@@ -39,8 +45,18 @@ public final class ParameterInfo {
 
 	private final TypeDescriptor typeDescriptor;
 
+	private final Class<?> collectionType;
+
 	private final boolean supportedParameter;
 
+	private final boolean directBindable;
+
+	private final Class<?> declaringClass;
+
+	private final Type genericType;
+
+	private volatile CachedReader cachedReader;
+
 	private boolean hasRequestParamAnnotation;
 
 	private boolean hasRequestHeaderAnnotation;
@@ -57,8 +73,19 @@ public final class ParameterInfo {
 
 		this.name = methodParam.getParameterName();
 		this.typeDescriptor = new TypeDescriptor(methodParam);
+		this.declaringClass = clazz;
+		this.genericType = methodParam.getGenericParameterType();
 
 		this.supportedParameter = SupportedParameters.isSupported(typeDescriptor.getObjectType());
+		this.directBindable = !supportedParameter && typeDescriptor.getType() != Object.class
+				&& !BeanUtils.isSimpleProperty(typeDescriptor.getType())
+				&& methodParam.getParameterAnnotations().length == 0;
+
+		if (typeDescriptor.isCollection() && typeDescriptor.getElementTypeDescriptor() != null) {
+			this.collectionType = typeDescriptor.getElementTypeDescriptor().getType();
+		} else {
+			this.collectionType = null;
+		}
 
 		Annotation[] paramAnnotations = methodParam.getParameterAnnotations();
 
@@ -94,10 +121,7 @@ public final class ParameterInfo {
 	}
 
 	public Class<?> getCollectionType() {
-		if (typeDescriptor.isCollection() && typeDescriptor.getElementTypeDescriptor() != null) {
-			return typeDescriptor.getElementTypeDescriptor().getType();
-		}
-		return null;
+		return collectionType;
 	}
 
 	public String getName() {
@@ -128,4 +152,46 @@ public final class ParameterInfo {
 		return typeDescriptor;
 	}
 
+	/**
+	 * @return true if a JSON object or array sent for this parameter may be
+	 *         read directly from the JSON tokens of the request with
+	 *         {@link #getObjectReader(ObjectMapper)}. This is the case for
+	 *         beans, collections, arrays and maps without annotations. The
+	 *         ParametersResolver only does this if the ConversionService has
+	 *         no converter for the type, all other values are converted with
+	 *         the ConversionService.
+	 */
+	public boolean isDirectBindable() {
+		return directBindable;
+	}
+
+	/**
+	 * Returns a reader that creates instances of the (generic) type of this
+	 * parameter. The reader is created once and reused as long as the same
+	 * mapper is passed to this method.
+	 * 
+	 * @param mapper the mapper of the {@link JsonHandler}
+	 * @return the reader for the type of this parameter
+	 */
+	public ObjectReader getObjectReader(ObjectMapper mapper) {
+		CachedReader cached = cachedReader;
+		if (cached == null || cached.mapper != mapper) {
+			JavaType javaType = mapper.getTypeFactory().constructType(genericType, declaringClass);
+			cached = new CachedReader(mapper, mapper.reader(javaType));
+			cachedReader = cached;
+		}
+		return cached.reader;
+	}
+
+	private static final class CachedReader {
+		final ObjectMapper mapper;
+
+		final ObjectReader reader;
+
+		CachedReader(ObjectMapper mapper, ObjectReader reader) {
+			this.mapper = mapper;
+			this.reader = reader;
+		}
+	}
+
 }
@@ -15,24 +15,34 @@
  */
 package ch.ralscha.extdirectspring.util;
 
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.BeanUtils;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.convert.ConversionFailedException;
 import org.springframework.core.convert.ConversionService;
@@ -46,13 +56,19 @@ import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
 import ch.ralscha.extdirectspring.bean.GroupInfo;
 import ch.ralscha.extdirectspring.bean.SortDirection;
 import ch.ralscha.extdirectspring.bean.SortInfo;
+import ch.ralscha.extdirectspring.controller.Configuration;
 import ch.ralscha.extdirectspring.controller.SSEWriter;
 import ch.ralscha.extdirectspring.filter.Filter;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 /**
  * Resolver of ExtDirectRequest parameters.
@@ -67,11 +83,64 @@ public final class ParametersResolver {
 
 	private final Collection<WebArgumentResolver> webArgumentResolvers;
 
+	private final int parallelDecodingThreshold;
+
+	private final ExecutorService decodingExecutorService;
+
+	private final boolean eagerStoreReadRequestParsing;
+
+	/**
+	 * The WebArgumentResolver that resolved a parameter the last time. It is
+	 * asked first on the next call.
+	 */
+	private final ConcurrentMap<MethodParameter, WebArgumentResolver> resolverAffinity = new ConcurrentHashMap<MethodParameter, WebArgumentResolver>();
+
+	/**
+	 * How a value of a class is converted into the type of a parameter.
+	 */
+	private final ConcurrentMap<ConversionKey, ConversionDecision> conversionDecisions = new ConcurrentHashMap<ConversionKey, ConversionDecision>();
+
+	/**
+	 * Whether a JSON object or array sent for a parameter is read directly
+	 * from the JSON tokens or converted with the ConversionService.
+	 */
+	private final ConcurrentMap<ParameterInfo, Boolean> directBindings = new ConcurrentHashMap<ParameterInfo, Boolean>();
+
+	/**
+	 * The classes Jackson creates for the scalar values and objects of an
+	 * untyped JSON payload.
+	 */
+	private static final Class<?>[] JSON_VALUE_CLASSES = { String.class, Integer.class, Long.class, Double.class,
+			Boolean.class };
+
 	public ParametersResolver(ConversionService conversionService, JsonHandler jsonHandler,
 			Collection<WebArgumentResolver> webArgumentResolvers) {
+		this(conversionService, jsonHandler, webArgumentResolvers, null);
+	}
+
+	/**
+	 * Creates a resolver that uses the settings of the configuration for
+	 * decoding the records of STORE_MODIFY calls and for parsing the filters,
+	 * sorters and groups of STORE_READ calls.
+	 * 
+	 * @param configuration the configuration, may be <code>null</code>
+	 * @see Configuration#setStoreModifyParallelDecodingThreshold(int)
+	 * @see Configuration#setEagerStoreReadRequestParsing(boolean)
+	 */
+	public ParametersResolver(ConversionService conversionService, JsonHandler jsonHandler,
+			Collection<WebArgumentResolver> webArgumentResolvers, Configuration configuration) {
 		this.conversionService = conversionService;
 		this.jsonHandler = jsonHandler;
 		this.webArgumentResolvers = webArgumentResolvers;
+		if (configuration != null && configuration.getStoreModifyParallelDecodingThreshold() > 0
+				&& configuration.getStoreModifyDecodingExecutorService() != null) {
+			this.parallelDecodingThreshold = configuration.getStoreModifyParallelDecodingThreshold();
+			this.decodingExecutorService = configuration.getStoreModifyDecodingExecutorService();
+		} else {
+			this.parallelDecodingThreshold = 0;
+			this.decodingExecutorService = null;
+		}
+		this.eagerStoreReadRequestParsing = configuration != null && configuration.isEagerStoreReadRequestParsing();
 	}
 
 	public Object[] prepareParameters(HttpServletRequest request, HttpServletResponse response, Locale locale,
@@ -84,18 +153,23 @@ public final class ParametersResolver {
 		List<ParameterInfo> methodParameters = methodInfo.getParameters();
 		Object[] parameters = null;
 		if (!methodParameters.isEmpty()) {
-			parameters = new Object[methodParameters.size()];
+			ParameterBinding[] bindings = methodInfo.getParameterBindings();
+			parameters = new Object[bindings.length];
 
-			for (int paramIndex = 0; paramIndex < methodParameters.size(); paramIndex++) {
+			for (int paramIndex = 0; paramIndex < bindings.length; paramIndex++) {
 				ParameterInfo methodParameter = methodParameters.get(paramIndex);
 
-				if (methodParameter.isSupportedParameter()) {
+				switch (bindings[paramIndex]) {
+				case SUPPORTED_PARAMETER:
 					parameters[paramIndex] = SupportedParameters.resolveParameter(methodParameter.getType(), request,
 							response, locale, sseWriter);
-				} else if (methodParameter.isHasRequestHeaderAnnotation()) {
+					break;
+				case REQUEST_HEADER:
 					parameters[paramIndex] = resolveRequestHeader(request, methodParameter);
-				} else {
+					break;
+				default:
 					parameters[paramIndex] = resolveRequestParam(request, null, methodParameter);
+					break;
 				}
 
 			}
@@ -114,15 +188,25 @@ public final class ParametersResolver {
 		List<Object> directStoreModifyRecords = null;
 		Class<?> directStoreEntryClass;
 
-		if (methodInfo.isType(ExtDirectMethodType.STORE_READ) || methodInfo.isType(ExtDirectMethodType.FORM_LOAD)
+		List<Object> positionalValues = null;
+		BitSet boundPositions = null;
+		Set<String> boundNames = null;
+
+		if (methodInfo.isType(ExtDirectMethodType.SIMPLE)) {
+			if (directRequest.getDataBuffer() != null) {
+				boundPositions = new BitSet();
+				positionalValues = readPositionalValues(directRequest.getDataBuffer(), methodInfo, boundPositions);
+			}
+		} else if (methodInfo.isType(ExtDirectMethodType.STORE_READ) || methodInfo.isType(ExtDirectMethodType.FORM_LOAD)
 				|| methodInfo.isType(ExtDirectMethodType.TREE_LOAD)) {
 
 			List<Object> data = (List<Object>) directRequest.getData();
 
 			if (data != null && data.size() > 0) {
 				if (methodInfo.isType(ExtDirectMethodType.STORE_READ)) {
-					extDirectStoreReadRequest = new ExtDirectStoreReadRequest();
-					remainingParameters = fillReadRequestFromMap(extDirectStoreReadRequest,
+					StoreReadRequestBinder binder = StoreReadRequestBinder.forType(getStoreReadRequestType(methodInfo));
+					extDirectStoreReadRequest = binder.newRequest();
+					remainingParameters = fillReadRequestFromMap(binder, extDirectStoreReadRequest,
 							(Map<String, Object>) data.get(0));
 				} else {
 					remainingParameters = (Map<String, Object>) data.get(0);
@@ -131,43 +215,61 @@ public final class ParametersResolver {
 			}
 		} else if (methodInfo.isType(ExtDirectMethodType.STORE_MODIFY)) {
 			directStoreEntryClass = methodInfo.getCollectionType();
-			List<Object> data = (List<Object>) directRequest.getData();
 
-			if (directStoreEntryClass != null && data != null && data.size() > 0) {
-				Object obj = data.get(0);
-				if (obj instanceof List) {
-					directStoreModifyRecords = convertObjectEntriesToType((List<Object>) obj, directStoreEntryClass);
-				} else {
-					Map<String, Object> jsonData = (Map<String, Object>) obj;
-					Object records = jsonData.get("records");
-					if (records != null) {
-						if (records instanceof List) {
-							directStoreModifyRecords = convertObjectEntriesToType((List<Object>) records,
-									directStoreEntryClass);
+			StoreModifyData storeModifyData = null;
+			if (directStoreEntryClass != null && directRequest.getDataBuffer() != null) {
+				storeModifyData = readStoreModifyData(directRequest.getDataBuffer(), directStoreEntryClass);
+			}
+
+			if (storeModifyData != null) {
+				directStoreModifyRecords = storeModifyData.records;
+				remainingParameters = storeModifyData.remainingParameters;
+				jsonParamIndex = 1;
+			} else {
+				List<Object> data = (List<Object>) directRequest.getData();
+
+				if (directStoreEntryClass != null && data != null && data.size() > 0) {
+					Object obj = data.get(0);
+					if (obj instanceof List) {
+						directStoreModifyRecords = convertObjectEntriesToType((List<Object>) obj,
+								directStoreEntryClass);
+					} else {
+						Map<String, Object> jsonData = (Map<String, Object>) obj;
+						Object records = jsonData.get("records");
+						if (records != null) {
+							if (records instanceof List) {
+								directStoreModifyRecords = convertObjectEntriesToType((List<Object>) records,
+										directStoreEntryClass);
+							} else {
+								directStoreModifyRecords = new ArrayList<Object>();
+								directStoreModifyRecords.add(jsonHandler.convertValue(records, directStoreEntryClass));
+							}
+							remainingParameters = new HashMap<String, Object>(jsonData);
+							remainingParameters.remove("records");
 						} else {
 							directStoreModifyRecords = new ArrayList<Object>();
-							directStoreModifyRecords.add(jsonHandler.convertValue(records, directStoreEntryClass));
+							directStoreModifyRecords.add(jsonHandler.convertValue(jsonData, directStoreEntryClass));
 						}
-						remainingParameters = new HashMap<String, Object>(jsonData);
-						remainingParameters.remove("records");
-					} else {
-						directStoreModifyRecords = new ArrayList<Object>();
-						directStoreModifyRecords.add(jsonHandler.convertValue(jsonData, directStoreEntryClass));
 					}
-				}
-				jsonParamIndex = 1;
+					jsonParamIndex = 1;
 
-			} else if (data != null && data.size() > 0) {
-				Object obj = data.get(0);
-				if (obj instanceof Map) {
-					remainingParameters = new HashMap<String, Object>((Map<String, Object>) obj);
-					remainingParameters.remove("records");
+				} else if (data != null && data.size() > 0) {
+					Object obj = data.get(0);
+					if (obj instanceof Map) {
+						remainingParameters = new HashMap<String, Object>((Map<String, Object>) obj);
+						remainingParameters.remove("records");
+					}
 				}
 			}
 		} else if (methodInfo.isType(ExtDirectMethodType.SIMPLE_NAMED)) {
-			Map<String, Object> data = (Map<String, Object>) directRequest.getData();
-			if (data != null && data.size() > 0) {
-				remainingParameters = new HashMap<String, Object>(data);
+			if (directRequest.getDataBuffer() != null) {
+				boundNames = new HashSet<String>();
+				remainingParameters = readNamedValues(directRequest.getDataBuffer(), methodInfo, boundNames);
+			} else {
+				Map<String, Object> data = (Map<String, Object>) directRequest.getData();
+				if (data != null && data.size() > 0) {
+					remainingParameters = new HashMap<String, Object>(data);
+				}
 			}
 
 		} else if (methodInfo.isType(ExtDirectMethodType.POLL)) {
@@ -191,63 +293,253 @@ public final class ParametersResolver {
 		Object[] parameters = null;
 
 		if (!methodParameters.isEmpty()) {
-			parameters = new Object[methodParameters.size()];
+			ParameterBinding[] bindings = methodInfo.getParameterBindings();
+			parameters = new Object[bindings.length];
 
-			for (int paramIndex = 0; paramIndex < methodParameters.size(); paramIndex++) {
+			for (int paramIndex = 0; paramIndex < bindings.length; paramIndex++) {
 				ParameterInfo methodParameter = methodParameters.get(paramIndex);
+				ParameterBinding binding = bindings[paramIndex];
+
+				if (binding == ParameterBinding.STORE_MODIFY_RECORDS) {
+					if (directStoreModifyRecords != null) {
+						parameters[paramIndex] = directStoreModifyRecords;
+						continue;
+					}
+					binding = ParameterBinding.forParameter(methodParameter);
+				}
 
-				if (methodParameter.isSupportedParameter()) {
+				switch (binding) {
+				case SUPPORTED_PARAMETER:
 					parameters[paramIndex] = SupportedParameters.resolveParameter(methodParameter.getType(), request,
 							response, locale);
-				} else if (ExtDirectStoreReadRequest.class.isAssignableFrom(methodParameter.getType())) {
+					break;
+				case STORE_READ_REQUEST:
 					parameters[paramIndex] = extDirectStoreReadRequest;
-				} else if (directStoreModifyRecords != null && methodParameter.getCollectionType() != null) {
-					parameters[paramIndex] = directStoreModifyRecords;
-				} else if (methodParameter.isHasRequestParamAnnotation()) {
+					break;
+				case REQUEST_PARAM:
 					parameters[paramIndex] = resolveRequestParam(null, remainingParameters, methodParameter);
-				} else if (methodParameter.isHasRequestHeaderAnnotation()) {
+					break;
+				case REQUEST_HEADER:
 					parameters[paramIndex] = resolveRequestHeader(request, methodParameter);
-				} else if (remainingParameters != null && remainingParameters.containsKey(methodParameter.getName())) {
-					Object jsonValue = remainingParameters.get(methodParameter.getName());
-					parameters[paramIndex] = convertValue(jsonValue, methodParameter);
-				} else if (directRequest.getData() != null && directRequest.getData() instanceof List
-						&& ((List<Object>) directRequest.getData()).size() > jsonParamIndex) {
-					Object jsonValue = ((List<Object>) directRequest.getData()).get(jsonParamIndex);
-					parameters[paramIndex] = convertValue(jsonValue, methodParameter);
-					jsonParamIndex++;
-				} else {
+					break;
+				default:
+					if (remainingParameters != null && remainingParameters.containsKey(methodParameter.getName())) {
+						Object jsonValue = remainingParameters.get(methodParameter.getName());
+						if (boundNames != null && boundNames.contains(methodParameter.getName())) {
+							parameters[paramIndex] = jsonValue;
+						} else {
+							parameters[paramIndex] = convertValue(jsonValue, methodParameter);
+						}
+					} else if (positionalValues != null) {
+						if (positionalValues.size() > jsonParamIndex) {
+							Object jsonValue = positionalValues.get(jsonParamIndex);
+							if (boundPositions.get(jsonParamIndex)) {
+								parameters[paramIndex] = jsonValue;
+							} else {
+								parameters[paramIndex] = convertValue(jsonValue, methodParameter);
+							}
+							jsonParamIndex++;
+						} else {
+							parameters[paramIndex] = resolveWithWebArgumentResolvers(request, directRequest,
+									methodInfo, paramIndex);
+						}
+					} else if (directRequest.getData() != null && directRequest.getData() instanceof List
+							&& ((List<Object>) directRequest.getData()).size() > jsonParamIndex) {
+						Object jsonValue = ((List<Object>) directRequest.getData()).get(jsonParamIndex);
+						parameters[paramIndex] = convertValue(jsonValue, methodParameter);
+						jsonParamIndex++;
+					} else {
+						parameters[paramIndex] = resolveWithWebArgumentResolvers(request, directRequest, methodInfo,
+								paramIndex);
+					}
+					break;
+				}
+			}
+		}
 
-					log.info("WebResolvers size:" + this.webArgumentResolvers.size());
-					log.info("ParamIndex:" + paramIndex);
+		return parameters;
+	}
 
-					log.info("Request params size:" + request.getParameterMap().isEmpty());
-					log.info("Request params names:" + request.getParameterMap().keySet());
-					log.info("Direct Request:" + directRequest.toString());
+	/**
+	 * A {@link ParameterInfo#isDirectBindable() direct bindable} parameter is
+	 * only read directly from the JSON tokens if the ConversionService has no
+	 * converter for the values Jackson creates from an untyped payload: maps
+	 * for beans and maps, maps and scalars for the elements of collections and
+	 * arrays. Otherwise a custom converter registered for the type (or for
+	 * the element type) is used as before.
+	 */
+	private boolean isDirectBound(ParameterInfo methodParameter) {
+		if (!methodParameter.isDirectBindable()) {
+			return false;
+		}
 
-					MethodParameter p = new MethodParameter(methodInfo.getMethod(), paramIndex);
-					request.setAttribute("directRequest", directRequest);
-					ServletWebRequest r = new ServletWebRequest(request);
-					Object result = WebArgumentResolver.UNRESOLVED;
+		Boolean directBound = directBindings.get(methodParameter);
+		if (directBound == null) {
+			directBound = !hasApplicableConverter(methodParameter.getTypeDescriptor());
+			directBindings.putIfAbsent(methodParameter, directBound);
+		}
+		return directBound;
+	}
 
-					for (WebArgumentResolver resolver : this.webArgumentResolvers) {
-						log.info("Resolving with:" + resolver.getClass().getCanonicalName());
+	private boolean hasApplicableConverter(TypeDescriptor targetType) {
+		TypeDescriptor mapType = TypeDescriptor.valueOf(LinkedHashMap.class);
+		if (!targetType.isCollection() && !targetType.isArray()) {
+			return conversionService.canConvert(mapType, targetType);
+		}
 
-						result = resolver.resolveArgument(p, r);
-						if (result != WebArgumentResolver.UNRESOLVED) {
-							log.info("Resolved by:" + resolver.getClass().getCanonicalName());
-							parameters[paramIndex] = result;
-							break;
-						}
-					}
-					if (result == WebArgumentResolver.UNRESOLVED) {
-						throw new IllegalArgumentException(
-								"Error, parameter mismatch. Please check your remoting method signature to ensure all supported parameters types are used.");
+		TypeDescriptor elementType = targetType.getElementTypeDescriptor();
+		if (elementType == null || conversionService.canConvert(mapType, elementType)) {
+			return true;
+		}
+		for (Class<?> valueClass : JSON_VALUE_CLASSES) {
+			if (conversionService.canConvert(TypeDescriptor.valueOf(valueClass), elementType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the positional values of a SIMPLE call from the buffered JSON
+	 * tokens. JSON objects and arrays sent for parameters that are
+	 * {@link #isDirectBound(ParameterInfo) directly bound} are read with
+	 * the reader of the parameter and marked in boundPositions, all other
+	 * values are read as simple objects and converted later.
+	 * 
+	 * @return the values, <code>null</code> if the payload is not an array
+	 */
+	private List<Object> readPositionalValues(TokenBuffer dataBuffer, MethodInfo methodInfo, BitSet boundPositions)
+			throws IOException {
+		List<ParameterInfo> methodParameters = methodInfo.getParameters();
+		ParameterBinding[] bindings = methodInfo.getParameterBindings();
+		ObjectMapper mapper = jsonHandler.getMapper();
+
+		JsonParser jp = dataBuffer.asParser();
+		try {
+			if (jp.nextToken() != JsonToken.START_ARRAY) {
+				return null;
+			}
+
+			List<Object> values = new ArrayList<Object>();
+			int paramIndex = 0;
+			while (jp.nextToken() != JsonToken.END_ARRAY) {
+				while (paramIndex < bindings.length && bindings[paramIndex] != ParameterBinding.VALUE) {
+					paramIndex++;
+				}
+
+				if (paramIndex < bindings.length && isDirectBound(methodParameters.get(paramIndex))
+						&& isStructStart(jp.getCurrentToken())) {
+					boundPositions.set(values.size());
+					values.add(methodParameters.get(paramIndex).getObjectReader(mapper).readValue(jp));
+				} else {
+					values.add(jp.readValueAs(Object.class));
+				}
+				paramIndex++;
+			}
+			return values;
+		} finally {
+			jp.close();
+		}
+	}
+
+	/**
+	 * Reads the named values of a SIMPLE_NAMED call from the buffered JSON
+	 * tokens. JSON objects and arrays sent for parameters that are
+	 * {@link #isDirectBound(ParameterInfo) directly bound} are read with
+	 * the reader of the parameter and their names added to boundNames, all
+	 * other values are read as simple objects and converted later.
+	 * 
+	 * @return the values, <code>null</code> if the payload is not an object or
+	 *         empty
+	 */
+	private Map<String, Object> readNamedValues(TokenBuffer dataBuffer, MethodInfo methodInfo, Set<String> boundNames)
+			throws IOException {
+		List<ParameterInfo> methodParameters = methodInfo.getParameters();
+		ParameterBinding[] bindings = methodInfo.getParameterBindings();
+		ObjectMapper mapper = jsonHandler.getMapper();
+
+		JsonParser jp = dataBuffer.asParser();
+		try {
+			if (jp.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+
+			Map<String, Object> values = new HashMap<String, Object>();
+			while (jp.nextToken() == JsonToken.FIELD_NAME) {
+				String name = jp.getCurrentName();
+				jp.nextToken();
+
+				ParameterInfo target = null;
+				for (int paramIndex = 0; paramIndex < bindings.length; paramIndex++) {
+					ParameterInfo methodParameter = methodParameters.get(paramIndex);
+					if (bindings[paramIndex] == ParameterBinding.VALUE && isDirectBound(methodParameter)
+							&& isStructStart(jp.getCurrentToken()) && name.equals(methodParameter.getName())) {
+						target = methodParameter;
+						break;
 					}
 				}
+
+				if (target != null) {
+					boundNames.add(name);
+					values.put(name, target.getObjectReader(mapper).readValue(jp));
+				} else {
+					boundNames.remove(name);
+					values.put(name, jp.readValueAs(Object.class));
+				}
 			}
+			return values.isEmpty() ? null : values;
+		} finally {
+			jp.close();
 		}
+	}
 
-		return parameters;
+	private static boolean isStructStart(JsonToken token) {
+		return token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY;
+	}
+
+	private Object resolveWithWebArgumentResolvers(HttpServletRequest request, ExtDirectRequest directRequest,
+			MethodInfo methodInfo, int paramIndex) throws Exception {
+
+		if (log.isDebugEnabled()) {
+			log.debug("WebResolvers size:" + this.webArgumentResolvers.size());
+			log.debug("ParamIndex:" + paramIndex);
+			log.debug("Request params names:" + request.getParameterMap().keySet());
+			log.debug("Direct Request:" + directRequest.toString());
+		}
+
+		MethodParameter p = methodInfo.getMethodParameter(paramIndex);
+		request.setAttribute("directRequest", directRequest);
+		ServletWebRequest r = new ServletWebRequest(request);
+
+		WebArgumentResolver preferredResolver = resolverAffinity.get(p);
+		if (preferredResolver != null) {
+			Object result = preferredResolver.resolveArgument(p, r);
+			if (result != WebArgumentResolver.UNRESOLVED) {
+				return result;
+			}
+		}
+
+		for (WebArgumentResolver resolver : this.webArgumentResolvers) {
+			if (resolver == preferredResolver) {
+				continue;
+			}
+
+			if (log.isTraceEnabled()) {
+				log.trace("Resolving with:" + resolver.getClass().getCanonicalName());
+			}
+
+			Object result = resolver.resolveArgument(p, r);
+			if (result != WebArgumentResolver.UNRESOLVED) {
+				if (log.isDebugEnabled()) {
+					log.debug("Resolved by:" + resolver.getClass().getCanonicalName());
+				}
+				resolverAffinity.put(p, resolver);
+				return result;
+			}
+		}
+
+		throw new IllegalArgumentException(
+				"Error, parameter mismatch. Please check your remoting method signature to ensure all supported parameters types are used.");
 	}
 
 	public Object resolveRequestParam(HttpServletRequest request, Map<String, Object> valueContainer,
@@ -303,106 +595,197 @@ public final class ParametersResolver {
 		if (value != null) {
 			if (methodParameter.getType().equals(value.getClass())) {
 				return value;
-			} else if (conversionService.canConvert(TypeDescriptor.forObject(value),
-					methodParameter.getTypeDescriptor())) {
+			}
+
+			ConversionKey key = new ConversionKey(value.getClass(), getElementClass(value),
+					methodParameter.getTypeDescriptor());
+			ConversionDecision decision = conversionDecisions.get(key);
+			if (decision == null) {
+				decision = createConversionDecision(key);
+				conversionDecisions.putIfAbsent(key, decision);
+			}
 
+			switch (decision.strategy) {
+			case CONVERSION_SERVICE:
+				return conversionService.convert(value, decision.sourceType, key.targetType);
+			case CONVERSION_SERVICE_OR_JACKSON:
 				try {
-					return conversionService.convert(value, TypeDescriptor.forObject(value),
-							methodParameter.getTypeDescriptor());
+					return conversionService.convert(value, decision.sourceType, key.targetType);
 				} catch (ConversionFailedException e) {
-					// ignore this exception for collections and arrays.
-					// try to convert the value with jackson
-					TypeFactory typeFactory = jsonHandler.getMapper().getTypeFactory();
-					if (methodParameter.getTypeDescriptor().isCollection()) {
-						JavaType type = CollectionType.construct(
-								methodParameter.getType(),
-								typeFactory.constructType(methodParameter.getTypeDescriptor()
-										.getElementTypeDescriptor().getType()));
-						return jsonHandler.convertValue(value, type);
-					} else if (methodParameter.getTypeDescriptor().isArray()) {
-						JavaType type = typeFactory.constructArrayType(methodParameter.getTypeDescriptor()
-								.getElementTypeDescriptor().getType());
-						return jsonHandler.convertValue(value, type);
-					}
+					// the conversion service is not able to convert the
+					// values of this call. the decision stays unchanged, the
+					// failure depends on the values and not on the types
+					return jsonHandler.convertValue(value, decision.javaType);
+				}
+			default:
+				return jsonHandler.convertValue(value, decision.javaType);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the class of the elements of a collection or array value: the
+	 * component type of an array or the class of the first element of a
+	 * collection. <code>null</code> for all other values and empty
+	 * collections.
+	 */
+	private static Class<?> getElementClass(Object value) {
+		if (value instanceof Collection) {
+			Iterator<?> it = ((Collection<?>) value).iterator();
+			if (it.hasNext()) {
+				Object element = it.next();
+				return element != null ? element.getClass() : null;
+			}
+		} else if (value.getClass().isArray()) {
+			return value.getClass().getComponentType();
+		}
+		return null;
+	}
 
-					throw e;
+	private ConversionDecision createConversionDecision(ConversionKey key) {
+		TypeDescriptor sourceType = TypeDescriptor.valueOf(key.sourceClass);
+		TypeDescriptor targetType = key.targetType;
+		TypeFactory typeFactory = jsonHandler.getMapper().getTypeFactory();
+
+		if (conversionService.canConvert(sourceType, targetType)) {
+			// for collections and arrays jackson converts the elements if the
+			// conversion service fails
+			if ((targetType.isCollection() || targetType.isArray()) && targetType.getElementTypeDescriptor() != null) {
+				JavaType elementType = typeFactory.constructType(targetType.getElementTypeDescriptor().getType());
+				JavaType javaType;
+				if (targetType.isCollection()) {
+					javaType = CollectionType.construct(targetType.getType(), elementType);
+				} else {
+					javaType = typeFactory.constructArrayType(elementType);
 				}
-			} else {
-				return jsonHandler.convertValue(value, methodParameter.getType());
+
+				// only if the conversion service has no converter for the
+				// element types at all jackson converts every call directly
+				if (key.elementClass != null
+						&& !conversionService.canConvert(TypeDescriptor.valueOf(key.elementClass),
+								targetType.getElementTypeDescriptor())) {
+					return new ConversionDecision(ConversionStrategy.JACKSON, sourceType, javaType);
+				}
+				return new ConversionDecision(ConversionStrategy.CONVERSION_SERVICE_OR_JACKSON, sourceType, javaType);
 			}
+			return new ConversionDecision(ConversionStrategy.CONVERSION_SERVICE, sourceType, null);
+		}
+
+		return new ConversionDecision(ConversionStrategy.JACKSON, sourceType,
+				typeFactory.constructType(targetType.getType()));
+	}
 
+	private List<Filter> createFilters(Object value) {
+		List<Filter> filters = new ArrayList<Filter>();
+
+		if (value instanceof String) {
+			List<Map<String, Object>> rawFilters = jsonHandler.readValue((String) value,
+					new TypeReference<List<Map<String, Object>>>() {/* empty */
+					});
+
+			for (Map<String, Object> rawFilter : rawFilters) {
+				filters.add(Filter.createFilter(rawFilter, conversionService));
+			}
+		} else if (value instanceof List) {
+			@SuppressWarnings("unchecked")
+			List<Map<String, Object>> filterList = (List<Map<String, Object>>) value;
+			for (Map<String, Object> filter : filterList) {
+				filters.add(Filter.createFilter(filter, conversionService));
+			}
 		}
-		return value;
+		return filters;
 	}
 
-	private Map<String, Object> fillReadRequestFromMap(ExtDirectStoreReadRequest to, Map<String, Object> from) {
-		Set<String> foundParameters = new HashSet<String>();
+	private static List<SortInfo> createSorters(Object value) {
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> rawSorters = (List<Map<String, Object>>) value;
+		List<SortInfo> sorters = new ArrayList<SortInfo>(rawSorters.size());
 
-		for (Entry<String, Object> entry : from.entrySet()) {
-			String key = entry.getKey();
-			Object value = entry.getValue();
+		for (Map<String, Object> aRawSorter : rawSorters) {
+			sorters.add(SortInfo.create(aRawSorter));
+		}
+		return sorters;
+	}
 
-			if (key.equals("filter")) {
-				List<Filter> filters = new ArrayList<Filter>();
+	private static List<GroupInfo> createGroups(Object value) {
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> rawGroups = (List<Map<String, Object>>) value;
+		List<GroupInfo> groups = new ArrayList<GroupInfo>(rawGroups.size());
 
-				if (value instanceof String) {
-					List<Map<String, Object>> rawFilters = jsonHandler.readValue((String) value,
-							new TypeReference<List<Map<String, Object>>>() {/* empty */
-							});
+		for (Map<String, Object> aRawGroupInfo : rawGroups) {
+			groups.add(GroupInfo.create(aRawGroupInfo));
+		}
+		return groups;
+	}
 
-					for (Map<String, Object> rawFilter : rawFilters) {
-						filters.add(Filter.createFilter(rawFilter, conversionService));
-					}
-				} else if (value instanceof List) {
-					@SuppressWarnings("unchecked")
-					List<Map<String, Object>> filterList = (List<Map<String, Object>>) value;
-					for (Map<String, Object> filter : filterList) {
-						filters.add(Filter.createFilter(filter, conversionService));
-					}
+	private static Class<? extends ExtDirectStoreReadRequest> getStoreReadRequestType(MethodInfo methodInfo) {
+		ParameterBinding[] bindings = methodInfo.getParameterBindings();
+		for (int paramIndex = 0; paramIndex < bindings.length; paramIndex++) {
+			if (bindings[paramIndex] == ParameterBinding.STORE_READ_REQUEST) {
+				Class<?> type = methodInfo.getParameters().get(paramIndex).getType();
+				if (!Modifier.isAbstract(type.getModifiers())) {
+					return type.asSubclass(ExtDirectStoreReadRequest.class);
 				}
-				to.setFilters(filters);
-				foundParameters.add(key);
-			} else if (key.equals("sort") && value != null && value instanceof List) {
+			}
+		}
+		return ExtDirectStoreReadRequest.class;
+	}
 
-				List<SortInfo> sorters = new ArrayList<SortInfo>();
-				@SuppressWarnings("unchecked")
-				List<Map<String, Object>> rawSorters = (List<Map<String, Object>>) value;
+	private Map<String, Object> fillReadRequestFromMap(StoreReadRequestBinder binder, ExtDirectStoreReadRequest to,
+			Map<String, Object> from) {
+		Map<String, Object> remainingParameters = new HashMap<String, Object>();
 
-				for (Map<String, Object> aRawSorter : rawSorters) {
-					sorters.add(SortInfo.create(aRawSorter));
-				}
+		for (Entry<String, Object> entry : from.entrySet()) {
+			String key = entry.getKey();
+			final Object value = entry.getValue();
 
-				to.setSorters(sorters);
-				foundParameters.add(key);
+			if (key.equals("filter")) {
+				if (eagerStoreReadRequestParsing) {
+					to.setFilters(createFilters(value));
+				} else {
+					to.setFiltersLoader(new Callable<List<Filter>>() {
+						@Override
+						public List<Filter> call() {
+							return createFilters(value);
+						}
+					});
+				}
+			} else if (key.equals("sort") && value != null && value instanceof List) {
+				if (eagerStoreReadRequestParsing) {
+					to.setSorters(createSorters(value));
+				} else {
+					to.setSortersLoader(new Callable<List<SortInfo>>() {
+						@Override
+						public List<SortInfo> call() {
+							return createSorters(value);
+						}
+					});
+				}
 			} else if (key.equals("group") && value != null && value instanceof List) {
-				List<GroupInfo> groups = new ArrayList<GroupInfo>();
-				@SuppressWarnings("unchecked")
-				List<Map<String, Object>> rawGroups = (List<Map<String, Object>>) value;
-
-				for (Map<String, Object> aRawGroupInfo : rawGroups) {
-					groups.add(GroupInfo.create(aRawGroupInfo));
+				if (eagerStoreReadRequestParsing) {
+					to.setGroups(createGroups(value));
+				} else {
+					to.setGroupsLoader(new Callable<List<GroupInfo>>() {
+						@Override
+						public List<GroupInfo> call() {
+							return createGroups(value);
+						}
+					});
 				}
-
-				to.setGroups(groups);
-				foundParameters.add(key);
 			} else {
-
-				PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(to.getClass(), key);
-				if (descriptor != null && descriptor.getWriteMethod() != null) {
+				StoreReadRequestBinder.PropertySetter setter = binder.getSetter(key);
+				boolean found = false;
+				if (setter != null) {
 					try {
-
-						descriptor.getWriteMethod().invoke(to,
-								conversionService.convert(value, descriptor.getPropertyType()));
-
-						foundParameters.add(key);
+						found = setter.set(to, conversionService.convert(value, setter.getType()));
 					} catch (IllegalArgumentException e) {
 						log.error("fillObjectFromMap", e);
-					} catch (IllegalAccessException e) {
-						log.error("fillObjectFromMap", e);
-					} catch (InvocationTargetException e) {
-						log.error("fillObjectFromMap", e);
 					}
 				}
+				if (!found) {
+					remainingParameters.put(key, value);
+				}
 			}
 		}
 
@@ -429,27 +812,279 @@ public final class ParametersResolver {
 			to.setGroups(groups);
 		}
 
-		Map<String, Object> remainingParameters = new HashMap<String, Object>();
-		for (Entry<String, Object> entry : from.entrySet()) {
-			if (!foundParameters.contains(entry.getKey())) {
-				remainingParameters.put(entry.getKey(), entry.getValue());
-			}
-		}
 		to.setParams(remainingParameters);
 
 		return remainingParameters;
 	}
 
-	private List<Object> convertObjectEntriesToType(List<Object> records, Class<?> directStoreType) {
+	private List<Object> convertObjectEntriesToType(List<Object> records, final Class<?> directStoreType)
+			throws IOException {
 		if (records != null) {
-			List<Object> convertedList = new ArrayList<Object>();
-			for (Object record : records) {
-				Object convertedObject = jsonHandler.convertValue(record, directStoreType);
-				convertedList.add(convertedObject);
-			}
-			return convertedList;
+			return decodeRecords(records, new RecordDecoder() {
+				@Override
+				public Object decode(Object record) {
+					return jsonHandler.convertValue(record, directStoreType);
+				}
+			});
 		}
 		return null;
 	}
 
+	/**
+	 * Reads the records and the other parameters of a STORE_MODIFY call from
+	 * the buffered JSON tokens. The first data entry is either an array of
+	 * records, an object with a <code>records</code> property and additional
+	 * parameters, or one record.
+	 * 
+	 * @return the records and parameters, <code>null</code> if the first data
+	 *         entry is missing or neither an array nor an object
+	 */
+	private StoreModifyData readStoreModifyData(TokenBuffer dataBuffer, Class<?> directStoreType)
+			throws IOException {
+		TypeFactory typeFactory = jsonHandler.getMapper().getTypeFactory();
+		final ObjectReader recordReader = jsonHandler.getReader(typeFactory.constructType(directStoreType));
+
+		JsonParser jp = dataBuffer.asParser();
+		try {
+			if (jp.nextToken() != JsonToken.START_ARRAY) {
+				return null;
+			}
+
+			JsonToken token = jp.nextToken();
+			if (token == JsonToken.START_ARRAY) {
+				return new StoreModifyData(readRecords(jp, directStoreType, recordReader), null);
+			} else if (token == JsonToken.START_OBJECT) {
+				List<Object> records = null;
+				Map<String, Object> otherValues = new HashMap<String, Object>();
+
+				while (jp.nextToken() == JsonToken.FIELD_NAME) {
+					String name = jp.getCurrentName();
+					token = jp.nextToken();
+					if ("records".equals(name) && token == JsonToken.START_ARRAY) {
+						records = readRecords(jp, directStoreType, recordReader);
+					} else if ("records".equals(name) && token != JsonToken.VALUE_NULL) {
+						records = new ArrayList<Object>(1);
+						records.add(recordReader.readValue(jp));
+					} else {
+						otherValues.put(name, jp.readValueAs(Object.class));
+					}
+				}
+
+				if (records != null) {
+					otherValues.remove("records");
+					return new StoreModifyData(records, otherValues);
+				}
+
+				// the object is the only record
+				records = new ArrayList<Object>(1);
+				records.add(jsonHandler.convertValue(otherValues, directStoreType));
+				return new StoreModifyData(records, null);
+			}
+			return null;
+		} finally {
+			jp.close();
+		}
+	}
+
+	/**
+	 * Reads the array of records the parser points to. If parallel decoding is
+	 * enabled the array is buffered and its records are counted first. Only
+	 * arrays with at least parallelDecodingThreshold records are split into
+	 * one buffer per record, so that the records can be decoded by more than
+	 * one thread, smaller arrays are read directly from the buffer.
+	 */
+	private List<Object> readRecords(JsonParser jp, Class<?> directStoreType, final ObjectReader recordReader)
+			throws IOException {
+
+		TypeFactory typeFactory = jsonHandler.getMapper().getTypeFactory();
+		ObjectReader recordsReader = jsonHandler.getReader(typeFactory.constructCollectionType(ArrayList.class,
+				directStoreType));
+
+		if (parallelDecodingThreshold == 0) {
+			return recordsReader.readValue(jp);
+		}
+
+		TokenBuffer arrayBuffer = new TokenBuffer(jp.getCodec());
+		arrayBuffer.copyCurrentStructure(jp);
+
+		if (countElements(arrayBuffer) < parallelDecodingThreshold) {
+			JsonParser arrayParser = arrayBuffer.asParser();
+			try {
+				arrayParser.nextToken();
+				return recordsReader.readValue(arrayParser);
+			} finally {
+				arrayParser.close();
+			}
+		}
+
+		List<TokenBuffer> recordBuffers = new ArrayList<TokenBuffer>();
+		JsonParser arrayParser = arrayBuffer.asParser();
+		try {
+			arrayParser.nextToken();
+			while (arrayParser.nextToken() != JsonToken.END_ARRAY) {
+				TokenBuffer recordBuffer = new TokenBuffer(jp.getCodec());
+				recordBuffer.copyCurrentStructure(arrayParser);
+				recordBuffers.add(recordBuffer);
+			}
+		} finally {
+			arrayParser.close();
+		}
+
+		return decodeRecords(recordBuffers, new RecordDecoder() {
+			@Override
+			public Object decode(Object recordBuffer) throws IOException {
+				return recordReader.readValue(((TokenBuffer) recordBuffer).asParser());
+			}
+		});
+	}
+
+	private static int countElements(TokenBuffer arrayBuffer) throws IOException {
+		JsonParser jp = arrayBuffer.asParser();
+		try {
+			jp.nextToken();
+			int count = 0;
+			while (jp.nextToken() != JsonToken.END_ARRAY) {
+				jp.skipChildren();
+				count++;
+			}
+			return count;
+		} finally {
+			jp.close();
+		}
+	}
+
+	/**
+	 * Decodes the records into a presized list. Lists with at least
+	 * parallelDecodingThreshold records are split into chunks. The request
+	 * thread decodes the first chunk and every chunk no pool thread has
+	 * started yet, so a busy or saturated pool never blocks the call.
+	 */
+	private List<Object> decodeRecords(final List<?> sources, final RecordDecoder decoder) throws IOException {
+		final Object[] records = new Object[sources.size()];
+
+		if (parallelDecodingThreshold > 0 && records.length >= parallelDecodingThreshold) {
+			int noOfChunks = Math.min(Runtime.getRuntime().availableProcessors(), records.length);
+			int chunkSize = (records.length + noOfChunks - 1) / noOfChunks;
+
+			List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(noOfChunks);
+			for (int from = 0; from < records.length; from += chunkSize) {
+				final int start = from;
+				final int end = Math.min(from + chunkSize, records.length);
+				FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						for (int i = start; i < end; i++) {
+							records[i] = decoder.decode(sources.get(i));
+						}
+						return null;
+					}
+				});
+				tasks.add(task);
+
+				if (start > 0) {
+					try {
+						decodingExecutorService.execute(task);
+					} catch (RejectedExecutionException e) {
+						// the task is run by the request thread
+					}
+				}
+			}
+
+			for (FutureTask<Void> task : tasks) {
+				task.run();
+			}
+
+			for (FutureTask<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("decoding of the records interrupted", e);
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+			}
+		} else {
+			for (int i = 0; i < records.length; i++) {
+				records[i] = decoder.decode(sources.get(i));
+			}
+		}
+
+		return new ArrayList<Object>(Arrays.asList(records));
+	}
+
+	private interface RecordDecoder {
+		Object decode(Object source) throws IOException;
+	}
+
+	private static final class StoreModifyData {
+		final List<Object> records;
+
+		final Map<String, Object> remainingParameters;
+
+		StoreModifyData(List<Object> records, Map<String, Object> remainingParameters) {
+			this.records = records;
+			this.remainingParameters = remainingParameters;
+		}
+	}
+
+	private enum ConversionStrategy {
+		CONVERSION_SERVICE, CONVERSION_SERVICE_OR_JACKSON, JACKSON
+	}
+
+	private static final class ConversionDecision {
+		final ConversionStrategy strategy;
+
+		final TypeDescriptor sourceType;
+
+		final JavaType javaType;
+
+		ConversionDecision(ConversionStrategy strategy, TypeDescriptor sourceType, JavaType javaType) {
+			this.strategy = strategy;
+			this.sourceType = sourceType;
+			this.javaType = javaType;
+		}
+	}
+
+	private static final class ConversionKey {
+		final Class<?> sourceClass;
+
+		final Class<?> elementClass;
+
+		final TypeDescriptor targetType;
+
+		ConversionKey(Class<?> sourceClass, Class<?> elementClass, TypeDescriptor targetType) {
+			this.sourceClass = sourceClass;
+			this.elementClass = elementClass;
+			this.targetType = targetType;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * sourceClass.hashCode() + (elementClass != null ? elementClass.hashCode() : 0))
+					+ targetType.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ConversionKey)) {
+				return false;
+			}
+			ConversionKey other = (ConversionKey) obj;
+			return sourceClass.equals(other.sourceClass) && elementClass == other.elementClass
+					&& targetType.equals(other.targetType);
+		}
+	}
+
 }
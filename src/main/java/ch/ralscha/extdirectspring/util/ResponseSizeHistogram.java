@@ -0,0 +1,94 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Histogram of recent response sizes with power of two buckets. Older samples
+ * decay so the histogram follows changes of the response sizes. The histogram
+ * is used to estimate the buffer size a response will need.
+ * <p>
+ * The class is thread safe. Concurrent updates may lose a sample, which is
+ * acceptable for an estimate.
+ */
+public final class ResponseSizeHistogram {
+
+	private static final int BUCKETS = 32;
+
+	private static final int DECAY_INTERVAL = 128;
+
+	private static final int PERCENTILE = 90;
+
+	private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+
+	private final AtomicInteger samples = new AtomicInteger();
+
+	/**
+	 * Records the size of a written response.
+	 * 
+	 * @param size number of bytes
+	 */
+	public void record(int size) {
+		counts.incrementAndGet(bucket(size));
+		if (samples.incrementAndGet() % DECAY_INTERVAL == 0) {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts.set(i, counts.get(i) / 2);
+			}
+		}
+	}
+
+	/**
+	 * Returns a size that is large enough for 90 percent of the recently
+	 * recorded responses.
+	 * 
+	 * @return the estimated size in bytes, 0 if nothing is recorded yet
+	 */
+	public int getSizeHint() {
+		int total = 0;
+		int[] snapshot = new int[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		int threshold = (total * PERCENTILE + 99) / 100;
+		int sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			sum += snapshot[i];
+			if (sum >= threshold) {
+				return i < BUCKETS - 2 ? 1 << i : 1 << (BUCKETS - 2);
+			}
+		}
+		return 1 << (BUCKETS - 2);
+	}
+
+	/**
+	 * Bucket i contains the sizes below 2^i that do not fit into bucket i-1
+	 */
+	private static int bucket(int size) {
+		if (size <= 0) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, BUCKETS - Integer.numberOfLeadingZeros(size));
+	}
+
+}
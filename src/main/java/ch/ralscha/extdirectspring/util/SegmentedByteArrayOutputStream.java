@@ -0,0 +1,203 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link OutputStream} that collects the written bytes in a list of
+ * segments. Unlike {@link java.io.ByteArrayOutputStream} it never copies
+ * already written bytes when it grows and the content is written to the target
+ * stream directly from the segments. The segments survive a {@link #reset()}
+ * so an instance can be reused for many responses.
+ * <p>
+ * Instances are not thread safe.
+ * 
+ * @see OutputBufferPool
+ */
+public final class SegmentedByteArrayOutputStream extends OutputStream {
+
+	static final int MIN_SEGMENT_SIZE = 1024;
+
+	static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+
+	private final List<byte[]> segments = new ArrayList<byte[]>();
+
+	private int sizeHint;
+
+	private int segmentIndex;
+
+	private byte[] segment;
+
+	private int position;
+
+	private int count;
+
+	public SegmentedByteArrayOutputStream() {
+		this(0);
+	}
+
+	public SegmentedByteArrayOutputStream(int sizeHint) {
+		reset(sizeHint);
+	}
+
+	/**
+	 * Discards the written bytes and keeps the segments for the next use.
+	 */
+	public void reset() {
+		reset(0);
+	}
+
+	/**
+	 * Discards the written bytes and keeps the segments for the next use. The
+	 * sizeHint is the expected number of bytes that will be written and is used
+	 * to size the segments that have to be allocated.
+	 * 
+	 * @param sizeHint expected number of bytes
+	 */
+	public void reset(int sizeHint) {
+		this.sizeHint = sizeHint;
+		this.segmentIndex = 0;
+		this.segment = segments.isEmpty() ? null : segments.get(0);
+		this.position = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * Releases the segments that exceed the specified capacity.
+	 * 
+	 * @param maxRetainedBytes number of bytes the retained segments may hold
+	 */
+	void trim(int maxRetainedBytes) {
+		int retained = 0;
+		int i = 0;
+		while (i < segments.size() && retained + segments.get(i).length <= maxRetainedBytes) {
+			retained += segments.get(i).length;
+			i++;
+		}
+		while (segments.size() > i) {
+			segments.remove(segments.size() - 1);
+		}
+		reset(0);
+	}
+
+	/**
+	 * @return total length of the retained segments
+	 */
+	int capacity() {
+		int capacity = 0;
+		for (byte[] s : segments) {
+			capacity += s.length;
+		}
+		return capacity;
+	}
+
+	/**
+	 * @return number of bytes written since the last reset
+	 */
+	public int size() {
+		return count + position;
+	}
+
+	@Override
+	public void write(int b) {
+		if (segment == null || position == segment.length) {
+			nextSegment();
+		}
+		segment[position++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		int offset = off;
+		int remaining = len;
+		while (remaining > 0) {
+			if (segment == null || position == segment.length) {
+				nextSegment();
+			}
+			int length = Math.min(remaining, segment.length - position);
+			System.arraycopy(b, offset, segment, position, length);
+			position += length;
+			offset += length;
+			remaining -= length;
+		}
+	}
+
+	/**
+	 * Writes the content to the specified stream without copying it into an
+	 * intermediate array.
+	 * 
+	 * @param out the target stream
+	 * @throws IOException if the target stream throws an exception
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		for (int i = 0; i < segmentIndex; i++) {
+			byte[] s = segments.get(i);
+			out.write(s, 0, s.length);
+		}
+		if (segment != null && position > 0) {
+			out.write(segment, 0, position);
+		}
+	}
+
+	/**
+	 * @return a copy of the content
+	 */
+	public byte[] toByteArray() {
+		byte[] result = new byte[size()];
+		int offset = 0;
+		for (int i = 0; i < segmentIndex; i++) {
+			byte[] s = segments.get(i);
+			System.arraycopy(s, 0, result, offset, s.length);
+			offset += s.length;
+		}
+		if (segment != null) {
+			System.arraycopy(segment, 0, result, offset, position);
+		}
+		return result;
+	}
+
+	private void nextSegment() {
+		if (segment != null) {
+			count += segment.length;
+			segmentIndex++;
+		}
+
+		if (segmentIndex < segments.size()) {
+			segment = segments.get(segmentIndex);
+		} else {
+			segment = new byte[nextSegmentSize()];
+			segments.add(segment);
+		}
+		position = 0;
+	}
+
+	private int nextSegmentSize() {
+		int size = sizeHint - count;
+		if (!segments.isEmpty()) {
+			size = Math.max(size, segments.get(segments.size() - 1).length * 2);
+		}
+		return Math.min(MAX_SEGMENT_SIZE, Math.max(MIN_SEGMENT_SIZE, size));
+	}
+
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.bean.GroupInfo;
+import ch.ralscha.extdirectspring.bean.SortInfo;
+import ch.ralscha.extdirectspring.filter.Filter;
+
+/**
+ * Table of the writable properties of {@link ExtDirectStoreReadRequest} or a
+ * subclass of it. The properties of ExtDirectStoreReadRequest are set by
+ * calling the setters directly, additional properties of a subclass by
+ * reflection. The table of a class is built once and then reused.
+ */
+final class StoreReadRequestBinder {
+
+	private static final Map<String, PropertySetter> BASE_SETTERS = createBaseSetters();
+
+	private static final ConcurrentMap<Class<?>, StoreReadRequestBinder> binders = new ConcurrentHashMap<Class<?>, StoreReadRequestBinder>();
+
+	private final Class<? extends ExtDirectStoreReadRequest> type;
+
+	private final Map<String, PropertySetter> setters;
+
+	private StoreReadRequestBinder(Class<? extends ExtDirectStoreReadRequest> type) {
+		this.type = type;
+
+		if (type == ExtDirectStoreReadRequest.class) {
+			this.setters = BASE_SETTERS;
+		} else {
+			Map<String, PropertySetter> allSetters = new HashMap<String, PropertySetter>(BASE_SETTERS);
+			for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+				Method writeMethod = descriptor.getWriteMethod();
+				if (writeMethod != null && writeMethod.getDeclaringClass() != ExtDirectStoreReadRequest.class
+						&& !allSetters.containsKey(descriptor.getName())) {
+					allSetters.put(descriptor.getName(), new ReflectivePropertySetter(descriptor.getPropertyType(),
+							writeMethod));
+				}
+			}
+			this.setters = Collections.unmodifiableMap(allSetters);
+		}
+	}
+
+	static StoreReadRequestBinder forType(Class<? extends ExtDirectStoreReadRequest> type) {
+		StoreReadRequestBinder binder = binders.get(type);
+		if (binder == null) {
+			binder = new StoreReadRequestBinder(type);
+			binders.putIfAbsent(type, binder);
+		}
+		return binder;
+	}
+
+	ExtDirectStoreReadRequest newRequest() {
+		if (type == ExtDirectStoreReadRequest.class) {
+			return new ExtDirectStoreReadRequest();
+		}
+		return BeanUtils.instantiate(type);
+	}
+
+	/**
+	 * @param name name of the property
+	 * @return the setter of the property, <code>null</code> if the class does
+	 *         not have a writable property with this name
+	 */
+	PropertySetter getSetter(String name) {
+		return setters.get(name);
+	}
+
+	abstract static class PropertySetter {
+		private final Class<?> type;
+
+		PropertySetter(Class<?> type) {
+			this.type = type;
+		}
+
+		Class<?> getType() {
+			return type;
+		}
+
+		/**
+		 * @return true if the property was set
+		 */
+		abstract boolean set(ExtDirectStoreReadRequest request, Object value);
+	}
+
+	private static final class ReflectivePropertySetter extends PropertySetter {
+		private final Method writeMethod;
+
+		ReflectivePropertySetter(Class<?> type, Method writeMethod) {
+			super(type);
+			ReflectionUtils.makeAccessible(writeMethod);
+			this.writeMethod = writeMethod;
+		}
+
+		@Override
+		boolean set(ExtDirectStoreReadRequest request, Object value) {
+			try {
+				writeMethod.invoke(request, value);
+				return true;
+			} catch (IllegalArgumentException e) {
+				LogFactory.getLog(StoreReadRequestBinder.class).error("fillObjectFromMap", e);
+			} catch (IllegalAccessException e) {
+				LogFactory.getLog(StoreReadRequestBinder.class).error("fillObjectFromMap", e);
+			} catch (InvocationTargetException e) {
+				LogFactory.getLog(StoreReadRequestBinder.class).error("fillObjectFromMap", e);
+			}
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, PropertySetter> createBaseSetters() {
+		Map<String, PropertySetter> setters = new HashMap<String, PropertySetter>();
+		setters.put("query", new PropertySetter(String.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setQuery((String) value);
+				return true;
+			}
+		});
+		setters.put("limit", new PropertySetter(Integer.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setLimit((Integer) value);
+				return true;
+			}
+		});
+		setters.put("start", new PropertySetter(Integer.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setStart((Integer) value);
+				return true;
+			}
+		});
+		setters.put("page", new PropertySetter(Integer.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setPage((Integer) value);
+				return true;
+			}
+		});
+		setters.put("dir", new PropertySetter(String.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setDir((String) value);
+				return true;
+			}
+		});
+		setters.put("sort", new PropertySetter(String.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setSort((String) value);
+				return true;
+			}
+		});
+		setters.put("groupBy", new PropertySetter(String.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setGroupBy((String) value);
+				return true;
+			}
+		});
+		setters.put("groupDir", new PropertySetter(String.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setGroupDir((String) value);
+				return true;
+			}
+		});
+		setters.put("filters", new PropertySetter(List.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setFilters((List<Filter>) value);
+				return true;
+			}
+		});
+		setters.put("sorters", new PropertySetter(List.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setSorters((List<SortInfo>) value);
+				return true;
+			}
+		});
+		setters.put("groups", new PropertySetter(List.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setGroups((List<GroupInfo>) value);
+				return true;
+			}
+		});
+		setters.put("params", new PropertySetter(Map.class) {
+			@Override
+			boolean set(ExtDirectStoreReadRequest request, Object value) {
+				request.setParams((Map<String, Object>) value);
+				return true;
+			}
+		});
+		return Collections.unmodifiableMap(setters);
+	}
+
+}
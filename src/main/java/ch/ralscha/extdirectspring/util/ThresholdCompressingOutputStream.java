@@ -0,0 +1,129 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Stream for responses with unknown length. The first bytes are held back
+ * until the threshold is exceeded. From then on the response is compressed
+ * and written to the {@link HttpServletResponse}. If the stream is closed
+ * before the threshold is reached the held back bytes are sent uncompressed.
+ * An explicit {@link #flush()} before the threshold is reached sends the held
+ * back bytes uncompressed as well, the rest of the response is then written
+ * uncompressed. Callers that flush only incidentally, like a
+ * {@link com.fasterxml.jackson.core.JsonGenerator} after every value, should
+ * not pass these flushes on to this stream.
+ * <p>
+ * Closing this stream does not close the output stream of the response.
+ */
+public final class ThresholdCompressingOutputStream extends OutputStream {
+
+	private final HttpServletResponse response;
+
+	private final ContentEncoding contentEncoding;
+
+	private final int level;
+
+	private byte[] buffer;
+
+	private int count;
+
+	private OutputStream out;
+
+	private boolean compressed;
+
+	private boolean closed;
+
+	public ThresholdCompressingOutputStream(HttpServletResponse response, ContentEncoding contentEncoding,
+			int threshold, int level) {
+		this.response = response;
+		this.contentEncoding = contentEncoding;
+		this.level = level;
+		this.buffer = new byte[Math.max(threshold, 1)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (out == null) {
+			if (count + len < buffer.length) {
+				System.arraycopy(b, off, buffer, count, len);
+				count += len;
+				return;
+			}
+			startCompression();
+		}
+		out.write(b, off, len);
+	}
+
+	/**
+	 * Flushes the stream. If the threshold is not reached yet the held back
+	 * bytes are sent uncompressed and compression is not started anymore.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (closed) {
+			return;
+		}
+		if (out == null) {
+			startPassThrough();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		if (out == null) {
+			response.setContentLength(count);
+			response.getOutputStream().write(buffer, 0, count);
+		} else if (compressed) {
+			out.close();
+		} else {
+			out.flush();
+		}
+		buffer = null;
+	}
+
+	private void startCompression() throws IOException {
+		ExtDirectSpringUtil.setContentEncodingHeader(response, contentEncoding);
+		DeflaterOutputStream deflaterOutputStream = contentEncoding.wrap(response.getOutputStream(), level);
+		deflaterOutputStream.write(buffer, 0, count);
+		out = deflaterOutputStream;
+		compressed = true;
+		buffer = null;
+	}
+
+	private void startPassThrough() throws IOException {
+		out = response.getOutputStream();
+		out.write(buffer, 0, count);
+		buffer = null;
+	}
+
+}
@@ -18,9 +18,12 @@ package ch.ralscha.extdirectspring.bean;
 import static org.fest.assertions.api.Assertions.assertThat;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.fest.assertions.data.MapEntry;
 import org.junit.Test;
@@ -88,4 +91,52 @@ public class ExtDirectStoreReadRequestTest {
 		request.setParams(params);
 		assertThat(request.getParams()).hasSize(1).contains(MapEntry.entry("id", 10));
 	}
+
+	@Test
+	public void testLoaders() {
+		final StringFilter sf = new StringFilter("field", "10");
+		final SortInfo si = new SortInfo("property", SortDirection.DESCENDING);
+		final GroupInfo gi = new GroupInfo("property", SortDirection.ASCENDING);
+		final AtomicInteger calls = new AtomicInteger();
+
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setFiltersLoader(new Callable<List<Filter>>() {
+			@Override
+			public List<Filter> call() {
+				calls.incrementAndGet();
+				return Collections.<Filter> singletonList(sf);
+			}
+		});
+		request.setSortersLoader(new Callable<List<SortInfo>>() {
+			@Override
+			public List<SortInfo> call() {
+				calls.incrementAndGet();
+				return Collections.singletonList(si);
+			}
+		});
+		request.setGroupsLoader(new Callable<List<GroupInfo>>() {
+			@Override
+			public List<GroupInfo> call() {
+				calls.incrementAndGet();
+				return Collections.singletonList(gi);
+			}
+		});
+		assertThat(calls.get()).isEqualTo(0);
+
+		assertThat(request.getFirstFilterForField("field")).isSameAs(sf);
+		assertThat(request.getFilters()).containsExactly(sf);
+		assertThat(request.getSorters()).containsExactly(si);
+		assertThat(request.getSorters()).containsExactly(si);
+		assertThat(request.getGroups()).containsExactly(gi);
+		assertThat(calls.get()).isEqualTo(3);
+
+		request.setSortersLoader(new Callable<List<SortInfo>>() {
+			@Override
+			public List<SortInfo> call() {
+				throw new IllegalStateException("never called");
+			}
+		});
+		request.setSorters(null);
+		assertThat(request.getSorters()).isEmpty();
+	}
 }
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ralscha.extdirectspring.util.ApiCache;
+import ch.ralscha.extdirectspring.util.ApiCacheKey;
+import ch.ralscha.extdirectspring.util.CacheableContent;
+import ch.ralscha.extdirectspring.util.ContentEncoding;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration("classpath:/testApplicationContext.xml")
+public class ApiControllerPrerenderTest {
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private ConfigurationService configurationService;
+
+	@Autowired
+	private ApiController apiController;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setupMockMvc() throws Exception {
+		ApiCache.INSTANCE.clear();
+		mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+	}
+
+	@After
+	public void resetConfiguration() throws Exception {
+		ReflectionTestUtils.setField(configurationService, "configuration", new Configuration());
+		configurationService.afterPropertiesSet();
+		wac.publishEvent(new ContextRefreshedEvent(wac));
+		ApiCache.INSTANCE.clear();
+	}
+
+	private void configure(boolean compress, ApiVariant... variants) throws Exception {
+		Configuration config = new Configuration();
+		config.setCompressResponse(compress);
+		config.setCompressionThreshold(0);
+		if (variants.length > 0) {
+			config.setApiVariants(Arrays.asList(variants));
+		}
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+		wac.publishEvent(new ContextRefreshedEvent(wac));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<ApiCacheKey, CacheableContent> prerenderedApis() {
+		return (Map<ApiCacheKey, CacheableContent>) ReflectionTestUtils.getField(apiController, "prerenderedApis");
+	}
+
+	private MockHttpServletResponse perform(String url, String acceptEncoding) throws Exception {
+		if (acceptEncoding != null) {
+			return mockMvc.perform(get(url).param("group", "group1").header("Accept-Encoding", acceptEncoding))
+					.andExpect(status().isOk()).andReturn().getResponse();
+		}
+		return mockMvc.perform(get(url).param("group", "group1")).andExpect(status().isOk()).andReturn()
+				.getResponse();
+	}
+
+	@Test
+	public void testNoVariants() throws Exception {
+		configure(false);
+		assertThat(prerenderedApis()).isEmpty();
+	}
+
+	@Test
+	public void testVariantsAreRenderedOnRefresh() throws Exception {
+		configure(false);
+		String apiJs = perform("/api.js", null).getContentAsString();
+		String apiDebugJs = perform("/api-debug.js", null).getContentAsString();
+		ApiCache.INSTANCE.clear();
+
+		configure(false, new ApiVariant("/", "group1"));
+		assertThat(prerenderedApis()).hasSize(2);
+
+		assertThat(perform("/api.js", null).getContentAsString()).isEqualTo(apiJs);
+		assertThat(perform("/api-debug.js", null).getContentAsString()).isEqualTo(apiDebugJs);
+		assertThat(perform("/api-1.0.js", null).getContentAsString()).isEqualTo(apiJs);
+
+		// served from the pre-rendered content, the cache is not touched
+		assertThat(ApiCache.INSTANCE.getContent(new ApiCacheKey("Ext.app", null, "REMOTING_API", "POLLING_URLS",
+				"SSE", "/router", "group1", false))).isNull();
+	}
+
+	@Test
+	public void testCompressedVariantsArePrecomputed() throws Exception {
+		configure(true, new ApiVariant("/", "group1"));
+
+		for (CacheableContent content : prerenderedApis().values()) {
+			@SuppressWarnings("unchecked")
+			Map<Integer, byte[]> encodedData = (Map<Integer, byte[]>) ReflectionTestUtils.getField(content,
+					"encodedData");
+			assertThat(encodedData).hasSize(ContentEncoding.values().length);
+			assertThat(ReflectionTestUtils.getField(content, "etags")).isNotNull();
+		}
+
+		MockHttpServletResponse response = perform("/api-1.0.js", "gzip");
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertThat(response.getHeader("ETag")).endsWith("-gzip\"");
+		String uncompressed = perform("/api-1.0.js", null).getContentAsString();
+		assertThat(gunzip(response.getContentAsByteArray())).isEqualTo(uncompressed);
+	}
+
+	@Test
+	public void testOtherVariantsAreRenderedOnRequest() throws Exception {
+		configure(false, new ApiVariant("/other/", "group1"));
+		assertThat(perform("/api.js", null).getContentAsString()).contains("remoteProviderSimple");
+		assertThat(ApiCache.INSTANCE.getContent(new ApiCacheKey("Ext.app", null, "REMOTING_API", "POLLING_URLS",
+				"SSE", "/router", "group1", false))).isNotNull();
+	}
+
+	@Test
+	public void testRefreshInvalidatesCache() throws Exception {
+		configure(false);
+		perform("/api.js", null);
+		assertThat(ApiCache.INSTANCE.size()).isEqualTo(1);
+		wac.publishEvent(new ContextRefreshedEvent(wac));
+		assertThat(ApiCache.INSTANCE.size()).isEqualTo(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBaseUrlRequired() throws Exception {
+		configure(false, new ApiVariant(null, "group1"));
+	}
+
+	private static String gunzip(byte[] data) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		FileCopyUtils.copy(new GZIPInputStream(new ByteArrayInputStream(data)), bos);
+		return new String(bos.toByteArray(), "UTF-8");
+	}
+
+}
@@ -221,9 +221,10 @@ public class ApiControllerTest {
 
 			MockHttpServletResponse response = result.getResponse();
 
-			assertThat(response.getHeaderNames()).hasSize(6);
+			assertThat(response.getHeaderNames()).hasSize(7);
 			assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
 			assertThat(response.getHeader("ETag")).isNotNull();
+			assertThat(response.getHeader("Last-Modified")).isNotNull();
 			assertThat(response.getHeader("Cache-Control")).isEqualTo("public, max-age=" + (6 * 30 * 24 * 60 * 60));
 
 			Long expiresMillis = (Long) response.getHeaderValue("Expires");
@@ -238,6 +239,50 @@ public class ApiControllerTest {
 		}
 	}
 
+	@Test
+	public void testConditionalGet() throws Exception {
+		long registryLastModified = MethodInfoCache.INSTANCE.getLastModified();
+
+		for (String url : new String[] { "/api.js", "/api-debug.js", "/api-debug-doc.js", "/api-1.2.js" }) {
+			MockHttpServletResponse response = mockMvc.perform(get(url).param("group", "group1"))
+					.andExpect(status().isOk()).andReturn().getResponse();
+			String etag = response.getHeader("ETag");
+			assertThat(etag).isNotNull();
+			assertThat(response.getHeaderValue("Last-Modified")).isEqualTo(registryLastModified);
+
+			mockMvc.perform(get(url).param("group", "group1").header("If-None-Match", etag))
+					.andExpect(status().isNotModified()).andExpect(content().string(""));
+			mockMvc.perform(get(url).param("group", "group1").header("If-Modified-Since", registryLastModified))
+					.andExpect(status().isNotModified());
+			mockMvc.perform(get(url).param("group", "group1").header("If-Modified-Since", registryLastModified - 1000))
+					.andExpect(status().isOk());
+			mockMvc.perform(get(url).param("group", "group2").header("If-None-Match", etag))
+					.andExpect(status().isOk());
+		}
+
+		MockHttpServletResponse response = mockMvc.perform(get("/api.js").param("format", "json"))
+				.andExpect(status().isOk()).andReturn().getResponse();
+		assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+		mockMvc.perform(get("/api.js").param("format", "json").header("If-None-Match", response.getHeader("ETag")))
+				.andExpect(status().isNotModified());
+
+		// revalidating the doc and json variants does not render them again
+		long loadCount = ApiCache.INSTANCE.getLoadCount();
+		mockMvc.perform(get("/api-debug-doc.js").param("group", "group1")).andExpect(status().isOk());
+		mockMvc.perform(get("/api.js").param("format", "json").header("If-None-Match", response.getHeader("ETag")))
+				.andExpect(status().isNotModified());
+		assertThat(ApiCache.INSTANCE.getLoadCount()).isEqualTo(loadCount);
+
+		// a new registry invalidates the Last-Modified validator, the ETag
+		// stays valid as long as the api does not change
+		String etag = mockMvc.perform(get("/api.js")).andReturn().getResponse().getHeader("ETag");
+		MethodInfoCache.INSTANCE.clear();
+		wac.publishEvent(new ContextRefreshedEvent(wac));
+		assertThat(MethodInfoCache.INSTANCE.getLastModified()).isGreaterThan(registryLastModified);
+		mockMvc.perform(get("/api.js").header("If-Modified-Since", registryLastModified)).andExpect(status().isOk());
+		mockMvc.perform(get("/api.js").header("If-None-Match", etag)).andExpect(status().isNotModified());
+	}
+
 	@Test
 	public void testGroup2() throws Exception {
 		ApiRequestParams params = ApiRequestParams.builder().apiNs("test").remotingApiVar("TEST_REMOTING_API")
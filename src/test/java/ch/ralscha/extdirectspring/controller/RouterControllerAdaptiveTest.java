@@ -0,0 +1,185 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectResponse;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration("classpath:/testApplicationContext.xml")
+public class RouterControllerAdaptiveTest {
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private ConfigurationService configurationService;
+
+	private MockMvc mockMvc;
+
+	private ThreadPoolExecutor executorService;
+
+	private final CountDownLatch blocker = new CountDownLatch(1);
+
+	@Before
+	public void setupMockMvc() throws Exception {
+		mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+	}
+
+	@After
+	public void resetConfiguration() throws Exception {
+		blocker.countDown();
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+		ReflectionTestUtils.setField(configurationService, "configuration", new Configuration());
+		configurationService.afterPropertiesSet();
+	}
+
+	@Test
+	public void testDefaultExecutor() throws Exception {
+		configure(null, null);
+		assertThat(configurationService.getConfiguration().getBatchedMethodsExecutorService()).isInstanceOf(
+				ThreadPoolExecutor.class);
+		assertResponses(performBatch(3), true);
+	}
+
+	@Test
+	public void testSmallBatchRunsSequential() throws Exception {
+		configure(new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()), null);
+		assertResponses(performBatch(2), true);
+		assertThat(executorService.getTaskCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testLargeBatchRunsFirstCallInline() throws Exception {
+		configure(new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()), null);
+		assertResponses(performBatch(3), true);
+		assertThat(executorService.getTaskCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testRejectedCallsRunInline() throws Exception {
+		configure(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>()), null);
+		block();
+		assertResponses(performBatch(3), true);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		configure(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()), 200L);
+		block();
+		assertResponses(performBatch(3), false);
+	}
+
+	@Test
+	public void testTimeoutWithCompletionOrder() throws Exception {
+		configure(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()), 200L);
+		configurationService.getConfiguration().setBatchedResponseStreamingPolicy(
+				BatchedResponseStreamingPolicy.COMPLETION_ORDER);
+		block();
+		assertResponses(performBatch(3), false);
+	}
+
+	private void configure(ThreadPoolExecutor executor, Long timeout) throws Exception {
+		executorService = executor;
+		Configuration config = new Configuration();
+		config.setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy.ADAPTIVE);
+		config.setBatchedMethodsExecutorService(executor);
+		config.setBatchedMethodsTimeout(timeout);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+		if (executorService == null) {
+			executorService = (ThreadPoolExecutor) config.getBatchedMethodsExecutorService();
+		}
+	}
+
+	private void block() {
+		executorService.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					blocker.await();
+				} catch (InterruptedException e) {
+					// nothing here
+				}
+			}
+		});
+	}
+
+	private MvcResult performBatch(int noOfCalls) throws Exception {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 1; i <= noOfCalls; i++) {
+			if (i > 1) {
+				sb.append(",");
+			}
+			if (i % 2 == 1) {
+				sb.append(ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", i, null));
+			} else {
+				sb.append(ControllerUtil.createEdsRequest("remoteProviderSimple", "method6", i, new Object[] { 10, 20 }));
+			}
+		}
+		sb.append("]");
+
+		return mockMvc.perform(
+				post("/router").accept(MediaType.ALL).contentType(MediaType.APPLICATION_JSON)
+						.characterEncoding("UTF-8").content(sb.toString())).andReturn();
+	}
+
+	private static void assertResponses(MvcResult result, boolean allSucceeded) throws Exception {
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(result.getResponse()
+				.getContentAsByteArray());
+
+		for (ExtDirectResponse response : responses) {
+			if (!allSucceeded && response.getTid() > 1) {
+				assertThat(response.getType()).isEqualTo("exception");
+				assertThat(response.getMessage()).isEqualTo("Server Error");
+			} else if (response.getTid() % 2 == 1) {
+				assertThat(response.getType()).isEqualTo("rpc");
+				assertThat(response.getResult()).isEqualTo("method1() called");
+			} else {
+				assertThat(response.getType()).isEqualTo("rpc");
+				assertThat(response.getResult()).isEqualTo(30);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectResponse;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration("classpath:/testApplicationContext.xml")
+public class RouterControllerAsyncTest {
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private ConfigurationService configurationService;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setupMockMvc() throws Exception {
+		Configuration config = new Configuration();
+		config.setAsyncRouter(true);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+
+		mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+	}
+
+	@After
+	public void resetConfiguration() throws Exception {
+		configurationService.destroy();
+		ReflectionTestUtils.setField(configurationService, "configuration", new Configuration());
+		configurationService.afterPropertiesSet();
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		String edRequest1 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", 1, null);
+		String edRequest2 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method6", 2, new Object[] { 10,
+				20 });
+		String edRequest3 = ControllerUtil.createEdsRequest("remoteProviderSimple", "methodUnknown", 3, null);
+
+		MvcResult result = performAsyncRouterRequest("[" + edRequest1 + "," + edRequest2 + "," + edRequest3 + "]");
+		waitForCompletion(result);
+
+		assertThat(result.getResponse().getContentType()).isEqualTo("application/json;charset=UTF-8");
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(result.getResponse()
+				.getContentAsByteArray());
+		assertThat(responses).hasSize(3);
+
+		assertThat(responses.get(0).getTid()).isEqualTo(1);
+		assertThat(responses.get(0).getType()).isEqualTo("rpc");
+		assertThat(responses.get(0).getResult()).isEqualTo("method1() called");
+
+		assertThat(responses.get(1).getTid()).isEqualTo(2);
+		assertThat(responses.get(1).getType()).isEqualTo("rpc");
+		assertThat(responses.get(1).getResult()).isEqualTo(30);
+
+		assertThat(responses.get(2).getTid()).isEqualTo(3);
+		assertThat(responses.get(2).getType()).isEqualTo("exception");
+		assertThat(responses.get(2).getMessage()).isEqualTo("Server Error");
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ThreadPoolExecutor executorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		configurationService.getConfiguration().setAsyncRouterExecutorService(executorService);
+		configurationService.getConfiguration().setAsyncRouterTimeout(1000L);
+
+		CountDownLatch latch = blockExecutor(executorService);
+
+		String edRequest1 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", 1, null);
+		String edRequest2 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method6", 2, new Object[] { 1,
+				2 });
+
+		MvcResult result = performAsyncRouterRequest("[" + edRequest1 + "," + edRequest2 + "]");
+		ServletRequest request = result.getRequest();
+		assertThat(request.isAsyncStarted()).isTrue();
+
+		AsyncContext asyncContext = request.getAsyncContext();
+		assertThat(asyncContext.getTimeout()).isEqualTo(1000L);
+		@SuppressWarnings("unchecked")
+		List<AsyncListener> listeners = (List<AsyncListener>) ReflectionTestUtils.getField(asyncContext, "listeners");
+		for (AsyncListener listener : listeners) {
+			listener.onTimeout(new AsyncEvent(asyncContext));
+		}
+		assertThat(request.isAsyncStarted()).isFalse();
+
+		assertThat(executorService.getQueue()).hasSize(2);
+		for (Runnable queuedCall : executorService.getQueue()) {
+			assertThat(((Future<?>) queuedCall).isCancelled()).isTrue();
+		}
+
+		latch.countDown();
+
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(result.getResponse()
+				.getContentAsByteArray());
+		assertThat(responses).hasSize(2);
+		for (int i = 0; i < responses.size(); i++) {
+			ExtDirectResponse response = responses.get(i);
+			assertThat(response.getTid()).isEqualTo(i + 1);
+			assertThat(response.getType()).isEqualTo("exception");
+			assertThat(response.getMessage()).isEqualTo("Server Error");
+			assertThat(response.getResult()).isNull();
+		}
+	}
+
+	@Test
+	public void testError() throws Exception {
+		ThreadPoolExecutor executorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		configurationService.getConfiguration().setAsyncRouterExecutorService(executorService);
+
+		CountDownLatch latch = blockExecutor(executorService);
+
+		String edRequest1 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", 1, null);
+		MvcResult result = performAsyncRouterRequest("[" + edRequest1 + "]");
+		ServletRequest request = result.getRequest();
+		assertThat(request.isAsyncStarted()).isTrue();
+
+		AsyncContext asyncContext = request.getAsyncContext();
+		@SuppressWarnings("unchecked")
+		List<AsyncListener> listeners = (List<AsyncListener>) ReflectionTestUtils.getField(asyncContext, "listeners");
+		for (AsyncListener listener : listeners) {
+			listener.onError(new AsyncEvent(asyncContext));
+		}
+		assertThat(request.isAsyncStarted()).isFalse();
+
+		assertThat(executorService.getQueue()).hasSize(1);
+		assertThat(((Future<?>) executorService.getQueue().peek()).isCancelled()).isTrue();
+
+		latch.countDown();
+		assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	public void testRejectedCalls() throws Exception {
+		ThreadPoolExecutor executorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		executorService.shutdown();
+		configurationService.getConfiguration().setAsyncRouterExecutorService(executorService);
+
+		String edRequest1 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", 1, null);
+		String edRequest2 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method6", 2, new Object[] { 1,
+				2 });
+
+		// the rejected calls are not run on the container thread
+		MvcResult result = performAsyncRouterRequest("[" + edRequest1 + "," + edRequest2 + "]");
+		ServletRequest request = result.getRequest();
+		assertThat(request.isAsyncStarted()).isFalse();
+
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(result.getResponse()
+				.getContentAsByteArray());
+		assertThat(responses).hasSize(2);
+		for (int i = 0; i < responses.size(); i++) {
+			ExtDirectResponse response = responses.get(i);
+			assertThat(response.getTid()).isEqualTo(i + 1);
+			assertThat(response.getType()).isEqualTo("exception");
+			assertThat(response.getMessage()).isEqualTo("Server Error");
+		}
+	}
+
+	private static CountDownLatch blockExecutor(ExecutorService executorService) {
+		final CountDownLatch latch = new CountDownLatch(1);
+		executorService.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					// nothing here
+				}
+			}
+		});
+		return latch;
+	}
+
+	private MvcResult performAsyncRouterRequest(String content) throws Exception {
+		return mockMvc.perform(
+				post("/router").accept(MediaType.ALL).contentType(MediaType.APPLICATION_JSON)
+						.characterEncoding("UTF-8").content(content)).andReturn();
+	}
+
+	private static void waitForCompletion(MvcResult result) throws InterruptedException {
+		ServletRequest request = result.getRequest();
+		for (int i = 0; i < 100 && request.isAsyncStarted(); i++) {
+			Thread.sleep(50);
+		}
+		assertThat(request.isAsyncStarted()).isFalse();
+	}
+
+}
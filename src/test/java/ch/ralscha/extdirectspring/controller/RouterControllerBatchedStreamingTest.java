@@ -0,0 +1,176 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectResponse;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration("classpath:/testApplicationContext.xml")
+public class RouterControllerBatchedStreamingTest {
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private ConfigurationService configurationService;
+
+	private MockMvc mockMvc;
+
+	private ThreadPoolExecutor executorService;
+
+	@Before
+	public void setupMockMvc() throws Exception {
+		// one thread that picks up the last submitted call first
+		executorService = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public boolean offer(Runnable runnable) {
+				return offerFirst(runnable);
+			}
+		});
+
+		Configuration config = new Configuration();
+		config.setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy.CONCURRENT);
+		config.setBatchedMethodsExecutorService(executorService);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+
+		mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+	}
+
+	@After
+	public void resetConfiguration() throws Exception {
+		executorService.shutdown();
+		ReflectionTestUtils.setField(configurationService, "configuration", new Configuration());
+		configurationService.afterPropertiesSet();
+	}
+
+	@Test
+	public void testDefaultExecutorService() throws Exception {
+		Configuration config = new Configuration();
+		config.setBatchedMethodsExecutionPolicy(BatchedMethodsExecutionPolicy.CONCURRENT);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+
+		ThreadPoolExecutor defaultExecutorService = (ThreadPoolExecutor) config.getBatchedMethodsExecutorService();
+		assertThat(defaultExecutorService.getMaximumPoolSize()).isEqualTo(5);
+		assertThat(defaultExecutorService.getQueue().remainingCapacity()).isEqualTo(100);
+		defaultExecutorService.shutdown();
+	}
+
+	@Test
+	public void testNone() throws Exception {
+		MvcResult result = performBatch();
+		assertThat(result.getResponse().getContentLength()).isGreaterThan(0);
+		assertResponses(result, 1, 2, 3);
+	}
+
+	@Test
+	public void testTidOrder() throws Exception {
+		configurationService.getConfiguration().setBatchedResponseStreamingPolicy(
+				BatchedResponseStreamingPolicy.TID_ORDER);
+		MvcResult result = performBatch();
+		assertThat(result.getResponse().getContentLength()).isEqualTo(0);
+		assertResponses(result, 1, 2, 3);
+	}
+
+	@Test
+	public void testCompletionOrder() throws Exception {
+		configurationService.getConfiguration().setBatchedResponseStreamingPolicy(
+				BatchedResponseStreamingPolicy.COMPLETION_ORDER);
+		MvcResult result = performBatch();
+		assertThat(result.getResponse().getContentLength()).isEqualTo(0);
+		assertResponses(result, 3, 2, 1);
+	}
+
+	private MvcResult performBatch() throws Exception {
+		// keep the only thread busy until all three calls are queued
+		executorService.execute(new Runnable() {
+			@Override
+			public void run() {
+				while (executorService.getQueue().size() < 3) {
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		});
+
+		String edRequest1 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", 1, null);
+		String edRequest2 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method6", 2, new Object[] { 10,
+				20 });
+		String edRequest3 = ControllerUtil.createEdsRequest("remoteProviderSimple", "methodUnknown", 3, null);
+
+		return mockMvc.perform(
+				post("/router").accept(MediaType.ALL).contentType(MediaType.APPLICATION_JSON)
+						.characterEncoding("UTF-8")
+						.content("[" + edRequest1 + "," + edRequest2 + "," + edRequest3 + "]")).andReturn();
+	}
+
+	private static void assertResponses(MvcResult result, int... tids) throws Exception {
+		assertThat(result.getResponse().getContentType()).isEqualTo("application/json;charset=UTF-8");
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(result.getResponse()
+				.getContentAsByteArray());
+		assertThat(responses).hasSize(tids.length);
+
+		for (int i = 0; i < tids.length; i++) {
+			ExtDirectResponse response = responses.get(i);
+			assertThat(response.getTid()).isEqualTo(tids[i]);
+			switch (response.getTid()) {
+			case 1:
+				assertThat(response.getType()).isEqualTo("rpc");
+				assertThat(response.getResult()).isEqualTo("method1() called");
+				break;
+			case 2:
+				assertThat(response.getType()).isEqualTo("rpc");
+				assertThat(response.getResult()).isEqualTo(30);
+				break;
+			default:
+				assertThat(response.getType()).isEqualTo("exception");
+				assertThat(response.getMessage()).isEqualTo("Server Error");
+				break;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectPollResponse;
+import ch.ralscha.extdirectspring.bean.ExtDirectResponse;
+import ch.ralscha.extdirectspring.util.ApiCache;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration("classpath:/testApplicationContext.xml")
+public class RouterControllerCompressionTest {
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private ConfigurationService configurationService;
+
+	private MockMvc mockMvc;
+
+	private Configuration config;
+
+	@Before
+	public void setupMockMvc() throws Exception {
+		config = new Configuration();
+		config.setCompressResponse(true);
+		config.setCompressionThreshold(0);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+		ApiCache.INSTANCE.clear();
+
+		mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+	}
+
+	@After
+	public void resetConfiguration() throws Exception {
+		ReflectionTestUtils.setField(configurationService, "configuration", new Configuration());
+		configurationService.afterPropertiesSet();
+		ApiCache.INSTANCE.clear();
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		MockHttpServletResponse response = performRouterRequest("gzip, deflate", false);
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
+		assertResponses(gunzip(response.getContentAsByteArray()), false);
+	}
+
+	@Test
+	public void testDeflate() throws Exception {
+		MockHttpServletResponse response = performRouterRequest("deflate", true);
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("deflate");
+		assertResponses(inflate(response.getContentAsByteArray()), true);
+	}
+
+	@Test
+	public void testNotAccepted() throws Exception {
+		MockHttpServletResponse response = performRouterRequest(null, true);
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
+		assertResponses(response.getContentAsByteArray(), true);
+	}
+
+	@Test
+	public void testBelowThreshold() throws Exception {
+		config.setCompressionThreshold(10000);
+		MockHttpServletResponse response = performRouterRequest("gzip", true);
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getContentLength()).isEqualTo(response.getContentAsByteArray().length);
+		assertResponses(response.getContentAsByteArray(), true);
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		config.setCompressResponse(false);
+		MockHttpServletResponse response = performRouterRequest("gzip", true);
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getHeader("Vary")).isNull();
+		assertResponses(response.getContentAsByteArray(), true);
+	}
+
+	@Test
+	public void testStreamResponse() throws Exception {
+		config.setStreamResponse(true);
+		MockHttpServletResponse response = performRouterRequest("gzip", true);
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertResponses(gunzip(response.getContentAsByteArray()), true);
+
+		config.setCompressionThreshold(10000);
+		response = performRouterRequest("gzip", true);
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertResponses(response.getContentAsByteArray(), true);
+	}
+
+	@Test
+	public void testPoll() throws Exception {
+		MockHttpServletResponse response = mockMvc
+				.perform(
+						post("/poll/pollProvider/handleMessage1/message1").accept(MediaType.ALL)
+								.header("Accept-Encoding", "gzip")).andReturn().getResponse();
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+
+		ExtDirectPollResponse pollResponse = ControllerUtil.readDirectPollResponse(gunzip(response
+				.getContentAsByteArray()));
+		assertThat(pollResponse.getName()).isEqualTo("message1");
+		assertThat((String) pollResponse.getData()).startsWith("Successfully polled at: ");
+	}
+
+	@Test
+	public void testApi() throws Exception {
+		MockHttpServletResponse response = mockMvc.perform(get("/api.js").header("Accept-Encoding", "gzip"))
+				.andReturn().getResponse();
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		String api = new String(gunzip(response.getContentAsByteArray()), "UTF-8");
+		assertThat(api).startsWith("Ext.ns('Ext.app');");
+
+		response = mockMvc.perform(get("/api.js")).andReturn().getResponse();
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getContentAsString()).isEqualTo(api);
+	}
+
+	@Test
+	public void testFingerprintedApi() throws Exception {
+		MockHttpServletResponse response = mockMvc
+				.perform(get("/api-1.0.0.js").header("Accept-Encoding", "gzip")).andReturn().getResponse();
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertThat(response.getContentLength()).isEqualTo(response.getContentAsByteArray().length);
+		String gzipEtag = response.getHeader("ETag");
+		assertThat(gzipEtag).endsWith("-gzip\"");
+		String api = new String(gunzip(response.getContentAsByteArray()), "UTF-8");
+
+		response = mockMvc.perform(get("/api-1.0.0.js")).andReturn().getResponse();
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getContentAsString()).isEqualTo(api);
+		String etag = response.getHeader("ETag");
+		assertThat(etag).isNotEqualTo(gzipEtag);
+
+		response = mockMvc
+				.perform(get("/api-1.0.0.js").header("Accept-Encoding", "gzip").header("If-None-Match", gzipEtag))
+				.andReturn().getResponse();
+		assertThat(response.getStatus()).isEqualTo(304);
+
+		response = mockMvc
+				.perform(get("/api-1.0.0.js").header("Accept-Encoding", "gzip").header("If-None-Match", etag))
+				.andReturn().getResponse();
+		assertThat(response.getStatus()).isEqualTo(200);
+	}
+
+	private MockHttpServletResponse performRouterRequest(String acceptEncoding, boolean batch) throws Exception {
+		String edRequest1 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method1", 1, null);
+		String edRequest2 = ControllerUtil.createEdsRequest("remoteProviderSimple", "method6", 2, new Object[] { 10,
+				20 });
+		String content = batch ? "[" + edRequest1 + "," + edRequest2 + "]" : edRequest1;
+
+		if (acceptEncoding != null) {
+			return mockMvc
+					.perform(
+							post("/router").accept(MediaType.ALL).contentType(MediaType.APPLICATION_JSON)
+									.header("Accept-Encoding", acceptEncoding).content(content)).andReturn()
+					.getResponse();
+		}
+		return mockMvc
+				.perform(post("/router").accept(MediaType.ALL).contentType(MediaType.APPLICATION_JSON).content(content))
+				.andReturn().getResponse();
+	}
+
+	private static void assertResponses(byte[] content, boolean batch) {
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(content);
+		assertThat(responses).hasSize(batch ? 2 : 1);
+		assertThat(responses.get(0).getTid()).isEqualTo(1);
+		assertThat(responses.get(0).getResult()).isEqualTo("method1() called");
+		if (batch) {
+			assertThat(responses.get(1).getTid()).isEqualTo(2);
+			assertThat(responses.get(1).getResult()).isEqualTo(30);
+		}
+	}
+
+	private static byte[] gunzip(byte[] data) throws IOException {
+		return FileCopyUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(data)));
+	}
+
+	private static byte[] inflate(byte[] data) throws IOException {
+		return FileCopyUtils.copyToByteArray(new InflaterInputStream(new ByteArrayInputStream(data)));
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.controller;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ralscha.extdirectspring.provider.Row;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration("classpath:/testApplicationContext.xml")
+public class RouterControllerStoreModifyParallelTest {
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private ConfigurationService configurationService;
+
+	private MockMvc mockMvc;
+
+	private ExecutorService executorService;
+
+	@Before
+	public void setupMockMvc() throws Exception {
+		executorService = Executors.newFixedThreadPool(3);
+
+		Configuration config = new Configuration();
+		config.setStoreModifyParallelDecodingThreshold(10);
+		config.setStoreModifyDecodingExecutorService(executorService);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+
+		mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+	}
+
+	@After
+	public void resetConfiguration() throws Exception {
+		executorService.shutdown();
+		ReflectionTestUtils.setField(configurationService, "configuration", new Configuration());
+		configurationService.afterPropertiesSet();
+	}
+
+	@Test
+	public void testDefaultExecutor() throws Exception {
+		Configuration config = new Configuration();
+		config.setStoreModifyParallelDecodingThreshold(10);
+		ReflectionTestUtils.setField(configurationService, "configuration", config);
+		configurationService.afterPropertiesSet();
+		assertThat(config.getStoreModifyDecodingExecutorService()).isNotNull();
+		config.getStoreModifyDecodingExecutorService().shutdown();
+	}
+
+	@Test
+	public void testRecordsProperty() {
+		Map<String, Object> storeRequest = new LinkedHashMap<String, Object>();
+		storeRequest.put("records", createRows(1000));
+		assertRows(ControllerUtil.sendAndReceive(mockMvc, "remoteProviderStoreModify", "create1",
+				new TypeReference<List<Row>>() {/* nothing here */
+				}, storeRequest), 1000);
+		assertRows(ControllerUtil.sendAndReceive(mockMvc, "remoteProviderStoreModifyArray", "create1",
+				new TypeReference<List<Row>>() {/* nothing here */
+				}, storeRequest), 1000);
+	}
+
+	@Test
+	public void testRecordsWithParameter() {
+		Map<String, Object> storeRequest = new LinkedHashMap<String, Object>();
+		storeRequest.put("records", createRows(100));
+		storeRequest.put("id", 10);
+		assertRows(ControllerUtil.sendAndReceive(mockMvc, "remoteProviderStoreModify", "update2",
+				new TypeReference<List<Row>>() {/* nothing here */
+				}, storeRequest), 100);
+	}
+
+	@Test
+	public void testBelowThreshold() {
+		Map<String, Object> storeRequest = new LinkedHashMap<String, Object>();
+		storeRequest.put("records", createRows(9));
+		assertRows(ControllerUtil.sendAndReceive(mockMvc, "remoteProviderStoreModify", "create1",
+				new TypeReference<List<Row>>() {/* nothing here */
+				}, storeRequest), 9);
+	}
+
+	@Test
+	public void testAtThreshold() {
+		List<Row> rows = createRows(10);
+		assertRows(ControllerUtil.sendAndReceive(mockMvc, "remoteProviderStoreModify", "create1",
+				new TypeReference<List<Row>>() {/* nothing here */
+				}, rows), 10);
+	}
+
+	private static List<Row> createRows(int noOfRows) {
+		List<Row> rows = new ArrayList<Row>();
+		for (int i = 0; i < noOfRows; i++) {
+			rows.add(new Row(i, "name" + i, i % 2 == 0, "10.5"));
+		}
+		return rows;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void assertRows(Object result, int noOfRows) {
+		List<Row> rows = (List<Row>) result;
+		assertThat(rows).hasSize(noOfRows);
+		for (int i = 0; i < noOfRows; i++) {
+			assertThat(rows.get(i).getId()).isEqualTo(i);
+			assertThat(rows.get(i).getName()).isEqualTo("name" + i);
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class FilterCompilerTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	public enum Status {
+		ACTIVE, INACTIVE
+	}
+
+	public static class Row {
+		private final int id;
+
+		private final String name;
+
+		private final Double price;
+
+		private final BigDecimal amount;
+
+		private final Date created;
+
+		private final boolean visible;
+
+		private final Status status;
+
+		private final Row parent;
+
+		Row(int id, String name, Double price, BigDecimal amount, Date created, boolean visible, Status status,
+				Row parent) {
+			this.id = id;
+			this.name = name;
+			this.price = price;
+			this.amount = amount;
+			this.created = created;
+			this.visible = visible;
+			this.status = status;
+			this.parent = parent;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Double getPrice() {
+			return price;
+		}
+
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		public Date getCreated() {
+			return created;
+		}
+
+		public boolean isVisible() {
+			return visible;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public Row getParent() {
+			return parent;
+		}
+	}
+
+	private static Date date(int year, int month, int day, int hour) {
+		Calendar cal = new GregorianCalendar(UTC);
+		cal.clear();
+		cal.set(year, month - 1, day, hour, 0);
+		return cal.getTime();
+	}
+
+	private static List<Row> rows() {
+		Row root = new Row(0, "Root", null, null, null, false, null, null);
+		List<Row> rows = new ArrayList<Row>();
+		rows.add(new Row(1, "Alpha", 1.5, new BigDecimal("10.00"), date(2013, 3, 1, 0), true, Status.ACTIVE, root));
+		rows.add(new Row(2, "beta", 2.0, new BigDecimal("20.50"), date(2013, 3, 1, 23), false, Status.INACTIVE,
+				null));
+		rows.add(new Row(3, "Gamma", null, new BigDecimal("30"), date(2013, 3, 2, 12), true, Status.ACTIVE, root));
+		rows.add(new Row(4, null, 4.25, null, null, true, null, null));
+		return rows;
+	}
+
+	private static List<Integer> ids(FilterPredicate<Row> predicate) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Row row : predicate.filter(rows())) {
+			ids.add(row.getId());
+		}
+		return ids;
+	}
+
+	private static FilterPredicate<Row> compile(Filter... filters) {
+		return FilterCompiler.compile(Row.class, Arrays.asList(filters), "dd.MM.yyyy", UTC);
+	}
+
+	@Test
+	public void testNoFilters() {
+		assertThat(ids(FilterCompiler.compile(Row.class, Collections.<Filter> emptyList()))).containsExactly(1, 2,
+				3, 4);
+		assertThat(ids(FilterCompiler.compile(Row.class, (List<Filter>) null))).containsExactly(1, 2, 3, 4);
+		assertThat(ids(compile((Filter) null))).containsExactly(1, 2, 3, 4);
+	}
+
+	@Test
+	public void testStringFilter() {
+		assertThat(ids(compile(new StringFilter("name", "a")))).containsExactly(1, 2, 3);
+		assertThat(ids(compile(new StringFilter("name", "ALP")))).containsExactly(1);
+		assertThat(ids(compile(new StringFilter("name", "x")))).isEmpty();
+		assertThat(ids(compile(new StringFilter("name", null)))).containsExactly(4);
+		assertThat(ids(compile(new StringFilter("id", "3")))).containsExactly(3);
+	}
+
+	@Test
+	public void testNumericFilter() {
+		assertThat(ids(compile(new NumericFilter("id", 2, Comparison.GREATER_THAN)))).containsExactly(3, 4);
+		assertThat(ids(compile(new NumericFilter("id", 2L, Comparison.LESS_THAN_OR_EQUAL)))).containsExactly(1, 2);
+		assertThat(ids(compile(new NumericFilter("id", 2.5, Comparison.LESS_THAN)))).containsExactly(1, 2);
+		assertThat(ids(compile(new NumericFilter("id", 3, null)))).containsExactly(3);
+		assertThat(ids(compile(new NumericFilter("id", 3, Comparison.NOT_EQUAL)))).containsExactly(1, 2, 4);
+
+		assertThat(ids(compile(new NumericFilter("price", 2, Comparison.GREATER_THAN_OR_EQUAL)))).containsExactly(2,
+				4);
+		assertThat(ids(compile(new NumericFilter("price", 2, Comparison.NOT_EQUAL)))).containsExactly(1, 3, 4);
+
+		assertThat(ids(compile(new NumericFilter("amount", 20.5, Comparison.EQUAL)))).containsExactly(2);
+		assertThat(ids(compile(new NumericFilter("amount", 20, Comparison.GREATER_THAN)))).containsExactly(2, 3);
+		assertThat(ids(compile(new NumericFilter("amount", 10, Comparison.EQUAL)))).containsExactly(1);
+	}
+
+	@Test
+	public void testDateFilter() {
+		assertThat(ids(compile(new DateFilter("created", "01.03.2013", Comparison.EQUAL)))).containsExactly(1, 2);
+		assertThat(ids(compile(new DateFilter("created", "01.03.2013", Comparison.GREATER_THAN)))).containsExactly(3);
+		assertThat(ids(compile(new DateFilter("created", "02.03.2013", Comparison.LESS_THAN)))).containsExactly(1, 2);
+		assertThat(ids(compile(new DateFilter("created", "02.03.2013", Comparison.LESS_THAN_OR_EQUAL))))
+				.containsExactly(1, 2, 3);
+		assertThat(ids(compile(new DateFilter("created", "02.03.2013", Comparison.GREATER_THAN_OR_EQUAL))))
+				.containsExactly(3);
+		assertThat(ids(compile(new DateFilter("created", "01.03.2013", Comparison.NOT_EQUAL)))).containsExactly(3,
+				4);
+	}
+
+	@Test
+	public void testDefaultDatePattern() {
+		FilterPredicate<Row> predicate = FilterCompiler.compile(Row.class,
+				Collections.singletonList(new DateFilter("created", "03/02/2013", Comparison.EQUAL)),
+				FilterCompiler.DEFAULT_DATE_PATTERN, UTC);
+		assertThat(ids(predicate)).containsExactly(3);
+	}
+
+	@Test
+	public void testListFilter() {
+		assertThat(ids(compile(new ListFilter("status", Arrays.asList("ACTIVE"))))).containsExactly(1, 3);
+		assertThat(ids(compile(new ListFilter("name", Arrays.asList("beta", "Gamma", "Delta"))))).containsExactly(2,
+				3);
+		assertThat(ids(compile(new ListFilter("id", Arrays.asList("1", "4"))))).containsExactly(1, 4);
+		assertThat(ids(compile(new ListFilter("id", Collections.<String> emptyList())))).isEmpty();
+	}
+
+	@Test
+	public void testBooleanFilter() {
+		assertThat(ids(compile(new BooleanFilter("visible", true)))).containsExactly(1, 3, 4);
+		assertThat(ids(compile(new BooleanFilter("visible", false)))).containsExactly(2);
+	}
+
+	@Test
+	public void testCombinedAndNested() {
+		assertThat(ids(compile(new BooleanFilter("visible", true), new NumericFilter("id", 3, Comparison.LESS_THAN_OR_EQUAL))))
+				.containsExactly(1, 3);
+		assertThat(ids(compile(new StringFilter("parent.name", "root")))).containsExactly(1, 3);
+		assertThat(ids(compile(new BooleanFilter("parent.visible", false)))).containsExactly(1, 3);
+	}
+
+	@Test
+	public void testReuse() {
+		FilterPredicate<Row> predicate = compile(new StringFilter("name", "a"));
+		assertThat((Object) predicate.getBeanClass()).isSameAs(Row.class);
+		assertThat(predicate.matches(rows().get(0))).isTrue();
+		assertThat(predicate.matches(rows().get(3))).isFalse();
+		assertThat(predicate.filter(rows())).hasSize(3);
+		assertThat(predicate.filter(rows())).hasSize(3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProperty() {
+		compile(new StringFilter("unknown", "a"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNumericFilterOnString() {
+		compile(new NumericFilter("name", 1, Comparison.EQUAL));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDateFilterWrongPattern() {
+		compile(new DateFilter("created", "2013-03-01", Comparison.EQUAL));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDateFilterOnNumber() {
+		compile(new DateFilter("price", "01.03.2013", Comparison.EQUAL));
+	}
+
+}
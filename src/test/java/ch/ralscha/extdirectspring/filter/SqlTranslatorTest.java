@@ -0,0 +1,219 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.bean.GroupInfo;
+import ch.ralscha.extdirectspring.bean.SortDirection;
+import ch.ralscha.extdirectspring.bean.SortInfo;
+
+public class SqlTranslatorTest {
+
+	private static EmbeddedDatabase database;
+
+	private static JdbcTemplate jdbcTemplate;
+
+	private final SqlTranslator translator = new SqlTranslator(columns(), "dd.MM.yyyy", TimeZone.getDefault(), 4);
+
+	@BeforeClass
+	public static void beforeClass() {
+		database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("sqltranslator").build();
+		jdbcTemplate = new JdbcTemplate(database);
+		jdbcTemplate.execute("CREATE TABLE item (id INT PRIMARY KEY, item_name VARCHAR(50), price DECIMAL(10,2), "
+				+ "created TIMESTAMP, visible BOOLEAN, category VARCHAR(10))");
+		jdbcTemplate.update("INSERT INTO item VALUES (1, 'Alpha', 1.50, '2013-03-01 00:00:00', TRUE, 'a')");
+		jdbcTemplate.update("INSERT INTO item VALUES (2, 'beta_1', 2.00, '2013-03-01 23:00:00', FALSE, 'b')");
+		jdbcTemplate.update("INSERT INTO item VALUES (3, 'Gamma', NULL, '2013-03-02 12:00:00', TRUE, 'a')");
+		jdbcTemplate.update("INSERT INTO item VALUES (4, NULL, 4.25, NULL, TRUE, 'c')");
+		jdbcTemplate.update("INSERT INTO item VALUES (5, 'beta', 5.00, '2013-03-05 08:00:00', FALSE, 'b')");
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		database.shutdown();
+	}
+
+	private static Map<String, String> columns() {
+		Map<String, String> columns = new HashMap<String, String>();
+		columns.put("id", "id");
+		columns.put("name", "item_name");
+		columns.put("price", "price");
+		columns.put("created", "created");
+		columns.put("visible", "visible");
+		columns.put("category", "category");
+		return columns;
+	}
+
+	private static ExtDirectStoreReadRequest request(Filter... filters) {
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setFilters(Arrays.asList(filters));
+		return request;
+	}
+
+	private static List<Integer> ids(SqlQuery query) {
+		String sql = "SELECT id FROM item " + query.getWhere() + " "
+				+ (query.getOrderBy().length() > 0 ? query.getOrderBy() : "ORDER BY id") + " " + query.getLimit();
+		return jdbcTemplate.queryForList(sql, Integer.class, query.getParameters().toArray());
+	}
+
+	private List<Integer> ids(Filter... filters) {
+		return ids(translator.translate(request(filters)));
+	}
+
+	@Test
+	public void testEmptyRequest() {
+		SqlQuery query = translator.translate(new ExtDirectStoreReadRequest());
+		assertThat(query.getSql()).isEmpty();
+		assertThat(query.getParameters()).isEmpty();
+		assertThat(ids(query)).containsExactly(1, 2, 3, 4, 5);
+	}
+
+	@Test
+	public void testStringFilter() {
+		assertThat(ids(new StringFilter("name", "BETA"))).containsExactly(2, 5);
+		assertThat(ids(new StringFilter("name", "a_"))).containsExactly(2);
+		assertThat(ids(new StringFilter("name", "%"))).isEmpty();
+		assertThat(ids(new StringFilter("name", null))).containsExactly(4);
+	}
+
+	@Test
+	public void testNumericFilter() {
+		assertThat(ids(new NumericFilter("price", 2, Comparison.GREATER_THAN_OR_EQUAL))).containsExactly(2, 4, 5);
+		assertThat(ids(new NumericFilter("price", 2, Comparison.NOT_EQUAL))).containsExactly(1, 3, 4, 5);
+		assertThat(ids(new NumericFilter("id", 3, null))).containsExactly(3);
+		assertThat(ids(new NumericFilter("price", null, Comparison.EQUAL))).containsExactly(3);
+	}
+
+	@Test
+	public void testDateFilter() {
+		assertThat(ids(new DateFilter("created", "01.03.2013", Comparison.EQUAL))).containsExactly(1, 2);
+		assertThat(ids(new DateFilter("created", "01.03.2013", Comparison.GREATER_THAN))).containsExactly(3, 5);
+		assertThat(ids(new DateFilter("created", "02.03.2013", Comparison.LESS_THAN_OR_EQUAL))).containsExactly(1,
+				2, 3);
+		assertThat(ids(new DateFilter("created", "01.03.2013", Comparison.NOT_EQUAL))).containsExactly(3, 4, 5);
+	}
+
+	@Test
+	public void testListAndBooleanFilter() {
+		assertThat(ids(new ListFilter("category", Arrays.asList("a", "c", "x")))).containsExactly(1, 3, 4);
+		assertThat(ids(new ListFilter("category", Collections.<String> emptyList()))).isEmpty();
+		assertThat(ids(new BooleanFilter("visible", false))).containsExactly(2, 5);
+		assertThat(ids(new BooleanFilter("visible", true), new NumericFilter("id", 3, Comparison.LESS_THAN)))
+				.containsExactly(1);
+	}
+
+	@Test
+	public void testListParametersArePadded() {
+		SqlQuery query = translator.translate(request(new ListFilter("category", Arrays.asList("a", "b", "c"))));
+		assertThat(query.getWhere()).isEqualTo("WHERE category IN (?, ?, ?, ?)");
+		assertThat(query.getWhereParameters()).containsExactly("a", "b", "c", "c");
+	}
+
+	@Test
+	public void testSortAndPaging() {
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setGroups(Collections.singletonList(new GroupInfo("category", SortDirection.DESCENDING)));
+		request.setSorters(Collections.singletonList(new SortInfo("id", SortDirection.ASCENDING)));
+		request.setStart(1);
+		request.setLimit(3);
+
+		SqlQuery query = translator.translate(request);
+		assertThat(query.getSql()).isEqualTo("ORDER BY category DESC, id ASC LIMIT ? OFFSET ?");
+		assertThat(query.getLimitParameters()).containsExactly(3, 1);
+		assertThat(ids(query)).containsExactly(2, 5, 1);
+	}
+
+	@Test
+	public void testStartWithoutLimit() {
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setSorters(Collections.singletonList(new SortInfo("id", SortDirection.ASCENDING)));
+		request.setStart(3);
+
+		SqlQuery query = translator.translate(request);
+		assertThat(query.getSql()).isEqualTo("ORDER BY id ASC LIMIT ? OFFSET ?");
+		assertThat(query.getLimitParameters()).containsExactly(Integer.MAX_VALUE, 3);
+		assertThat(ids(query)).containsExactly(4, 5);
+	}
+
+	@Test
+	public void testPageWithoutStart() {
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setPage(2);
+		request.setLimit(2);
+
+		SqlQuery query = translator.translate(request);
+		assertThat(query.getSql()).isEqualTo("LIMIT ? OFFSET ?");
+		assertThat(query.getLimitParameters()).containsExactly(2, 2);
+		assertThat(ids(query)).containsExactly(3, 4);
+	}
+
+	@Test
+	public void testSameShapeSameSql() {
+		SqlQuery query1 = translator.translate(request(new StringFilter("name", "a"), new NumericFilter("id", 1,
+				Comparison.GREATER_THAN)));
+		SqlQuery query2 = translator.translate(request(new StringFilter("name", "xyz"), new NumericFilter("id", 4,
+				Comparison.GREATER_THAN)));
+		assertThat(query1.getSql()).isEqualTo("WHERE LOWER(item_name) LIKE ? ESCAPE '!' AND id > ?");
+		assertThat(query2.getSql()).isSameAs(query1.getSql());
+		assertThat(query1.getParameters()).containsExactly("%a%", 1);
+		assertThat(query2.getParameters()).containsExactly("%xyz%", 4);
+		assertThat(translator.getCachedShapeCount()).isEqualTo(1);
+
+		SqlQuery query3 = translator.translate(request(new NumericFilter("id", 1, Comparison.LESS_THAN)));
+		assertThat(query3.getSql()).isEqualTo("WHERE id < ?");
+		assertThat(translator.getCachedShapeCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+		for (int i = 0; i < 10; i++) {
+			String[] values = new String[1 << i];
+			Arrays.fill(values, "a");
+			translator.translate(request(new ListFilter("category", Arrays.asList(values))));
+		}
+		assertThat(translator.getCachedShapeCount()).isEqualTo(4);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnmappedFilterField() {
+		translator.translate(request(new StringFilter("password", "a")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnmappedSortField() {
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setSorters(Collections.singletonList(new SortInfo("id; DROP TABLE item", SortDirection.ASCENDING)));
+		translator.translate(request);
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.filter;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreResult;
+import ch.ralscha.extdirectspring.bean.GroupInfo;
+import ch.ralscha.extdirectspring.bean.SortDirection;
+import ch.ralscha.extdirectspring.bean.SortInfo;
+
+public class StoreQueryTest {
+
+	public static class Item {
+		private final int id;
+
+		private final String category;
+
+		private final Integer rank;
+
+		Item(int id, String category, Integer rank) {
+			this.id = id;
+			this.category = category;
+			this.rank = rank;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getCategory() {
+			return category;
+		}
+
+		public Integer getRank() {
+			return rank;
+		}
+	}
+
+	private static List<Item> items(int count) {
+		Random random = new Random(42);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 0; i < count; i++) {
+			Integer rank = random.nextInt(10) == 0 ? null : Integer.valueOf(random.nextInt(50));
+			items.add(new Item(i, "c" + random.nextInt(5), rank));
+		}
+		return items;
+	}
+
+	private static List<Integer> ids(ExtDirectStoreResult<Item> result) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Item item : result.getRecords()) {
+			ids.add(item.getId());
+		}
+		return ids;
+	}
+
+	private static ExtDirectStoreReadRequest request(Integer start, Integer limit, SortInfo... sorters) {
+		ExtDirectStoreReadRequest request = new ExtDirectStoreReadRequest();
+		request.setStart(start);
+		request.setLimit(limit);
+		request.setSorters(Arrays.asList(sorters));
+		return request;
+	}
+
+	@Test
+	public void testNoSortNoPaging() {
+		List<Item> items = items(20);
+		ExtDirectStoreResult<Item> result = StoreQuery.execute(Item.class, items, new ExtDirectStoreReadRequest());
+		assertThat(result.getTotal()).isEqualTo(20L);
+		assertThat(result.getRecords()).hasSize(20);
+		assertThat(ids(result).get(0)).isEqualTo(0);
+		assertThat(items).hasSize(20);
+	}
+
+	@Test
+	public void testPagingWithoutSort() {
+		ExtDirectStoreResult<Item> result = StoreQuery.execute(Item.class, items(20), request(5, 3));
+		assertThat(result.getTotal()).isEqualTo(20L);
+		assertThat(ids(result)).containsExactly(5, 6, 7);
+
+		result = StoreQuery.execute(Item.class, items(20), request(18, 5));
+		assertThat(ids(result)).containsExactly(18, 19);
+
+		result = StoreQuery.execute(Item.class, items(20), request(25, 5));
+		assertThat(result.getTotal()).isEqualTo(20L);
+		assertThat(result.getRecords()).isEmpty();
+	}
+
+	@Test
+	public void testPageWithoutStart() {
+		ExtDirectStoreReadRequest request = request(null, 3);
+		request.setPage(3);
+		ExtDirectStoreResult<Item> result = StoreQuery.execute(Item.class, items(20), request);
+		assertThat(result.getTotal()).isEqualTo(20L);
+		assertThat(ids(result)).containsExactly(6, 7, 8);
+
+		// start wins over page
+		request.setStart(1);
+		result = StoreQuery.execute(Item.class, items(20), request);
+		assertThat(ids(result)).containsExactly(1, 2, 3);
+	}
+
+	@Test
+	public void testStartWithoutLimit() {
+		ExtDirectStoreResult<Item> result = StoreQuery.execute(Item.class, items(20), request(17, null));
+		assertThat(result.getTotal()).isEqualTo(20L);
+		assertThat(ids(result)).containsExactly(17, 18, 19);
+	}
+
+	@Test
+	public void testTopKMatchesStableSort() {
+		List<Item> items = items(2000);
+		SortInfo[] sorters = { new SortInfo("rank", SortDirection.DESCENDING),
+				new SortInfo("category", SortDirection.ASCENDING) };
+
+		List<Item> expected = new ArrayList<Item>(items);
+		Collections.sort(expected, StoreQuery.comparator(Item.class, null, Arrays.asList(sorters)));
+
+		for (int start : new int[] { 0, 1, 49, 500, 1990 }) {
+			for (int limit : new int[] { 1, 10, 50 }) {
+				ExtDirectStoreResult<Item> result = StoreQuery.execute(Item.class, items,
+						request(start, limit, sorters));
+				assertThat(result.getTotal()).isEqualTo(2000L);
+				int end = Math.min(start + limit, expected.size());
+				assertThat(result.getRecords()).isEqualTo(expected.subList(start, end));
+			}
+		}
+	}
+
+	@Test
+	public void testNullsFirst() {
+		List<Item> items = Arrays.asList(new Item(1, "a", 3), new Item(2, "b", null), new Item(3, "c", 1));
+		SortInfo ascending = new SortInfo("rank", SortDirection.ASCENDING);
+		assertThat(ids(StoreQuery.execute(Item.class, items, request(0, 2, ascending)))).containsExactly(2, 3);
+		SortInfo descending = new SortInfo("rank", SortDirection.DESCENDING);
+		assertThat(ids(StoreQuery.execute(Item.class, items, request(0, 2, descending)))).containsExactly(1, 3);
+	}
+
+	@Test
+	public void testGroupsAndFilters() {
+		List<Item> items = Arrays.asList(new Item(1, "b", 3), new Item(2, "a", 5), new Item(3, "b", 1),
+				new Item(4, "a", 2), new Item(5, "c", 9));
+		ExtDirectStoreReadRequest request = request(0, 3, new SortInfo("rank", SortDirection.ASCENDING));
+		request.setGroups(Collections.singletonList(new GroupInfo("category", SortDirection.DESCENDING)));
+		request.setFilters(Collections.<Filter> singletonList(new NumericFilter("rank", 9, Comparison.LESS_THAN)));
+
+		ExtDirectStoreResult<Item> result = StoreQuery.execute(Item.class, items, request);
+		assertThat(result.getTotal()).isEqualTo(4L);
+		assertThat(ids(result)).containsExactly(3, 1, 4);
+	}
+
+	@Test
+	public void testComparatorCache() {
+		List<SortInfo> sorters = Collections.singletonList(new SortInfo("rank", SortDirection.ASCENDING));
+		Comparator<Item> comparator = StoreQuery.comparator(Item.class, null, sorters);
+		assertThat(StoreQuery.comparator(Item.class, null,
+				Collections.singletonList(new SortInfo("rank", SortDirection.ASCENDING)))).isSameAs(comparator);
+		assertThat(StoreQuery.comparator(Item.class, null,
+				Collections.singletonList(new SortInfo("rank", SortDirection.DESCENDING)))).isNotSameAs(comparator);
+		assertThat(StoreQuery.comparator(Item.class, null, null)).isNull();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownSortProperty() {
+		StoreQuery.execute(Item.class, items(5), request(0, 2, new SortInfo("unknown", SortDirection.ASCENDING)));
+	}
+
+}
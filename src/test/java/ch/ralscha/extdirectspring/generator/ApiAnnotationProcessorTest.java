@@ -0,0 +1,157 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.generator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import ch.ralscha.extdirectspring.provider.FormInfoController2;
+import ch.ralscha.extdirectspring.provider.PollProvider;
+import ch.ralscha.extdirectspring.provider.RemoteProviderSimpleNamed;
+
+public class ApiAnnotationProcessorTest {
+
+	private File outputDir;
+
+	@Before
+	public void createOutputDir() throws IOException {
+		outputDir = File.createTempFile("apiprocessor", "");
+		outputDir.delete();
+		outputDir.mkdirs();
+	}
+
+	@After
+	public void deleteOutputDir() {
+		FileSystemUtils.deleteRecursively(outputDir);
+	}
+
+	@Test
+	public void testDefaultOptions() throws IOException {
+		compile();
+
+		File[] files = outputDir.listFiles();
+		assertThat(files).hasSize(2);
+
+		String api = readFile(".js");
+		assertThat(api).startsWith("Ext.ns('Ext.app');Ext.app.REMOTING_API = {\"url\":\"/router\",\"type\":\"remoting\"");
+		assertThat(api).contains("\"remoteProviderSimpleNamed\":[");
+		assertThat(api).contains("{\"name\":\"method2\",\"params\":[\"i\",\"d\",\"s\"]}");
+		assertThat(api).contains("\"formInfoController2\":[");
+		assertThat(api).contains("{\"name\":\"updateInfo1\",\"len\":0,\"formHandler\":true}");
+		assertThat(api).contains("Ext.app.POLLING_URLS = {");
+		assertThat(api).contains("\"message1\" : \"/poll/pollProvider/handleMessage1/message1\"");
+
+		File apiFile = findFile(".js");
+		assertThat(apiFile.getName()).isEqualTo(
+				"api-" + DigestUtils.md5DigestAsHex(FileCopyUtils.copyToByteArray(apiFile)) + ".js");
+
+		String descriptor = readFile(".json");
+		assertThat(descriptor).startsWith("{\"descriptor\":\"Ext.app.REMOTING_API\",\"url\":\"/router\"");
+		assertThat(findFile(".json").getName()).isEqualTo(apiFile.getName().replace(".js", ".json"));
+	}
+
+	@Test
+	public void testOptions() throws IOException {
+		compile("-AapiNs=test", "-AactionNs=actionns", "-AremotingApiVar=TEST_REMOTING_API",
+				"-ApollingUrlsVar=TEST_POLLING_URLS", "-Agroup=group2", "-AbaseUrl=/ctx", "-Atimeout=12000",
+				"-Adebug=true", "-AoutputPath=META-INF/resources/");
+
+		File resourcesDir = new File(outputDir, "META-INF/resources");
+		assertThat(resourcesDir.listFiles()).hasSize(2);
+
+		String api = readFile(resourcesDir, ".js");
+		assertThat(api).startsWith("Ext.ns('test');\n\nExt.ns('actionns');\n\ntest.TEST_REMOTING_API = {");
+		assertThat(api).contains("\"url\" : \"/ctx/router\"");
+		assertThat(api).contains("\"timeout\" : 12000");
+		assertThat(api).doesNotContain("remoteProviderSimpleNamed");
+		assertThat(api).doesNotContain("formInfoController2");
+		assertThat(api).contains("test.TEST_POLLING_URLS = {\n");
+		assertThat(api).contains("\"message1\" : \"/ctx/poll/pollProvider/handleMessage1/message1\"");
+		assertThat(api).doesNotContain("message3");
+
+		assertThat(readFile(resourcesDir, ".json")).contains("\"descriptor\" : \"test.TEST_REMOTING_API\"");
+	}
+
+	@Test
+	public void testBeanName() {
+		assertThat(ApiAnnotationProcessor.getBeanName(PollProvider.class)).isEqualTo("pollProvider");
+		assertThat(ApiAnnotationProcessor.getBeanName(FormInfoController2.class)).isEqualTo("formInfoController2");
+		assertThat(ApiAnnotationProcessor.getBeanName(RemoteProviderSimpleNamed.class)).isEqualTo(
+				"remoteProviderSimpleNamed");
+	}
+
+	private void compile(String... options) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+
+		Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjects(
+				source(RemoteProviderSimpleNamed.class), source(PollProvider.class),
+				source(FormInfoController2.class));
+
+		List<String> compilerOptions = new ArrayList<String>();
+		compilerOptions.addAll(Arrays.asList("-proc:only", "-d", outputDir.getPath(), "-classpath",
+				System.getProperty("java.class.path")));
+		compilerOptions.addAll(Arrays.asList(options));
+
+		JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, compilerOptions, null, sources);
+		task.setProcessors(Arrays.asList(new ApiAnnotationProcessor()));
+		assertThat(task.call()).isTrue();
+		fileManager.close();
+	}
+
+	private static File source(Class<?> clazz) {
+		return new File("src/test/java/" + clazz.getName().replace('.', '/') + ".java");
+	}
+
+	private File findFile(String suffix) {
+		return findFile(outputDir, suffix);
+	}
+
+	private static File findFile(File dir, String suffix) {
+		for (File file : dir.listFiles()) {
+			if (file.getName().endsWith(suffix)) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	private String readFile(String suffix) throws IOException {
+		return readFile(outputDir, suffix);
+	}
+
+	private static String readFile(File dir, String suffix) throws IOException {
+		return new String(FileCopyUtils.copyToByteArray(findFile(dir, suffix)), "UTF-8");
+	}
+
+}
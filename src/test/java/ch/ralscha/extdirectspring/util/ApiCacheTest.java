@@ -16,8 +16,19 @@
 package ch.ralscha.extdirectspring.util;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import nl.jqno.equalsverifier.EqualsVerifier;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 
 public class ApiCacheTest {
@@ -130,4 +141,153 @@ public class ApiCacheTest {
 		assertThat(ApiCache.INSTANCE.get(keyTwo)).isEqualTo("2");
 	}
 
+	private static ApiCacheKey key(String group) {
+		return new ApiCacheKey("api", "action", "remoting", "polling", "sse", group, "/router", false);
+	}
+
+	private static CacheableContent content(String data) {
+		return new CacheableContent(data.getBytes(ExtDirectSpringUtil.UTF8_CHARSET));
+	}
+
+	@Test
+	public void testLruEviction() {
+		ApiCache.INSTANCE.clear();
+		ApiCache.INSTANCE.setMaximumSize(2);
+
+		ApiCache.INSTANCE.put(key("1"), "1");
+		ApiCache.INSTANCE.put(key("2"), "2");
+		assertThat(ApiCache.INSTANCE.get(key("1"))).isEqualTo("1");
+		ApiCache.INSTANCE.put(key("3"), "3");
+
+		assertThat(ApiCache.INSTANCE.size()).isEqualTo(2);
+		assertThat(ApiCache.INSTANCE.getEvictionCount()).isEqualTo(1);
+		assertThat(ApiCache.INSTANCE.get(key("2"))).isNull();
+		assertThat(ApiCache.INSTANCE.get(key("1"))).isEqualTo("1");
+		assertThat(ApiCache.INSTANCE.get(key("3"))).isEqualTo("3");
+		assertThat(ApiCache.INSTANCE.getHitCount()).isEqualTo(3);
+		assertThat(ApiCache.INSTANCE.getMissCount()).isEqualTo(1);
+
+		ApiCache.INSTANCE.setMaximumSize(1);
+		assertThat(ApiCache.INSTANCE.size()).isEqualTo(1);
+		assertThat(ApiCache.INSTANCE.get(key("3"))).isEqualTo("3");
+		assertThat(ApiCache.INSTANCE.getEvictionCount()).isEqualTo(2);
+
+		ApiCache.INSTANCE.clear();
+		assertThat(ApiCache.INSTANCE.size()).isEqualTo(0);
+		assertThat(ApiCache.INSTANCE.getMaximumSize()).isEqualTo(ApiCache.DEFAULT_MAXIMUM_SIZE);
+		assertThat(ApiCache.INSTANCE.getHitCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void testLoader() {
+		ApiCache.INSTANCE.clear();
+		final AtomicInteger calls = new AtomicInteger();
+		Callable<CacheableContent> loader = new Callable<CacheableContent>() {
+			@Override
+			public CacheableContent call() {
+				calls.incrementAndGet();
+				return content("loaded");
+			}
+		};
+
+		CacheableContent first = ApiCache.INSTANCE.getContent(key("1"), loader);
+		assertThat(ApiCache.INSTANCE.getContent(key("1"), loader)).isSameAs(first);
+		assertThat(calls.get()).isEqualTo(1);
+		assertThat(ApiCache.INSTANCE.getLoadCount()).isEqualTo(1);
+		assertThat(ApiCache.INSTANCE.getMissCount()).isEqualTo(1);
+		assertThat(ApiCache.INSTANCE.getHitCount()).isEqualTo(1);
+
+		ApiCache.INSTANCE.invalidateAll();
+		assertThat(ApiCache.INSTANCE.getContent(key("1"))).isNull();
+		ApiCache.INSTANCE.clear();
+	}
+
+	@Test
+	public void testLoaderException() {
+		ApiCache.INSTANCE.clear();
+		try {
+			ApiCache.INSTANCE.getContent(key("1"), new Callable<CacheableContent>() {
+				@Override
+				public CacheableContent call() {
+					throw new IllegalArgumentException("failed");
+				}
+			});
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage()).isEqualTo("failed");
+		}
+		assertThat(ApiCache.INSTANCE.getContent(key("1"))).isNull();
+		assertThat(ApiCache.INSTANCE.getContent(key("1"), new Callable<CacheableContent>() {
+			@Override
+			public CacheableContent call() {
+				return content("second");
+			}
+		})).isNotNull();
+		ApiCache.INSTANCE.clear();
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		ApiCache.INSTANCE.clear();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch loaderStarted = new CountDownLatch(1);
+		final CountDownLatch releaseLoader = new CountDownLatch(1);
+		final Callable<CacheableContent> loader = new Callable<CacheableContent>() {
+			@Override
+			public CacheableContent call() throws Exception {
+				calls.incrementAndGet();
+				loaderStarted.countDown();
+				releaseLoader.await();
+				return content("single");
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<CacheableContent>> futures = new ArrayList<Future<CacheableContent>>();
+			futures.add(executor.submit(new Callable<CacheableContent>() {
+				@Override
+				public CacheableContent call() {
+					return ApiCache.INSTANCE.getContent(key("1"), loader);
+				}
+			}));
+			assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+			for (int i = 0; i < 4; i++) {
+				futures.add(executor.submit(new Callable<CacheableContent>() {
+					@Override
+					public CacheableContent call() {
+						return ApiCache.INSTANCE.getContent(key("1"), loader);
+					}
+				}));
+			}
+			Thread.sleep(100);
+			releaseLoader.countDown();
+
+			CacheableContent result = futures.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<CacheableContent> future : futures) {
+				assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(result);
+			}
+			assertThat(calls.get()).isEqualTo(1);
+			assertThat(ApiCache.INSTANCE.getLoadCount()).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+			ApiCache.INSTANCE.clear();
+		}
+	}
+
+	@Test
+	public void testInvalidateWhileLoading() {
+		ApiCache.INSTANCE.clear();
+		CacheableContent result = ApiCache.INSTANCE.getContent(key("1"), new Callable<CacheableContent>() {
+			@Override
+			public CacheableContent call() {
+				ApiCache.INSTANCE.invalidateAll();
+				return content("stale");
+			}
+		});
+		assertThat(result).isNotNull();
+		assertThat(ApiCache.INSTANCE.getContent(key("1"))).isNull();
+		ApiCache.INSTANCE.clear();
+	}
+
 }
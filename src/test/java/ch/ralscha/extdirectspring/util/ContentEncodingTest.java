@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.FileCopyUtils;
+
+public class ContentEncodingTest {
+
+	@Test
+	public void testNegotiate() {
+		assertThat(ContentEncoding.negotiate(null)).isNull();
+		assertThat(ContentEncoding.negotiate("")).isNull();
+		assertThat(ContentEncoding.negotiate("identity")).isNull();
+		assertThat(ContentEncoding.negotiate("gzip")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("x-gzip")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("GZIP")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("deflate")).isEqualTo(ContentEncoding.DEFLATE);
+		assertThat(ContentEncoding.negotiate("gzip, deflate, sdch")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("deflate, gzip")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("gzip;q=0.5, deflate")).isEqualTo(ContentEncoding.DEFLATE);
+		assertThat(ContentEncoding.negotiate("gzip;q=0, deflate;q=0")).isNull();
+		assertThat(ContentEncoding.negotiate("gzip;q=0")).isNull();
+		assertThat(ContentEncoding.negotiate("*")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("*;q=0.5, gzip;q=0")).isEqualTo(ContentEncoding.DEFLATE);
+		assertThat(ContentEncoding.negotiate("gzip;q=abc, deflate")).isEqualTo(ContentEncoding.DEFLATE);
+	}
+
+	@Test
+	public void testEncode() throws IOException {
+		byte[] data = createData();
+
+		byte[] gzip = ContentEncoding.GZIP.encode(data, Deflater.DEFAULT_COMPRESSION);
+		assertThat(gzip.length).isLessThan(data.length);
+		assertThat(decode(new GZIPInputStream(new ByteArrayInputStream(gzip)))).isEqualTo(data);
+
+		byte[] deflate = ContentEncoding.DEFLATE.encode(data, Deflater.BEST_SPEED);
+		assertThat(deflate.length).isLessThan(data.length);
+		assertThat(decode(new InflaterInputStream(new ByteArrayInputStream(deflate)))).isEqualTo(data);
+	}
+
+	@Test
+	public void testCacheableContent() throws IOException {
+		CacheableContent content = new CacheableContent(createData());
+		assertThat(content.getEtag()).startsWith("\"0").endsWith("\"");
+		assertThat(content.getEtag(null)).isEqualTo(content.getEtag());
+		assertThat(content.getEtag(ContentEncoding.GZIP)).isEqualTo(
+				content.getEtag().substring(0, content.getEtag().length() - 1) + "-gzip\"");
+
+		byte[] gzip = content.getEncodedData(ContentEncoding.GZIP, 6);
+		assertThat(content.getEncodedData(ContentEncoding.GZIP, 6)).isSameAs(gzip);
+		assertThat(content.getEncodedData(ContentEncoding.GZIP, 1)).isNotSameAs(gzip);
+		assertThat(decode(new GZIPInputStream(new ByteArrayInputStream(gzip)))).isEqualTo(content.getData());
+	}
+
+	@Test
+	public void testThresholdCompressingOutputStreamBelowThreshold() throws IOException {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ThresholdCompressingOutputStream out = new ThresholdCompressingOutputStream(response, ContentEncoding.GZIP,
+				100, Deflater.DEFAULT_COMPRESSION);
+		out.write(new byte[] { 1, 2, 3 });
+		assertThat(response.getContentAsByteArray()).isEmpty();
+		out.close();
+		out.close();
+
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getContentLength()).isEqualTo(3);
+		assertThat(response.getContentAsByteArray()).isEqualTo(new byte[] { 1, 2, 3 });
+	}
+
+	@Test
+	public void testThresholdCompressingOutputStreamFlush() throws IOException {
+		byte[] data = createData();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ThresholdCompressingOutputStream out = new ThresholdCompressingOutputStream(response, ContentEncoding.GZIP,
+				100, Deflater.DEFAULT_COMPRESSION);
+		out.write(data, 0, 10);
+		out.flush();
+		assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOf(data, 10));
+
+		out.write(data, 10, data.length - 10);
+		out.close();
+
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getContentAsByteArray()).isEqualTo(data);
+	}
+
+	@Test
+	public void testThresholdCompressingOutputStreamAboveThreshold() throws IOException {
+		byte[] data = createData();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ThresholdCompressingOutputStream out = new ThresholdCompressingOutputStream(response,
+				ContentEncoding.DEFLATE, 100, Deflater.DEFAULT_COMPRESSION);
+		out.write(data, 0, 50);
+		out.write(data[50]);
+		out.write(data, 51, data.length - 51);
+		out.close();
+
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("deflate");
+		assertThat(decode(new InflaterInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))))
+				.isEqualTo(data);
+	}
+
+	private static byte[] createData() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("{\"id\":").append(i).append(",\"name\":\"name").append(i).append("\"}");
+		}
+		return sb.toString().getBytes(ExtDirectSpringUtil.UTF8_CHARSET);
+	}
+
+	private static byte[] decode(InputStream in) throws IOException {
+		return FileCopyUtils.copyToByteArray(in);
+	}
+
+}
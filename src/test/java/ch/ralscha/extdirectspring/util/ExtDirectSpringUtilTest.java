@@ -169,4 +169,76 @@ public class ExtDirectSpringUtilTest {
 		assertThat(response.getContentType()).isEqualTo(contentType);
 		assertThat(response.getContentAsByteArray()).isEqualTo(data);
 	}
+
+	@Test
+	public void testIsNotModified() {
+		String etag = "\"0abc\"";
+		long lastModified = 1380000000000L;
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified)).isFalse();
+
+		request.addHeader("If-None-Match", "\"0xyz\", W/\"0abc\"");
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified)).isTrue();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", "*");
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified)).isTrue();
+
+		// If-None-Match takes precedence over If-Modified-Since
+		request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", "\"0xyz\"");
+		request.addHeader("If-Modified-Since", lastModified);
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified)).isFalse();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-Modified-Since", lastModified);
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified)).isTrue();
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified + 500)).isTrue();
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified + 1000)).isFalse();
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, -1)).isFalse();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-Modified-Since", "not a date");
+		assertThat(ExtDirectSpringUtil.isNotModified(request, etag, lastModified)).isFalse();
+	}
+
+	@Test
+	public void testHandleRevalidatedResponse() throws IOException {
+		byte[] data = "the response data".getBytes();
+		String etag = "\"0" + DigestUtils.md5DigestAsHex(data) + '"';
+		long lastModified = 1380000000000L;
+		CacheableContent content = new CacheableContent(data, lastModified);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ExtDirectSpringUtil.handleRevalidatedResponse(request, response, content, null);
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+		assertThat(response.getHeaderValue("Last-Modified")).isEqualTo(lastModified);
+		assertThat(response.getHeader("Cache-Control")).isEqualTo("no-cache");
+		assertThat(response.getHeader("Expires")).isNull();
+		assertThat(response.getContentAsByteArray()).isEqualTo(data);
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		ExtDirectSpringUtil.handleRevalidatedResponse(request, response, content, null);
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-Modified-Since", lastModified);
+		response = new MockHttpServletResponse();
+		ExtDirectSpringUtil.handleRevalidatedResponse(request, response, content, null);
+		assertThat(response.getStatus()).isEqualTo(304);
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-Modified-Since", lastModified - 1000);
+		response = new MockHttpServletResponse();
+		ExtDirectSpringUtil.handleRevalidatedResponse(request, response, content, null);
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsByteArray()).isEqualTo(data);
+	}
 }
@@ -19,6 +19,7 @@ import static org.fest.assertions.api.Assertions.assertThat;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -37,6 +38,7 @@ import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "classpath:/testApplicationContext.xml")
@@ -48,6 +50,18 @@ public class JsonHandlerTest {
 		jsonHandler.setMapper(null);
 	}
 
+	@Test
+	public void testGetWriterWithView() {
+		JsonHandler jsonHandler = new JsonHandler();
+		ObjectWriter writer = jsonHandler.getWriterWithView(JsonTestBean.class);
+		assertThat(writer).isNotNull();
+		assertThat(jsonHandler.getWriterWithView(JsonTestBean.class)).isSameAs(writer);
+		assertThat(jsonHandler.getWriterWithView(String.class)).isNotSameAs(writer);
+
+		jsonHandler.setMapper(new ObjectMapper());
+		assertThat(jsonHandler.getWriterWithView(JsonTestBean.class)).isNotSameAs(writer);
+	}
+
 	@Test
 	public void testserializeObject() {
 		JsonHandler jsonHandler = new JsonHandler();
@@ -215,4 +229,56 @@ public class JsonHandlerTest {
 		}
 	}
 
+	@Test
+	public void testReadDirectRequests() throws IOException {
+		JsonHandler jsonHandler = new JsonHandler();
+
+		String json = "{\"action\":\"remoteProvider\",\"method\":\"method1\",\"data\":[1,\"two\",{\"three\":3}],\"type\":\"rpc\",\"tid\":7}";
+		List<ExtDirectRequest> requests = jsonHandler.readDirectRequests(new ByteArrayInputStream(json
+				.getBytes(ExtDirectSpringUtil.UTF8_CHARSET)));
+		assertThat(requests).hasSize(1);
+		ExtDirectRequest req = requests.get(0);
+		assertEquals("remoteProvider", req.getAction());
+		assertEquals("method1", req.getMethod());
+		assertEquals("rpc", req.getType());
+		assertEquals(7, req.getTid());
+		assertThat(req.getDataBuffer()).isNotNull();
+
+		List<Object> data = (List<Object>) req.getData();
+		assertThat(data).hasSize(3);
+		assertEquals(1, data.get(0));
+		assertEquals("two", data.get(1));
+		assertEquals(3, ((Map<String, Object>) data.get(2)).get("three"));
+		assertThat(req.getData()).isSameAs(data);
+
+		json = "[{\"action\":\"a1\",\"method\":\"m1\",\"data\":null,\"type\":\"rpc\",\"tid\":1,\"unknown\":{\"x\":[1]}},"
+				+ "{\"tid\":\"2\",\"data\":{\"name\":\"ralph\"},\"action\":\"a2\",\"method\":\"m2\",\"type\":\"rpc\"}]";
+		requests = jsonHandler.readDirectRequests(new ByteArrayInputStream(json.getBytes(ExtDirectSpringUtil.UTF8_CHARSET)));
+		assertThat(requests).hasSize(2);
+		assertEquals("a1", requests.get(0).getAction());
+		assertEquals("m1", requests.get(0).getMethod());
+		assertEquals(1, requests.get(0).getTid());
+		assertThat(requests.get(0).getDataBuffer()).isNull();
+		assertThat(requests.get(0).getData()).isNull();
+
+		assertEquals("a2", requests.get(1).getAction());
+		assertEquals("m2", requests.get(1).getMethod());
+		assertEquals(2, requests.get(1).getTid());
+		assertEquals("ralph", ((Map<String, Object>) requests.get(1).getData()).get("name"));
+
+		// elements that are not objects are not dropped
+		json = "[{\"action\":\"a1\",\"method\":\"m1\",\"type\":\"rpc\",\"tid\":1},[1,2],"
+				+ "{\"action\":\"a3\",\"method\":\"m3\",\"type\":\"rpc\",\"tid\":3}]";
+		requests = jsonHandler.readDirectRequests(new ByteArrayInputStream(json.getBytes(ExtDirectSpringUtil.UTF8_CHARSET)));
+		assertThat(requests).hasSize(3);
+		assertEquals("a1", requests.get(0).getAction());
+		assertThat(requests.get(1).getAction()).isNull();
+		assertThat(requests.get(1).getMethod()).isNull();
+		assertEquals("a3", requests.get(2).getAction());
+
+		assertThat(jsonHandler.readDirectRequests(new ByteArrayInputStream(new byte[0]))).isEmpty();
+		assertThat(jsonHandler.readDirectRequests(new ByteArrayInputStream("xy".getBytes()))).isEmpty();
+		assertThat(jsonHandler.readDirectRequests(new ByteArrayInputStream("1".getBytes()))).isEmpty();
+	}
+
 }
@@ -19,12 +19,19 @@ import static org.fest.assertions.api.Assertions.assertThat;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import nl.jqno.equalsverifier.EqualsVerifier;
 
 import org.junit.Test;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
 
@@ -47,6 +54,22 @@ public class MethodInfoCacheTest {
 		assertThat(MethodInfoCache.INSTANCE.get("methodCacheTest", "testPutAndGet").getMethod()).isEqualTo(thisMethod);
 	}
 
+	@Test
+	@ExtDirectMethod
+	public void testLastModified() throws SecurityException, NoSuchMethodException {
+		long lastModified = MethodInfoCache.INSTANCE.getLastModified();
+		assertThat(lastModified % 1000).isEqualTo(0);
+
+		Method thisMethod = getClass().getMethod("testLastModified", (Class<?>[]) null);
+		MethodInfoCache.INSTANCE.put("methodCacheTest", getClass(), thisMethod, null);
+		long afterPut = MethodInfoCache.INSTANCE.getLastModified();
+		assertThat(afterPut).isGreaterThan(lastModified);
+		assertThat(afterPut % 1000).isEqualTo(0);
+
+		MethodInfoCache.INSTANCE.clear();
+		assertThat(MethodInfoCache.INSTANCE.getLastModified()).isGreaterThan(afterPut);
+	}
+
 	@Test
 	public void testKey() {
 		MethodInfoCache.Key key1 = new MethodInfoCache.Key("bean", "method");
@@ -126,4 +149,196 @@ public class MethodInfoCacheTest {
 		context.close();
 	}
 
+	@Test
+	public void testBeanResolution() {
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("/testApplicationContextB.xml");
+
+		MethodInfo info = MethodInfoCache.INSTANCE.get("springManagedBean", "sum");
+		Object bean = info.getBean(context, "springManagedBean");
+		assertThat(bean).isSameAs(context.getBean("springManagedBean"));
+		assertThat(info.getBean(context, "springManagedBean")).isSameAs(bean);
+
+		MethodInfo prototypeInfo = MethodInfoCache.INSTANCE.get("springManagedPrototypeBean", "sum");
+		Object prototypeBean = prototypeInfo.getBean(context, "springManagedPrototypeBean");
+		assertThat(prototypeBean).isInstanceOf(SpringManagedBean.class);
+		assertThat(prototypeInfo.getBean(context, "springManagedPrototypeBean")).isNotSameAs(prototypeBean);
+
+		ClassPathXmlApplicationContext otherContext = new ClassPathXmlApplicationContext(
+				"/testApplicationContextB.xml");
+		assertThat(info.getBean(otherContext, "springManagedBean")).isSameAs(otherContext.getBean("springManagedBean"));
+
+		otherContext.close();
+		context.close();
+	}
+
+	@Test
+	public void testReleaseBean() {
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("/testApplicationContextB.xml");
+
+		MethodInfo info = MethodInfoCache.INSTANCE.get("springManagedBean", "sum");
+		assertThat(info.getBean(context, "springManagedBean")).isSameAs(context.getBean("springManagedBean"));
+		assertThat(ReflectionTestUtils.getField(info, "resolvedBean")).isNotNull();
+
+		info.releaseBean(new StaticApplicationContext());
+		assertThat(ReflectionTestUtils.getField(info, "resolvedBean")).isNotNull();
+
+		// closing the context releases the bean
+		context.close();
+		assertThat(ReflectionTestUtils.getField(info, "resolvedBean")).isNull();
+	}
+
+	@Test
+	@ExtDirectMethod
+	public void testPutAllConcurrently() throws Exception {
+		final Method thisMethod = getClass().getMethod("testPutAllConcurrently", (Class<?>[]) null);
+		final MethodInfo info = new MethodInfo(getClass(), null, "concurrentBean", thisMethod);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 10; i++) {
+			final int threadNo = i;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 50; j++) {
+						Map<MethodInfoCache.Key, MethodInfo> methodInfos = new LinkedHashMap<MethodInfoCache.Key, MethodInfo>();
+						methodInfos.put(new MethodInfoCache.Key("concurrentBean" + threadNo, "method" + j), info);
+						methodInfos.put(new MethodInfoCache.Key("concurrentBean", "method" + threadNo + "_" + j), info);
+						MethodInfoCache.INSTANCE.putAll(methodInfos);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 50; j++) {
+				assertThat(MethodInfoCache.INSTANCE.get("concurrentBean" + i, "method" + j)).isSameAs(info);
+				assertThat(MethodInfoCache.INSTANCE.get("concurrentBean", "method" + i + "_" + j)).isSameAs(info);
+			}
+		}
+
+		int count = 0;
+		for (Map.Entry<MethodInfoCache.Key, MethodInfo> entry : MethodInfoCache.INSTANCE) {
+			if (entry.getKey().getBeanName().startsWith("concurrentBean")) {
+				assertThat(entry.getValue()).isSameAs(info);
+				count++;
+			}
+		}
+		assertThat(count).isEqualTo(1000);
+		assertThat(MethodInfoCache.INSTANCE.get("concurrentBean", "unknown")).isNull();
+	}
+
+	@Test
+	public void testReplaceAll() throws Exception {
+		StaticApplicationContext context = new StaticApplicationContext();
+		StaticApplicationContext otherContext = new StaticApplicationContext();
+		MethodInfo infoA = new MethodInfo(GroupedMethods.class, null, "replacedMethods",
+				GroupedMethods.class.getMethod("methodA"));
+		MethodInfo infoC = new MethodInfo(GroupedMethods.class, null, "replacedMethods",
+				GroupedMethods.class.getMethod("methodC"));
+		MethodInfo otherInfoA = new MethodInfo(GroupedMethods.class, null, "replacedMethods",
+				GroupedMethods.class.getMethod("methodA"));
+
+		Map<MethodInfoCache.Key, MethodInfo> methodInfos = new LinkedHashMap<MethodInfoCache.Key, MethodInfo>();
+		methodInfos.put(new MethodInfoCache.Key("replacedMethods", "methodA"), infoA);
+		methodInfos.put(new MethodInfoCache.Key("replacedMethods", "methodC"), infoC);
+		MethodInfoCache.INSTANCE.replaceAll(context, methodInfos);
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodA")).isSameAs(infoA);
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodC")).isSameAs(infoC);
+
+		// the last registered context wins
+		MethodInfoCache.INSTANCE.replaceAll(otherContext, Collections.singletonMap(new MethodInfoCache.Key(
+				"replacedMethods", "methodA"), otherInfoA));
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodA")).isSameAs(otherInfoA);
+
+		// a refresh removes the methods the context no longer has
+		long lastModified = MethodInfoCache.INSTANCE.getLastModified();
+		MethodInfoCache.INSTANCE.replaceAll(context, Collections.singletonMap(new MethodInfoCache.Key(
+				"replacedMethods", "methodA"), infoA));
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodA")).isSameAs(infoA);
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodC")).isNull();
+		assertThat(MethodInfoCache.INSTANCE.getLastModified()).isGreaterThan(lastModified);
+
+		MethodInfoCache.INSTANCE.removeAll(context);
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodA")).isSameAs(otherInfoA);
+
+		MethodInfoCache.INSTANCE.removeAll(otherContext);
+		assertThat(MethodInfoCache.INSTANCE.get("replacedMethods", "methodA")).isNull();
+		for (Map.Entry<MethodInfoCache.Key, MethodInfo> entry : MethodInfoCache.INSTANCE) {
+			assertThat(entry.getKey().getBeanName()).isNotEqualTo("replacedMethods");
+		}
+	}
+
+	public static class GroupedMethods {
+		@ExtDirectMethod(group = "a")
+		public void methodA() {
+			// nothing here
+		}
+
+		@ExtDirectMethod(group = "b,a")
+		public void methodBA() {
+			// nothing here
+		}
+
+		@ExtDirectMethod(group = "c")
+		public void methodC() {
+			// nothing here
+		}
+
+		@ExtDirectMethod
+		public void methodNoGroup() {
+			// nothing here
+		}
+	}
+
+	private static List<String> methodNames(List<Map.Entry<MethodInfoCache.Key, MethodInfo>> entries) {
+		List<String> names = new ArrayList<String>();
+		for (Map.Entry<MethodInfoCache.Key, MethodInfo> entry : entries) {
+			names.add(entry.getKey().getMethodName());
+		}
+		return names;
+	}
+
+	@Test
+	public void testGetEntries() throws Exception {
+		MethodInfoCache.INSTANCE.clear();
+		Map<MethodInfoCache.Key, MethodInfo> methodInfos = new LinkedHashMap<MethodInfoCache.Key, MethodInfo>();
+		for (String methodName : new String[] { "methodA", "methodBA", "methodC", "methodNoGroup" }) {
+			Method method = GroupedMethods.class.getMethod(methodName);
+			methodInfos.put(new MethodInfoCache.Key("groupedMethods", methodName), new MethodInfo(
+					GroupedMethods.class, null, "groupedMethods", method));
+		}
+		MethodInfoCache.INSTANCE.putAll(methodInfos);
+
+		List<String> all = methodNames(MethodInfoCache.INSTANCE.getEntries(null));
+		assertThat(all).hasSize(4);
+
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries("a"))).containsOnly("methodA", "methodBA");
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries("b"))).containsExactly("methodBA");
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries("x"))).isEmpty();
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries(""))).containsExactly("methodNoGroup");
+
+		// groups are compared exactly, the ApiController trims the requested
+		// group before
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries(" b "))).isEmpty();
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries(" a"))).isEmpty();
+		assertThat(methodNames(MethodInfoCache.INSTANCE.getEntries("   "))).isEmpty();
+
+		List<String> multiple = methodNames(MethodInfoCache.INSTANCE.getEntries("c,a,b"));
+		assertThat(multiple).containsOnly("methodA", "methodBA", "methodC");
+		assertThat(multiple).hasSize(3);
+		List<String> expectedOrder = new ArrayList<String>(all);
+		expectedOrder.remove("methodNoGroup");
+		assertThat(multiple).isEqualTo(expectedOrder);
+
+		MethodInfoCache.INSTANCE.clear();
+		assertThat(MethodInfoCache.INSTANCE.getEntries(null)).isEmpty();
+		assertThat(MethodInfoCache.INSTANCE.getEntries("a")).isEmpty();
+	}
+
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethodType;
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+
+public class ParameterBindingTest {
+
+	@ExtDirectMethod
+	public void simple(HttpServletRequest request, @RequestHeader String header, @RequestParam("id") int id,
+			String name) {
+		// nothing here
+	}
+
+	@ExtDirectMethod(ExtDirectMethodType.STORE_READ)
+	public void storeRead(ExtDirectStoreReadRequest request, @RequestParam("id") int id) {
+		// nothing here
+	}
+
+	@ExtDirectMethod(ExtDirectMethodType.STORE_MODIFY)
+	public void storeModify(List<SimpleBean> records, @RequestParam("id") int id) {
+		// nothing here
+	}
+
+	@ExtDirectMethod
+	public void simpleWithList(List<SimpleBean> values) {
+		// nothing here
+	}
+
+	@Test
+	public void testSimple() throws Exception {
+		assertThat(createPlan("simple")).containsExactly(ParameterBinding.SUPPORTED_PARAMETER,
+				ParameterBinding.REQUEST_HEADER, ParameterBinding.REQUEST_PARAM, ParameterBinding.VALUE);
+		assertThat(createPlan("simpleWithList")).containsExactly(ParameterBinding.VALUE);
+	}
+
+	@Test
+	public void testStoreRead() throws Exception {
+		assertThat(createPlan("storeRead")).containsExactly(ParameterBinding.STORE_READ_REQUEST,
+				ParameterBinding.REQUEST_PARAM);
+	}
+
+	@Test
+	public void testStoreModify() throws Exception {
+		assertThat(createPlan("storeModify")).containsExactly(ParameterBinding.STORE_MODIFY_RECORDS,
+				ParameterBinding.REQUEST_PARAM);
+		Method method = findMethod("storeModify");
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parameterBindingTest", method);
+		assertThat(ParameterBinding.forParameter(methodInfo.getParameters().get(0))).isEqualTo(ParameterBinding.VALUE);
+	}
+
+	private ParameterBinding[] createPlan(String methodName) {
+		return new MethodInfo(getClass(), null, "parameterBindingTest", findMethod(methodName))
+				.getParameterBindings();
+	}
+
+	private Method findMethod(String methodName) {
+		for (Method method : getClass().getMethods()) {
+			if (method.getName().equals(methodName)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+}
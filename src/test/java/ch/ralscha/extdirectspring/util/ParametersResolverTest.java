@@ -0,0 +1,262 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.support.WebArgumentResolver;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethodType;
+import ch.ralscha.extdirectspring.bean.ExtDirectRequest;
+
+public class ParametersResolverTest {
+
+	private CountingResolver stringResolver;
+
+	private CountingResolver integerResolver;
+
+	private ParametersResolver parametersResolver;
+
+	@ExtDirectMethod
+	public void resolved(Integer tenant, String user) {
+		// nothing here
+	}
+
+	@ExtDirectMethod
+	public void positional(JsonTestBean bean, List<JsonTestBean> beans, int count) {
+		// nothing here
+	}
+
+	@ExtDirectMethod(ExtDirectMethodType.SIMPLE_NAMED)
+	public void named(List<JsonTestBean> beans, int count) {
+		// nothing here
+	}
+
+	@ExtDirectMethod
+	public void converted(List<Long> ids, JsonTestBean[] beans) {
+		// nothing here
+	}
+
+	@ExtDirectMethod
+	public void flags(List<Boolean> flags) {
+		// nothing here
+	}
+
+	@Before
+	public void setup() {
+		stringResolver = new CountingResolver("user");
+		integerResolver = new CountingResolver(42);
+		List<WebArgumentResolver> resolvers = new ArrayList<WebArgumentResolver>();
+		resolvers.add(stringResolver);
+		resolvers.add(integerResolver);
+		parametersResolver = new ParametersResolver(new DefaultConversionService(), new JsonHandler(), resolvers);
+	}
+
+	@Test
+	public void testResolverAffinity() throws Exception {
+		Method method = getClass().getMethod("resolved", Integer.class, String.class);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parametersResolverTest", method);
+
+		ExtDirectRequest directRequest = new ExtDirectRequest();
+		directRequest.setAction("parametersResolverTest");
+		directRequest.setMethod("resolved");
+
+		for (int i = 0; i < 3; i++) {
+			Object[] parameters = parametersResolver.resolveParameters(new MockHttpServletRequest(),
+					new MockHttpServletResponse(), Locale.ENGLISH, directRequest, methodInfo);
+			assertThat(parameters).containsOnly(42, "user");
+		}
+
+		// the first call asks both resolvers for the Integer parameter, the
+		// following calls only ask the resolver that succeeded
+		assertThat(stringResolver.getCalls()).isEqualTo(4);
+		assertThat(integerResolver.getCalls()).isEqualTo(3);
+	}
+
+	@Test
+	public void testDirectBindingOfPositionalValues() throws Exception {
+		Method method = getClass().getMethod("positional", JsonTestBean.class, List.class, int.class);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parametersResolverTest", method);
+
+		ExtDirectRequest directRequest = readDirectRequest("[{\"a\":1,\"b\":\"one\"},[{\"a\":2},{\"a\":3}],\"4\"]");
+		Object[] parameters = parametersResolver.resolveParameters(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), Locale.ENGLISH, directRequest, methodInfo);
+
+		assertThat(((JsonTestBean) parameters[0]).getA()).isEqualTo(1);
+		assertThat(((JsonTestBean) parameters[0]).getB()).isEqualTo("one");
+		assertBeans(parameters[1]);
+		assertThat(parameters[2]).isEqualTo(4);
+
+		// the payload was never converted into maps and lists
+		assertThat(getData(directRequest)).isNull();
+	}
+
+	@Test
+	public void testDirectBindingOfNamedValues() throws Exception {
+		Method method = getClass().getMethod("named", List.class, int.class);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parametersResolverTest", method);
+
+		ExtDirectRequest directRequest = readDirectRequest("{\"count\":4,\"beans\":[{\"a\":2},{\"a\":3}]}");
+		Object[] parameters = parametersResolver.resolveParameters(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), Locale.ENGLISH, directRequest, methodInfo);
+
+		assertBeans(parameters[0]);
+		assertThat(parameters[1]).isEqualTo(4);
+		assertThat(getData(directRequest)).isNull();
+	}
+
+	@Test
+	public void testCustomElementConverter() throws Exception {
+		DefaultConversionService conversionService = new DefaultConversionService();
+		conversionService.addConverter(new Converter<String, JsonTestBean>() {
+			@Override
+			public JsonTestBean convert(String source) {
+				JsonTestBean bean = new JsonTestBean();
+				bean.setA(Integer.valueOf(source));
+				return bean;
+			}
+		});
+		ParametersResolver resolver = new ParametersResolver(conversionService, new JsonHandler(),
+				new ArrayList<WebArgumentResolver>());
+
+		Method method = getClass().getMethod("positional", JsonTestBean.class, List.class, int.class);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parametersResolverTest", method);
+
+		// the elements of the list are converted with the custom converter,
+		// the bean is still read directly
+		ExtDirectRequest directRequest = readDirectRequest("[{\"a\":1},[\"2\",\"3\"],4]");
+		Object[] parameters = resolver.resolveParameters(new MockHttpServletRequest(), new MockHttpServletResponse(),
+				Locale.ENGLISH, directRequest, methodInfo);
+
+		assertThat(((JsonTestBean) parameters[0]).getA()).isEqualTo(1);
+		assertBeans(parameters[1]);
+		assertThat(parameters[2]).isEqualTo(4);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConversionDecisions() throws Exception {
+		Method method = getClass().getMethod("converted", List.class, JsonTestBean[].class);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parametersResolverTest", method);
+
+		for (int i = 0; i < 3; i++) {
+			Map<String, Object> bean = new HashMap<String, Object>();
+			bean.put("a", i);
+			ExtDirectRequest directRequest = new ExtDirectRequest();
+			directRequest.setData(Arrays.asList(Arrays.asList("1", String.valueOf(i)), Arrays.asList(bean)));
+
+			Object[] parameters = parametersResolver.resolveParameters(new MockHttpServletRequest(),
+					new MockHttpServletResponse(), Locale.ENGLISH, directRequest, methodInfo);
+			assertThat((List<Object>) parameters[0]).containsExactly(1L, Long.valueOf(i));
+			JsonTestBean[] beans = (JsonTestBean[]) parameters[1];
+			assertThat(beans).hasSize(1);
+			assertThat(beans[0].getA()).isEqualTo(i);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConversionDecisionAfterFailedConversion() throws Exception {
+		Method method = getClass().getMethod("flags", List.class);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "parametersResolverTest", method);
+
+		ExtDirectRequest badRequest = new ExtDirectRequest();
+		badRequest.setData(Arrays.asList(Arrays.asList("maybe")));
+		try {
+			parametersResolver.resolveParameters(new MockHttpServletRequest(), new MockHttpServletResponse(),
+					Locale.ENGLISH, badRequest, methodInfo);
+			fail("conversion of 'maybe' must fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// the failed call does not change how the following calls are
+		// converted, the conversion service still converts yes and on
+		ExtDirectRequest goodRequest = new ExtDirectRequest();
+		goodRequest.setData(Arrays.asList(Arrays.asList("yes", "on", "false")));
+		Object[] parameters = parametersResolver.resolveParameters(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), Locale.ENGLISH, goodRequest, methodInfo);
+		assertThat((List<Boolean>) parameters[0]).containsExactly(Boolean.TRUE, Boolean.TRUE, Boolean.FALSE);
+	}
+
+	private static ExtDirectRequest readDirectRequest(String data) throws Exception {
+		String json = "{\"action\":\"parametersResolverTest\",\"method\":\"m\",\"type\":\"rpc\",\"tid\":1,\"data\":"
+				+ data + "}";
+		return new JsonHandler().readDirectRequests(new ByteArrayInputStream(json.getBytes("UTF-8"))).get(0);
+	}
+
+	private static Object getData(ExtDirectRequest directRequest) {
+		// ExtDirectRequest.toString() would convert the payload
+		Field dataField = ReflectionUtils.findField(ExtDirectRequest.class, "data");
+		ReflectionUtils.makeAccessible(dataField);
+		return ReflectionUtils.getField(dataField, directRequest);
+	}
+
+	private static void assertBeans(Object value) {
+		@SuppressWarnings("unchecked")
+		List<JsonTestBean> beans = (List<JsonTestBean>) value;
+		assertThat(beans).hasSize(2);
+		assertThat(beans.get(0)).isInstanceOf(JsonTestBean.class);
+		assertThat(beans.get(0).getA()).isEqualTo(2);
+		assertThat(beans.get(1).getA()).isEqualTo(3);
+	}
+
+	private static final class CountingResolver implements WebArgumentResolver {
+
+		private final Object value;
+
+		private int calls;
+
+		CountingResolver(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public Object resolveArgument(MethodParameter methodParameter, NativeWebRequest webRequest) {
+			calls++;
+			if (methodParameter.getParameterType().isInstance(value)) {
+				return value;
+			}
+			return UNRESOLVED;
+		}
+
+		int getCalls() {
+			return calls;
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ResponseSizeHistogramTest {
+
+	@Test
+	public void testSizeHint() {
+		ResponseSizeHistogram histogram = new ResponseSizeHistogram();
+		assertThat(histogram.getSizeHint()).isEqualTo(0);
+
+		histogram.record(100);
+		assertThat(histogram.getSizeHint()).isEqualTo(128);
+
+		for (int i = 0; i < 8; i++) {
+			histogram.record(1000);
+		}
+		assertThat(histogram.getSizeHint()).isEqualTo(1024);
+
+		histogram.record(Integer.MAX_VALUE);
+		assertThat(histogram.getSizeHint()).isEqualTo(1024);
+
+		for (int i = 0; i < 4; i++) {
+			histogram.record(Integer.MAX_VALUE);
+		}
+		assertThat(histogram.getSizeHint()).isEqualTo(1 << 30);
+	}
+
+	@Test
+	public void testDecay() {
+		ResponseSizeHistogram histogram = new ResponseSizeHistogram();
+		for (int i = 0; i < 100; i++) {
+			histogram.record(100000);
+		}
+		assertThat(histogram.getSizeHint()).isEqualTo(131072);
+
+		for (int i = 0; i < 1000; i++) {
+			histogram.record(500);
+		}
+		assertThat(histogram.getSizeHint()).isEqualTo(512);
+	}
+
+}
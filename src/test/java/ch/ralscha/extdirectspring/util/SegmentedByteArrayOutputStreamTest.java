@@ -0,0 +1,101 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SegmentedByteArrayOutputStreamTest {
+
+	@Test
+	public void testWrite() throws IOException {
+		byte[] data = new byte[10000];
+		new Random(1).nextBytes(data);
+
+		SegmentedByteArrayOutputStream out = new SegmentedByteArrayOutputStream();
+		assertThat(out.size()).isEqualTo(0);
+		assertThat(out.toByteArray()).isEmpty();
+
+		out.write(data[0]);
+		out.write(data, 1, 999);
+		out.write(data, 1000, 9000);
+		assertThat(out.size()).isEqualTo(10000);
+		assertThat(out.toByteArray()).isEqualTo(data);
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		out.writeTo(bos);
+		assertThat(bos.toByteArray()).isEqualTo(data);
+	}
+
+	@Test
+	public void testReset() throws IOException {
+		SegmentedByteArrayOutputStream out = new SegmentedByteArrayOutputStream();
+		out.write(new byte[5000]);
+		int capacity = out.capacity();
+		assertThat(capacity).isGreaterThanOrEqualTo(5000);
+
+		out.reset();
+		assertThat(out.size()).isEqualTo(0);
+		out.write(new byte[] { 1, 2, 3 });
+		assertThat(out.toByteArray()).isEqualTo(new byte[] { 1, 2, 3 });
+		assertThat(out.capacity()).isEqualTo(capacity);
+
+		out.trim(0);
+		assertThat(out.capacity()).isEqualTo(0);
+		assertThat(out.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testSizeHint() throws IOException {
+		SegmentedByteArrayOutputStream out = new SegmentedByteArrayOutputStream(100000);
+		out.write(1);
+		assertThat(out.capacity()).isEqualTo(100000);
+
+		out = new SegmentedByteArrayOutputStream(10 * SegmentedByteArrayOutputStream.MAX_SEGMENT_SIZE);
+		out.write(1);
+		assertThat(out.capacity()).isEqualTo(SegmentedByteArrayOutputStream.MAX_SEGMENT_SIZE);
+
+		out = new SegmentedByteArrayOutputStream(10);
+		out.write(1);
+		assertThat(out.capacity()).isEqualTo(SegmentedByteArrayOutputStream.MIN_SEGMENT_SIZE);
+	}
+
+	@Test
+	public void testPool() throws IOException {
+		SegmentedByteArrayOutputStream out = OutputBufferPool.INSTANCE.acquire(0);
+		out.write(new byte[] { 1, 2, 3 });
+		OutputBufferPool.INSTANCE.release(out);
+
+		SegmentedByteArrayOutputStream out2 = OutputBufferPool.INSTANCE.acquire(0);
+		assertThat(out2).isSameAs(out);
+		assertThat(out2.size()).isEqualTo(0);
+
+		SegmentedByteArrayOutputStream out3 = OutputBufferPool.INSTANCE.acquire(0);
+		assertThat(out3).isNotSameAs(out2);
+
+		out2.write(new byte[2 * OutputBufferPool.MAX_RETAINED_BYTES]);
+		OutputBufferPool.INSTANCE.release(out2);
+		OutputBufferPool.INSTANCE.release(out3);
+		assertThat(out2.capacity()).isLessThanOrEqualTo(OutputBufferPool.MAX_RETAINED_BYTES);
+		assertThat(OutputBufferPool.INSTANCE.acquire(0)).isSameAs(out2);
+	}
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2010-2013 Ralph Schaer <ralphschaer@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.ralscha.extdirectspring.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.data.MapEntry.entry;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.support.WebArgumentResolver;
+
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethod;
+import ch.ralscha.extdirectspring.annotation.ExtDirectMethodType;
+import ch.ralscha.extdirectspring.bean.ExtDirectRequest;
+import ch.ralscha.extdirectspring.bean.ExtDirectStoreReadRequest;
+import ch.ralscha.extdirectspring.bean.SortDirection;
+import ch.ralscha.extdirectspring.controller.Configuration;
+import ch.ralscha.extdirectspring.filter.StringFilter;
+
+public class StoreReadRequestBinderTest {
+
+	public static class TenantStoreReadRequest extends ExtDirectStoreReadRequest {
+		private Long tenant;
+
+		public Long getTenant() {
+			return tenant;
+		}
+
+		public void setTenant(Long tenant) {
+			this.tenant = tenant;
+		}
+	}
+
+	@ExtDirectMethod(ExtDirectMethodType.STORE_READ)
+	public void read(ExtDirectStoreReadRequest request) {
+		// nothing here
+	}
+
+	@ExtDirectMethod(ExtDirectMethodType.STORE_READ)
+	public void readWithTenant(TenantStoreReadRequest request) {
+		// nothing here
+	}
+
+	@Test
+	public void testBaseSetters() {
+		StoreReadRequestBinder binder = StoreReadRequestBinder.forType(ExtDirectStoreReadRequest.class);
+		assertThat(StoreReadRequestBinder.forType(ExtDirectStoreReadRequest.class)).isSameAs(binder);
+		assertThat(binder.getSetter("tenant")).isNull();
+
+		ExtDirectStoreReadRequest request = binder.newRequest();
+		assertThat((Object) request.getClass()).isEqualTo(ExtDirectStoreReadRequest.class);
+		assertThat((Object) binder.getSetter("limit").getType()).isEqualTo(Integer.class);
+		assertThat(binder.getSetter("limit").set(request, 50)).isTrue();
+		assertThat(binder.getSetter("query").set(request, "term")).isTrue();
+		assertThat(request.getLimit()).isEqualTo(50);
+		assertThat(request.getQuery()).isEqualTo("term");
+	}
+
+	@Test
+	public void testSubclass() {
+		StoreReadRequestBinder binder = StoreReadRequestBinder.forType(TenantStoreReadRequest.class);
+		ExtDirectStoreReadRequest request = binder.newRequest();
+		assertThat(request).isInstanceOf(TenantStoreReadRequest.class);
+
+		assertThat((Object) binder.getSetter("tenant").getType()).isEqualTo(Long.class);
+		assertThat(binder.getSetter("tenant").set(request, 7L)).isTrue();
+		assertThat(binder.getSetter("start").set(request, 10)).isTrue();
+		assertThat(((TenantStoreReadRequest) request).getTenant()).isEqualTo(7L);
+		assertThat(request.getStart()).isEqualTo(10);
+	}
+
+	@Test
+	public void testResolveParameters() throws Exception {
+		ParametersResolver resolver = new ParametersResolver(new DefaultConversionService(), new JsonHandler(),
+				Collections.<WebArgumentResolver> emptyList());
+
+		Map<String, Object> data = new LinkedHashMap<String, Object>();
+		data.put("page", "2");
+		data.put("limit", 25);
+		data.put("tenant", "7");
+		data.put("extra", "value");
+
+		ExtDirectStoreReadRequest request = resolveRequest(resolver, "read", ExtDirectStoreReadRequest.class, data);
+		assertThat((Object) request.getClass()).isEqualTo(ExtDirectStoreReadRequest.class);
+		assertThat(request.getPage()).isEqualTo(2);
+		assertThat(request.getLimit()).isEqualTo(25);
+		assertThat(request.getStart()).isEqualTo(25);
+		assertThat(request.getParams()).hasSize(2).contains(entry("tenant", "7"),
+				entry("extra", "value"));
+
+		request = resolveRequest(resolver, "readWithTenant", TenantStoreReadRequest.class, data);
+		assertThat(((TenantStoreReadRequest) request).getTenant()).isEqualTo(7L);
+		assertThat(request.getLimit()).isEqualTo(25);
+		assertThat(request.getParams()).hasSize(1).contains(entry("extra", "value"));
+	}
+
+	@Test
+	public void testLazyAndEagerParsing() throws Exception {
+		Map<String, Object> sorter = new LinkedHashMap<String, Object>();
+		sorter.put("property", "name");
+		sorter.put("direction", "DESC");
+		Map<String, Object> data = new LinkedHashMap<String, Object>();
+		data.put("filter", "[{\"type\":\"string\",\"field\":\"name\",\"value\":\"Ra\"}]");
+		data.put("sort", Arrays.asList(sorter));
+
+		ParametersResolver lazyResolver = new ParametersResolver(new DefaultConversionService(), new JsonHandler(),
+				Collections.<WebArgumentResolver> emptyList());
+		ExtDirectStoreReadRequest request = resolveRequest(lazyResolver, "read", ExtDirectStoreReadRequest.class, data);
+		assertThat(loader(request, "filtersLoader")).isNotNull();
+		assertThat(loader(request, "sortersLoader")).isNotNull();
+		assertLoaded(request);
+		assertThat(loader(request, "filtersLoader")).isNull();
+
+		Configuration config = new Configuration();
+		config.setEagerStoreReadRequestParsing(true);
+		ParametersResolver eagerResolver = new ParametersResolver(new DefaultConversionService(), new JsonHandler(),
+				Collections.<WebArgumentResolver> emptyList(), config);
+		request = resolveRequest(eagerResolver, "read", ExtDirectStoreReadRequest.class, data);
+		assertThat(loader(request, "filtersLoader")).isNull();
+		assertThat(loader(request, "sortersLoader")).isNull();
+		assertLoaded(request);
+	}
+
+	private static Object loader(ExtDirectStoreReadRequest request, String name) {
+		Field field = ReflectionUtils.findField(ExtDirectStoreReadRequest.class, name);
+		ReflectionUtils.makeAccessible(field);
+		return ReflectionUtils.getField(field, request);
+	}
+
+	private static void assertLoaded(ExtDirectStoreReadRequest request) {
+		assertThat(request.getFilters()).hasSize(1);
+		assertThat(((StringFilter) request.getFilters().get(0)).getValue()).isEqualTo("Ra");
+		assertThat(request.getSorters()).hasSize(1);
+		assertThat(request.getSorters().get(0).getProperty()).isEqualTo("name");
+		assertThat(request.getSorters().get(0).getDirection()).isEqualTo(SortDirection.DESCENDING);
+	}
+
+	private ExtDirectStoreReadRequest resolveRequest(ParametersResolver resolver, String methodName,
+			Class<?> parameterType, Map<String, Object> data) throws Exception {
+		Method method = getClass().getMethod(methodName, parameterType);
+		MethodInfo methodInfo = new MethodInfo(getClass(), null, "storeReadRequestBinderTest", method);
+
+		ExtDirectRequest directRequest = new ExtDirectRequest();
+		directRequest.setData(Arrays.asList(data));
+		Object[] parameters = resolver.resolveParameters(new MockHttpServletRequest(), new MockHttpServletResponse(),
+				Locale.ENGLISH, directRequest, methodInfo);
+		return (ExtDirectStoreReadRequest) parameters[0];
+	}
+
+}
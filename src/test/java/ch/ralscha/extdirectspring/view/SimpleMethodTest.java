@@ -17,6 +17,7 @@ package ch.ralscha.extdirectspring.view;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
+import java.util.List;
 import java.util.Map;
 
 import org.fest.assertions.data.MapEntry;
@@ -28,9 +29,11 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import ch.ralscha.extdirectspring.bean.ExtDirectResponse;
 import ch.ralscha.extdirectspring.controller.ControllerUtil;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -104,6 +107,32 @@ public class SimpleMethodTest extends BaseViewTest {
 		callMethod("simpleMethodService", "overrideSubclassNoView", noView());
 	}
 
+	@Test
+	public void testBatchWithDifferentViews() throws Exception {
+		String edRequest1 = ControllerUtil.createEdsRequest("simpleMethodService", "annotationSummaryView", 1, null);
+		String edRequest2 = ControllerUtil.createEdsRequest("simpleMethodService", "noView", 2, null);
+		String edRequest3 = ControllerUtil.createEdsRequest("simpleMethodService", "majDetailView", 3, null);
+		String edRequest4 = ControllerUtil.createEdsRequest("simpleMethodService", "subclassSummaryView", 4, null);
+
+		MvcResult result = ControllerUtil.performRouterRequest(mockMvc, "[" + edRequest1 + "," + edRequest2 + ","
+				+ edRequest3 + "," + edRequest4 + "]");
+		List<ExtDirectResponse> responses = ControllerUtil.readDirectResponses(result.getResponse()
+				.getContentAsByteArray());
+		assertThat(responses).hasSize(4);
+
+		assertResult(responses.get(0), summaryView());
+		assertResult(responses.get(1), noView());
+		assertResult(responses.get(2), detailView());
+		assertResult(responses.get(3), summaryView());
+	}
+
+	private static void assertResult(ExtDirectResponse response, MapEntry... expectedEntries) {
+		@SuppressWarnings("unchecked")
+		Map<String, Object> result = (Map<String, Object>) response.getResult();
+		assertThat(result).hasSize(expectedEntries.length);
+		assertThat(result).contains(expectedEntries);
+	}
+
 	private void callMethod(String bean, String method, MapEntry... expectedEntries) {
 		Map<String, Object> result = ControllerUtil.sendAndReceiveMap(mockMvc, bean, method);
 		assertThat(result).hasSize(expectedEntries.length);
@@ -153,6 +153,7 @@ public class SimpleServiceTest extends JettyTest2 {
 			assertThat(expires.getMinuteOfDay()).isEqualTo(inSixMonths.getMinuteOfDay());
 
 			assertThat(response.getFirstHeader("ETag").getValue()).isNotNull();
+			assertThat(response.getFirstHeader("Last-Modified").getValue()).isNotNull();
 			assertThat(response.getFirstHeader("Cache-Control").getValue()).isEqualTo("public, max-age=15552000");
 
 		} else {
@@ -161,8 +162,9 @@ public class SimpleServiceTest extends JettyTest2 {
 			assertThat(response.getFirstHeader("Content-Length")).isNotNull();
 			assertThat(response.getFirstHeader("Vary")).isNull();
 			assertThat(response.getFirstHeader("Expires")).isNull();
-			assertThat(response.getFirstHeader("ETag")).isNull();
-			assertThat(response.getFirstHeader("Cache-Control")).isNull();
+			assertThat(response.getFirstHeader("ETag")).isNotNull();
+			assertThat(response.getFirstHeader("Last-Modified")).isNotNull();
+			assertThat(response.getFirstHeader("Cache-Control").getValue()).isEqualTo("no-cache");
 		}
 	}
 